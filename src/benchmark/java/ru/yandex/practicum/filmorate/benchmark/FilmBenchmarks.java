@@ -0,0 +1,37 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class FilmBenchmarks {
+    @Benchmark
+    public Collection<?> storageGetFilms(FilmorateBenchmarkState state) {
+        return state.filmStorage.getFilms();
+    }
+
+    @Benchmark
+    public Collection<?> storageGetTopPopularFilms(FilmorateBenchmarkState state) {
+        return state.filmStorage.getTopPopularFilms(10);
+    }
+
+    @Benchmark
+    public Collection<?> serviceGetTopPopularFilms(FilmorateBenchmarkState state) {
+        return state.filmService.getTopPopularFilms(10);
+    }
+
+    //лайк ставится и снимается, чтобы число лайков не росло от итерации к итерации
+    @Benchmark
+    public void serviceAddLikeToFilm(FilmorateBenchmarkState state) {
+        Long filmId = state.filmIds.get(ThreadLocalRandom.current().nextInt(state.filmIds.size()));
+        state.filmService.addLikeToFilm(filmId, state.likingUserId);
+        state.filmService.deleteLikeFromFilm(filmId, state.likingUserId);
+    }
+}
@@ -0,0 +1,20 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+//рекомендации фильмов по индексу лайков без БД
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class FilmRecommendationBenchmarks {
+    @Benchmark
+    public long[] recommendFilms(SyntheticLikesState state) {
+        long userId = ThreadLocalRandom.current().nextLong(1, state.users + 1);
+        return state.likesIndex.recommendFilms(userId, 10);
+    }
+}
@@ -0,0 +1,78 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.storage.index.FilmSimilarityIndex;
+import ru.yandex.practicum.filmorate.storage.index.TopScores;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+//похожие фильмы: поиск по корзинам MinHash/LSH против точного коэффициента Жаккара
+//со всеми фильмами каталога и полное перестроение индекса
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class FilmSimilarityBenchmarks {
+    @State(Scope.Benchmark)
+    public static class SimilarityState {
+        public FilmSimilarityIndex index;
+
+        @Setup(Level.Trial)
+        public void setUp(SyntheticLikesState likes) {
+            index = new FilmSimilarityIndex(likes.likesIndex, 16, 4, 10000,
+                    Duration.ofSeconds(1), Duration.ofMinutes(10));
+            index.rebuild();
+        }
+    }
+
+    @Benchmark
+    public long[] findSimilar(SyntheticLikesState likes, SimilarityState state) {
+        long filmId = ThreadLocalRandom.current().nextLong(1, likes.films + 1);
+        return state.index.findSimilar(filmId, 10);
+    }
+
+    @Benchmark
+    public long[] exactCatalogScan(SyntheticLikesState likes) {
+        long filmId = ThreadLocalRandom.current().nextLong(1, likes.films + 1);
+        long[] users = likes.likesIndex.getUsersOfFilm(filmId);
+        TopScores top = new TopScores(10);
+        for (long otherId = 1; otherId <= likes.films; otherId++) {
+            if (otherId == filmId)
+                continue;
+            long[] others = likes.likesIndex.getUsersOfFilm(otherId);
+            int common = intersectionSize(users, others);
+            int union = users.length + others.length - common;
+            if (common > 0)
+                top.offer(otherId, (double) common / union);
+        }
+        return top.toSortedIds();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void rebuild(SimilarityState state) {
+        state.index.rebuild();
+    }
+
+    private static int intersectionSize(long[] first, long[] second) {
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                count++;
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,85 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.generator.DataGenerator;
+import ru.yandex.practicum.filmorate.generator.GeneratorSettings;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.interfaces.FilmService;
+import ru.yandex.practicum.filmorate.service.interfaces.UserService;
+import ru.yandex.practicum.filmorate.storage.dao.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.dao.UserDbStorage;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+
+//контекст приложения на H2 в памяти, наполненный данными заданного масштаба;
+//создаётся один раз на каждое значение likes
+@State(Scope.Benchmark)
+public class FilmorateBenchmarkState {
+    @Param({"1000", "100000", "1000000"})
+    public int likes;
+
+    public FilmDbStorage filmStorage;
+    public UserDbStorage userStorage;
+    public FilmService filmService;
+    public UserService userService;
+    public List<Long> filmIds;
+    public List<Long> userIds;
+    //добавившие в друзья самого популярного пользователя: у любых двух из них есть общий друг,
+    //а при распределении Ципфа обычно и другие популярные пользователи
+    public List<Long> followersOfTopUser;
+    //пользователь без лайков: бенчмарк ставит и сразу снимает его лайк, не меняя данные
+    public Long likingUserId;
+
+    private ConfigurableApplicationContext context;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(FilmorateApplication.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .run("--spring.datasource.url=jdbc:h2:mem:benchmark" + likes + ";DB_CLOSE_DELAY=-1;LAZY_QUERY_EXECUTION=1",
+                        "--logging.level.root=WARN",
+                        "--spring.sql.init.mode=always");
+
+        //масштаб задаётся числом лайков: в среднем 50 лайков на пользователя, 100 на фильм
+        int users = Math.max(100, likes / 50);
+        context.getBean(DataGenerator.class).generate(GeneratorSettings.builder()
+                .users(users)
+                .films(Math.max(100, likes / 100))
+                .averageLikesPerUser(likes / users)
+                .build());
+
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        filmStorage = context.getBean(FilmDbStorage.class);
+        userStorage = context.getBean(UserDbStorage.class);
+        filmService = context.getBean(FilmService.class);
+        userService = context.getBean(UserService.class);
+
+        filmIds = jdbcTemplate.queryForList("SELECT id FROM films ORDER BY id", Long.class);
+        userIds = jdbcTemplate.queryForList("SELECT id FROM users ORDER BY id", Long.class);
+        followersOfTopUser = jdbcTemplate.queryForList("SELECT user_id FROM friendship WHERE friend_id =" +
+                " (SELECT friend_id FROM friendship GROUP BY friend_id ORDER BY COUNT(*) DESC, friend_id LIMIT 1)" +
+                " ORDER BY user_id", Long.class);
+        if (followersOfTopUser.size() < 2)
+            throw new IllegalStateException("Сгенерировано слишком мало дружб для бенчмарка общих друзей");
+        likingUserId = userStorage.createUser(User.builder()
+                .email("benchmark@mail.ru")
+                .login("benchmark")
+                .name("benchmark")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .friendsIds(new HashSet<>())
+                .build()).getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+}
@@ -0,0 +1,61 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.generator.ZipfSampler;
+import ru.yandex.practicum.filmorate.storage.index.FriendshipGraph;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+//рекомендации друзей на синтетическом графе без БД: число друзей по Парето,
+//друзья выбираются по Ципфу, поэтому у популярных пользователей сотни тысяч подписчиков.
+//SampleTime даёт перцентили времени ответа (p0.99 в выводе JMH)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class FriendSuggestionBenchmarks {
+    @State(Scope.Benchmark)
+    public static class GraphState {
+        @Param("1000000")
+        public int users;
+        @Param("10")
+        public int averageFriends;
+        @Param("100000")
+        public int maxExpansion;
+
+        public FriendshipGraph graph;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            SplittableRandom random = new SplittableRandom(42);
+            ZipfSampler sampler = new ZipfSampler(users, 1.0, random);
+            long[] from = new long[users * averageFriends * 2];
+            long[] to = new long[from.length];
+            int size = 0;
+            double alpha = 2.0;
+            double scale = averageFriends * (alpha - 1) / alpha;
+            for (int user = 1; user <= users; user++) {
+                int count = (int) Math.min(1000, Math.round(scale / Math.pow(1 - random.nextDouble(), 1 / alpha)));
+                for (int i = 0; i < count && size < from.length; i++) {
+                    long friend = sampler.sample(random) + 1;
+                    if (friend != user) {
+                        from[size] = user;
+                        to[size] = friend;
+                        size++;
+                    }
+                }
+            }
+            graph = new FriendshipGraph(null, maxExpansion);
+            graph.loadEdges(from, to, size);
+        }
+    }
+
+    @Benchmark
+    public long[] suggestFriends(GraphState state) {
+        long userId = ThreadLocalRandom.current().nextLong(1, state.users + 1);
+        return state.graph.suggestFriends(userId, 10);
+    }
+}
@@ -0,0 +1,44 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.generator.ZipfSampler;
+import ru.yandex.practicum.filmorate.storage.index.FilmLikesIndex;
+
+import java.util.SplittableRandom;
+
+//синтетический индекс лайков без БД: число лайков пользователя по Парето, фильмы выбираются
+//по Ципфу, поэтому у хитов лайки большей части пользователей
+@State(Scope.Benchmark)
+public class SyntheticLikesState {
+    @Param("500000")
+    public int users;
+    @Param("20000")
+    public int films;
+    @Param("20")
+    public int averageLikes;
+    @Param("100000")
+    public int maxExpansion;
+
+    public FilmLikesIndex likesIndex;
+
+    @Setup(Level.Trial)
+    public void setUpLikes() {
+        SplittableRandom random = new SplittableRandom(42);
+        ZipfSampler sampler = new ZipfSampler(films, 1.0, random);
+        long[] userIds = new long[users * averageLikes * 2];
+        long[] filmIds = new long[userIds.length];
+        int size = 0;
+        double alpha = 2.0;
+        double scale = averageLikes * (alpha - 1) / alpha;
+        for (int user = 1; user <= users; user++) {
+            int count = (int) Math.min(films, Math.round(scale / Math.pow(1 - random.nextDouble(), 1 / alpha)));
+            for (int i = 0; i < count && size < userIds.length; i++) {
+                userIds[size] = user;
+                filmIds[size] = sampler.sample(random) + 1;
+                size++;
+            }
+        }
+        likesIndex = new FilmLikesIndex(null, maxExpansion, 50);
+        likesIndex.loadLikes(userIds, filmIds, size);
+    }
+}
@@ -0,0 +1,42 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class UserBenchmarks {
+    @Benchmark
+    public Collection<?> storageGetIntersectingFriends(FilmorateBenchmarkState state) {
+        Long[] pair = followerPair(state);
+        return state.userStorage.getIntersectingFriends(pair[0], pair[1]);
+    }
+
+    @Benchmark
+    public Collection<?> serviceGetIntersectingFriends(FilmorateBenchmarkState state) {
+        Long[] pair = followerPair(state);
+        return state.userService.getIntersectingFriends(pair[0], pair[1]);
+    }
+
+    @Benchmark
+    public Collection<?> serviceGetFriendsOfUser(FilmorateBenchmarkState state) {
+        Long userId = state.userIds.get(ThreadLocalRandom.current().nextInt(state.userIds.size()));
+        return state.userService.getFriendsOfUser(userId);
+    }
+
+    //два разных пользователя, добавивших в друзья самого популярного: общие друзья у них есть всегда
+    private static Long[] followerPair(FilmorateBenchmarkState state) {
+        List<Long> followers = state.followersOfTopUser;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(followers.size());
+        int second = (first + 1 + random.nextInt(followers.size() - 1)) % followers.size();
+        return new Long[]{followers.get(first), followers.get(second)};
+    }
+}
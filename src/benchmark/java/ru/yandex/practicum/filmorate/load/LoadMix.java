@@ -0,0 +1,62 @@
+package ru.yandex.practicum.filmorate.load;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+//доли маршрутов в потоке запросов; маршрут очередного запроса выбирается случайно по весам
+public enum LoadMix {
+    READ_HEAVY(Map.of(
+            LoadRoute.POPULAR_FILMS, 35,
+            LoadRoute.FILM_BY_ID, 25,
+            LoadRoute.FRIENDS, 20,
+            LoadRoute.COMMON_FRIENDS, 15,
+            LoadRoute.ADD_LIKE, 3,
+            LoadRoute.DELETE_LIKE, 2)),
+    WRITE_HEAVY(Map.of(
+            LoadRoute.POPULAR_FILMS, 10,
+            LoadRoute.FRIENDS, 10,
+            LoadRoute.ADD_LIKE, 45,
+            LoadRoute.DELETE_LIKE, 35)),
+    //только лайки и друзья: короткие запросы, время которых уходит на обращения к БД
+    LIKES_FRIENDS(Map.of(
+            LoadRoute.FRIENDS, 30,
+            LoadRoute.COMMON_FRIENDS, 20,
+            LoadRoute.ADD_LIKE, 30,
+            LoadRoute.DELETE_LIKE, 20)),
+    MIXED(Map.of(
+            LoadRoute.POPULAR_FILMS, 25,
+            LoadRoute.FILM_BY_ID, 15,
+            LoadRoute.FRIENDS, 15,
+            LoadRoute.COMMON_FRIENDS, 10,
+            LoadRoute.ADD_LIKE, 20,
+            LoadRoute.DELETE_LIKE, 15));
+
+    private final LoadRoute[] routes;
+    private final int[] cumulativeWeights;
+
+    LoadMix(Map<LoadRoute, Integer> weights) {
+        Map<LoadRoute, Integer> ordered = new EnumMap<>(weights);
+        routes = ordered.keySet().toArray(new LoadRoute[0]);
+        cumulativeWeights = new int[routes.length];
+        int sum = 0;
+        for (int i = 0; i < routes.length; i++) {
+            sum += ordered.get(routes[i]);
+            cumulativeWeights[i] = sum;
+        }
+    }
+
+    public LoadRoute next(SplittableRandom random) {
+        int point = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        int index = Arrays.binarySearch(cumulativeWeights, point + 1);
+        if (index < 0)
+            index = -index - 1;
+        return routes[index];
+    }
+
+    //имя в настройках: read-heavy, write-heavy, likes-friends, mixed
+    public static LoadMix fromName(String name) {
+        return valueOf(name.trim().toUpperCase().replace('-', '_'));
+    }
+}
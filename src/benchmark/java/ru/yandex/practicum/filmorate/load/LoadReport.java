@@ -0,0 +1,89 @@
+package ru.yandex.practicum.filmorate.load;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+//итог прогона: перцентили задержек в миллисекундах и пропускная способность по маршрутам
+public class LoadReport {
+    private final Map<LoadRoute, RouteStats> stats;
+    private final Duration duration;
+
+    public LoadReport(Map<LoadRoute, RouteStats> stats, Duration duration) {
+        this.stats = stats;
+        this.duration = duration;
+    }
+
+    public void print(PrintStream out) {
+        printHeader(out, "route");
+        for (Map.Entry<LoadRoute, RouteStats> entry : stats.entrySet()) {
+            RouteStats routeStats = entry.getValue();
+            if (routeStats.getLatencies().getTotalCount() == 0 && routeStats.getRejected() == 0)
+                continue;
+            printLine(out, entry.getKey().getTitle(), routeStats.getLatencies(),
+                    routeStats.getErrors(), routeStats.getRejected());
+        }
+        printTotal(out, "total");
+    }
+
+    //одна строка со сводкой по всем маршрутам, для сравнения прогонов между собой
+    public void printTotal(PrintStream out, String title) {
+        Histogram total = new Histogram(3);
+        long totalErrors = 0;
+        long totalRejected = 0;
+        for (RouteStats routeStats : stats.values()) {
+            total.add(routeStats.getLatencies());
+            totalErrors += routeStats.getErrors();
+            totalRejected += routeStats.getRejected();
+        }
+        printLine(out, title, total, totalErrors, totalRejected);
+    }
+
+    public static void printHeader(PrintStream out, String title) {
+        out.printf("%-42s %10s %10s %9s %9s %9s %9s %8s %8s%n",
+                title, "requests", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms", "errors", "rejected");
+    }
+
+    //маршруты, у которых перцентиль превысил цель; пустой список - цели выполнены
+    public List<String> sloViolations(Duration p99, Duration p999) {
+        List<String> violations = new ArrayList<>();
+        for (Map.Entry<LoadRoute, RouteStats> entry : stats.entrySet()) {
+            Histogram latencies = entry.getValue().getLatencies();
+            if (latencies.getTotalCount() == 0)
+                continue;
+            checkPercentile(violations, entry.getKey(), latencies, 99.0, p99);
+            checkPercentile(violations, entry.getKey(), latencies, 99.9, p999);
+            if (entry.getValue().getRejected() > 0)
+                violations.add(entry.getKey().getTitle() + ": не отправлено запросов - "
+                        + entry.getValue().getRejected());
+        }
+        return violations;
+    }
+
+    private void checkPercentile(List<String> violations, LoadRoute route, Histogram latencies,
+                                 double percentile, Duration target) {
+        if (target.isZero())
+            return;
+        long actualMicros = latencies.getValueAtPercentile(percentile);
+        if (actualMicros > target.toNanos() / 1000)
+            violations.add(String.format("%s: p%s = %.2f ms, цель %d ms", route.getTitle(),
+                    percentile == 99.0 ? "99" : "999", actualMicros / 1000.0, target.toMillis()));
+    }
+
+    private void printLine(PrintStream out, String title, Histogram latencies, long errors, long rejected) {
+        out.printf("%-42s %10d %10.1f %9.2f %9.2f %9.2f %9.2f %8d %8d%n",
+                title,
+                latencies.getTotalCount(),
+                latencies.getTotalCount() / (duration.toMillis() / 1000.0),
+                latencies.getValueAtPercentile(50) / 1000.0,
+                latencies.getValueAtPercentile(99) / 1000.0,
+                latencies.getValueAtPercentile(99.9) / 1000.0,
+                latencies.getMaxValue() / 1000.0,
+                errors,
+                rejected);
+    }
+}
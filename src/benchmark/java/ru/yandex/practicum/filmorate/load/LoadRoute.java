@@ -0,0 +1,19 @@
+package ru.yandex.practicum.filmorate.load;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+//маршруты FilmController и UserController, которые участвуют в нагрузке;
+//статистика задержек собирается отдельно по каждому маршруту
+@Getter
+@RequiredArgsConstructor
+public enum LoadRoute {
+    POPULAR_FILMS("GET /films/popular"),
+    FILM_BY_ID("GET /films/{filmId}"),
+    FRIENDS("GET /users/{id}/friends"),
+    COMMON_FRIENDS("GET /users/{id}/friends/common/{otherId}"),
+    ADD_LIKE("PUT /films/{id}/like/{userId}"),
+    DELETE_LIKE("DELETE /films/{id}/like/{userId}");
+
+    private final String title;
+}
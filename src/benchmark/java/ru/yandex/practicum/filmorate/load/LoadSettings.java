@@ -0,0 +1,49 @@
+package ru.yandex.practicum.filmorate.load;
+
+import lombok.Builder;
+import lombok.Value;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+
+//параметры нагрузочного прогона; задаются свойствами load.* (например -Dload.rate=2000)
+@Value
+@Builder
+public class LoadSettings {
+    @Builder.Default
+    LoadMix mix = LoadMix.READ_HEAVY;
+    //интенсивность поступления запросов в секунду, не зависящая от скорости ответов
+    @Builder.Default
+    int rate = 500;
+    //прогрев: запросы отправляются, но в отчёт не попадают
+    @Builder.Default
+    Duration warmup = Duration.ofSeconds(10);
+    @Builder.Default
+    Duration duration = Duration.ofSeconds(30);
+    //запросы сверх этого числа одновременно ожидающих ответа не отправляются и считаются ошибками
+    @Builder.Default
+    int maxInFlight = 10_000;
+    @Builder.Default
+    long seed = 42;
+    //цели по задержке для каждого маршрута; 0 - цель не проверяется
+    @Builder.Default
+    Duration sloP99 = Duration.ZERO;
+    @Builder.Default
+    Duration sloP999 = Duration.ZERO;
+
+    public static LoadSettings from(Environment environment) {
+        LoadSettings defaults = LoadSettings.builder().build();
+        String prefix = "load.";
+        return LoadSettings.builder()
+                .mix(LoadMix.fromName(environment.getProperty(prefix + "mix", defaults.getMix().name())))
+                .rate(environment.getProperty(prefix + "rate", Integer.class, defaults.getRate()))
+                .warmup(environment.getProperty(prefix + "warmup", Duration.class, defaults.getWarmup()))
+                .duration(environment.getProperty(prefix + "duration", Duration.class, defaults.getDuration()))
+                .maxInFlight(environment.getProperty(prefix + "max-in-flight", Integer.class,
+                        defaults.getMaxInFlight()))
+                .seed(environment.getProperty(prefix + "seed", Long.class, defaults.getSeed()))
+                .sloP99(environment.getProperty(prefix + "slo.p99", Duration.class, defaults.getSloP99()))
+                .sloP999(environment.getProperty(prefix + "slo.p999", Duration.class, defaults.getSloP999()))
+                .build();
+    }
+}
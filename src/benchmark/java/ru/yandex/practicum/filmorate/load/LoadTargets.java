@@ -0,0 +1,68 @@
+package ru.yandex.practicum.filmorate.load;
+
+import ru.yandex.practicum.filmorate.generator.ZipfSampler;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.List;
+import java.util.SplittableRandom;
+
+//построение запросов к маршрутам: фильмы и пользователи выбираются по закону Ципфа,
+//чтобы нагрузка, как и в жизни, приходилась в основном на популярные записи
+public class LoadTargets {
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final URI baseUri;
+    private final long[] filmIds;
+    private final long[] userIds;
+    private final ZipfSampler filmSampler;
+    private final ZipfSampler userSampler;
+
+    public LoadTargets(URI baseUri, List<Long> filmIds, List<Long> userIds, SplittableRandom random) {
+        if (filmIds.isEmpty() || userIds.size() < 2)
+            throw new IllegalArgumentException("Для нагрузки нужны хотя бы один фильм и два пользователя");
+        this.baseUri = baseUri;
+        this.filmIds = filmIds.stream().mapToLong(Long::longValue).toArray();
+        this.userIds = userIds.stream().mapToLong(Long::longValue).toArray();
+        filmSampler = new ZipfSampler(this.filmIds.length, 1.0, random);
+        userSampler = new ZipfSampler(this.userIds.length, 1.0, random);
+    }
+
+    public HttpRequest request(LoadRoute route, SplittableRandom random) {
+        return switch (route) {
+            case POPULAR_FILMS -> get("/films/popular?count=10");
+            case FILM_BY_ID -> get("/films/" + film(random));
+            case FRIENDS -> get("/users/" + user(random) + "/friends");
+            case COMMON_FRIENDS -> {
+                long userId = user(random);
+                long otherId = user(random);
+                while (otherId == userId) {
+                    otherId = userIds[random.nextInt(userIds.length)];
+                }
+                yield get("/users/" + userId + "/friends/common/" + otherId);
+            }
+            case ADD_LIKE -> send("PUT", "/films/" + film(random) + "/like/" + user(random));
+            case DELETE_LIKE -> send("DELETE", "/films/" + film(random) + "/like/" + user(random));
+        };
+    }
+
+    private long film(SplittableRandom random) {
+        return filmIds[filmSampler.sample(random)];
+    }
+
+    private long user(SplittableRandom random) {
+        return userIds[userSampler.sample(random)];
+    }
+
+    private HttpRequest get(String path) {
+        return send("GET", path);
+    }
+
+    private HttpRequest send(String method, String path) {
+        return HttpRequest.newBuilder(baseUri.resolve(path))
+                .timeout(REQUEST_TIMEOUT)
+                .method(method, HttpRequest.BodyPublishers.noBody())
+                .build();
+    }
+}
@@ -0,0 +1,85 @@
+package ru.yandex.practicum.filmorate.load;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.DataGeneratorApplication;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.generator.DataGenerator;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+//нагрузочный прогон в одной JVM: приложение поднимается на случайном порту с H2 в памяти,
+//заполняется генератором (свойства filmorate.generator.*), затем нагружается по настройкам load.*;
+//при заданных целях load.slo.p99/load.slo.p999 процесс завершается с кодом 1, если они не выполнены
+public class LoadTestApplication {
+    private static final Map<String, String> DEFAULTS = Map.of(
+            "server.port", "0",
+            "spring.datasource.url", "jdbc:h2:mem:load;DB_CLOSE_DELAY=-1;LAZY_QUERY_EXECUTION=1",
+            "spring.sql.init.mode", "always",
+            "logging.level.root", "WARN",
+            "logging.level.org.zalando.logbook", "OFF",
+            "logging.level.org.springframework.jdbc.datasource.init.ScriptUtils", "WARN");
+
+    public record LoadResult(LoadSettings settings, LoadReport report) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        applyDefaults();
+        LoadResult result = run(args);
+        result.report().print(System.out);
+
+        List<String> violations = result.report().sloViolations(result.settings().getSloP99(),
+                result.settings().getSloP999());
+        violations.forEach(violation -> System.out.println("Цель не выполнена - " + violation));
+        System.exit(violations.isEmpty() ? 0 : 1);
+    }
+
+    //значения по умолчанию - системные свойства, чтобы перекрыть application.properties,
+    //но уступить явно заданным -D и аргументам командной строки
+    static void applyDefaults() {
+        DEFAULTS.forEach((key, value) -> {
+            if (System.getProperty(key) == null)
+                System.setProperty(key, value);
+        });
+    }
+
+    //один прогон: запуск приложения, генерация данных, нагрузка и остановка приложения
+    static LoadResult run(String... args) throws InterruptedException {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(FilmorateApplication.class)
+                .logStartupInfo(false)
+                .run(args)) {
+            Environment environment = context.getEnvironment();
+            LoadSettings settings = LoadSettings.from(environment);
+            System.out.println("Генерация данных: " + context.getBean(DataGenerator.class)
+                    .generate(DataGeneratorApplication.settingsFrom(environment)));
+
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            List<Long> filmIds = jdbcTemplate.queryForList("SELECT id FROM films ORDER BY id", Long.class);
+            List<Long> userIds = jdbcTemplate.queryForList("SELECT id FROM users ORDER BY id", Long.class);
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            LoadTargets targets = new LoadTargets(URI.create("http://localhost:" + port),
+                    filmIds, userIds, new SplittableRandom(settings.getSeed()));
+
+            System.out.printf("Нагрузка %s: %d запросов/с, прогрев %d с, замер %d с%n", settings.getMix(),
+                    settings.getRate(), settings.getWarmup().toSeconds(), settings.getDuration().toSeconds());
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                HttpClient client = HttpClient.newBuilder()
+                        .version(HttpClient.Version.HTTP_1_1)
+                        .connectTimeout(Duration.ofSeconds(5))
+                        .executor(executor)
+                        .build();
+                return new LoadResult(settings, new OpenLoadDriver(client, targets, settings).run());
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package ru.yandex.practicum.filmorate.load;
+
+import lombok.RequiredArgsConstructor;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.LockSupport;
+
+//открытая модель нагрузки: запросы поступают по расписанию с заданной интенсивностью
+//независимо от того, успел ли сервер ответить на предыдущие; отправка асинхронная,
+//ответы обрабатываются потоками HTTP-клиента
+@RequiredArgsConstructor
+public class OpenLoadDriver {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final HttpClient client;
+    private final LoadTargets targets;
+    private final LoadSettings settings;
+
+    public LoadReport run() throws InterruptedException {
+        Map<LoadRoute, RouteStats> stats = new EnumMap<>(LoadRoute.class);
+        for (LoadRoute route : LoadRoute.values()) {
+            stats.put(route, new RouteStats());
+        }
+        Semaphore inFlight = new Semaphore(settings.getMaxInFlight());
+        SplittableRandom random = new SplittableRandom(settings.getSeed());
+
+        long start = System.nanoTime();
+        long measureStart = start + settings.getWarmup().toNanos();
+        long end = measureStart + settings.getDuration().toNanos();
+        for (long i = 0; ; i++) {
+            //момент отправки считается от начала, а не от предыдущего запроса, чтобы ошибка не накапливалась
+            long intendedStart = start + i * NANOS_PER_SECOND / settings.getRate();
+            if (intendedStart >= end)
+                break;
+            waitUntil(intendedStart);
+
+            LoadRoute route = settings.getMix().next(random);
+            //запросы прогрева отправляются, но не учитываются
+            RouteStats routeStats = intendedStart >= measureStart ? stats.get(route) : null;
+            if (!inFlight.tryAcquire()) {
+                if (routeStats != null)
+                    routeStats.recordRejected();
+                continue;
+            }
+            client.sendAsync(targets.request(route, random), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        long finish = System.nanoTime();
+                        inFlight.release();
+                        if (routeStats != null)
+                            routeStats.record(finish - intendedStart, error == null && response.statusCode() < 400);
+                    });
+        }
+        //дожидаемся ответов на все отправленные запросы
+        inFlight.acquire(settings.getMaxInFlight());
+        return new LoadReport(stats, settings.getDuration());
+    }
+
+    private static void waitUntil(long nanoTime) {
+        long remaining;
+        while ((remaining = nanoTime - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package ru.yandex.practicum.filmorate.load;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+//задержки одного маршрута в микросекундах; запись идёт из потоков HTTP-клиента
+public class RouteStats {
+    private final Histogram latencies = new ConcurrentHistogram(3);
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    //задержка отсчитывается от запланированного момента отправки, а не от фактического,
+    //поэтому очередь перед сервером не прячет медленные ответы (coordinated omission)
+    public void record(long latencyNanos, boolean success) {
+        latencies.recordValue(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+        if (!success)
+            errors.increment();
+    }
+
+    public void recordRejected() {
+        rejected.increment();
+    }
+
+    public Histogram getLatencies() {
+        return latencies;
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,35 @@
+package ru.yandex.practicum.filmorate.load;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+//сравнение обработки запросов платформенными и виртуальными потоками: одна и та же нагрузка
+//(по умолчанию смесь likes-friends) подаётся на приложение, запущенное сначала в одном, затем
+//в другом режиме, каждый раз на новой БД с теми же данными; в конце - сводная таблица
+public class ThreadModeBenchmark {
+    public static void main(String[] args) throws Exception {
+        if (System.getProperty("load.mix") == null)
+            System.setProperty("load.mix", LoadMix.LIKES_FRIENDS.name());
+        LoadTestApplication.applyDefaults();
+
+        Map<String, LoadReport> reports = new LinkedHashMap<>();
+        for (String mode : List.of("platform", "virtual")) {
+            List<String> runArgs = new ArrayList<>(Arrays.asList(args));
+            runArgs.add("--spring.threads.virtual.enabled=" + mode.equals("virtual"));
+            runArgs.add("--spring.datasource.url=jdbc:h2:mem:load-" + mode
+                    + ";DB_CLOSE_DELAY=-1;LAZY_QUERY_EXECUTION=1");
+            System.out.println("Потоки: " + mode);
+            LoadReport report = LoadTestApplication.run(runArgs.toArray(new String[0])).report();
+            report.print(System.out);
+            reports.put(mode, report);
+        }
+
+        System.out.println();
+        LoadReport.printHeader(System.out, "threads");
+        reports.forEach((mode, report) -> report.printTotal(System.out, mode));
+        System.exit(0);
+    }
+}
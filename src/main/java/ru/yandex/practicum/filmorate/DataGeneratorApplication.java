@@ -0,0 +1,45 @@
+package ru.yandex.practicum.filmorate;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import ru.yandex.practicum.filmorate.generator.DataGenerator;
+import ru.yandex.practicum.filmorate.generator.GeneratorSettings;
+
+//заполнение БД приложения сгенерированными данными без запуска веб-сервера, например:
+//java -cp filmorate.jar -Dloader.main=ru.yandex.practicum.filmorate.DataGeneratorApplication
+//     org.springframework.boot.loader.launch.PropertiesLauncher
+//     --filmorate.generator.users=1000000 --filmorate.generator.films=50000 --filmorate.generator.seed=7
+public class DataGeneratorApplication {
+	public static void main(String[] args) {
+		try (ConfigurableApplicationContext context = new SpringApplicationBuilder(FilmorateApplication.class)
+				.web(WebApplicationType.NONE)
+				.run(args)) {
+			context.getBean(DataGenerator.class).generate(settingsFrom(context.getEnvironment()));
+		}
+	}
+
+	public static GeneratorSettings settingsFrom(Environment environment) {
+		GeneratorSettings defaults = GeneratorSettings.builder().build();
+		String prefix = "filmorate.generator.";
+		return GeneratorSettings.builder()
+				.seed(environment.getProperty(prefix + "seed", Long.class, defaults.getSeed()))
+				.users(environment.getProperty(prefix + "users", Integer.class, defaults.getUsers()))
+				.films(environment.getProperty(prefix + "films", Integer.class, defaults.getFilms()))
+				.averageFriends(environment.getProperty(prefix + "average-friends", Integer.class,
+						defaults.getAverageFriends()))
+				.friendDegreeExponent(environment.getProperty(prefix + "friend-degree-exponent", Double.class,
+						defaults.getFriendDegreeExponent()))
+				.averageLikesPerUser(environment.getProperty(prefix + "average-likes-per-user", Integer.class,
+						defaults.getAverageLikesPerUser()))
+				.likesPerUserExponent(environment.getProperty(prefix + "likes-per-user-exponent", Double.class,
+						defaults.getLikesPerUserExponent()))
+				.filmPopularityExponent(environment.getProperty(prefix + "film-popularity-exponent", Double.class,
+						defaults.getFilmPopularityExponent()))
+				.maxGenresPerFilm(environment.getProperty(prefix + "max-genres-per-film", Integer.class,
+						defaults.getMaxGenresPerFilm()))
+				.batchSize(environment.getProperty(prefix + "batch-size", Integer.class, defaults.getBatchSize()))
+				.build();
+	}
+}
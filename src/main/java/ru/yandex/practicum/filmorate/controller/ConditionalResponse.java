@@ -0,0 +1,26 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+//условные GET: слабый ETag строится из версии данных, которая читается из памяти;
+//если он совпал с If-None-Match, отдаётся 304 без вызова body, то есть без обращения к БД
+public class ConditionalResponse {
+    //фильмы и пользователи меняются в любой момент: клиент переспрашивает каждый раз
+    public static final CacheControl REVALIDATE = CacheControl.noCache();
+    //справочники жанров и рейтингов меняются только вместе с приложением
+    public static final CacheControl REFERENCE = CacheControl.maxAge(Duration.ofDays(1)).cachePublic();
+
+    public static <T> ResponseEntity<T> of(WebRequest request, long version, CacheControl cacheControl,
+                                           Supplier<T> body) {
+        String etag = "W/\"" + Long.toHexString(version) + "\"";
+        if (request.checkNotModified(etag))
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+        return ResponseEntity.ok().eTag(etag).cacheControl(cacheControl).body(body.get());
+    }
+}
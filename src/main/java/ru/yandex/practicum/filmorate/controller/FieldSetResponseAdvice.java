@@ -0,0 +1,75 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.AbstractMappingJacksonResponseBodyAdvice;
+import ru.yandex.practicum.filmorate.model.FieldSet;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+//?fields=id,name,likesCount: в JSON фильмов и пользователей выводятся только перечисленные поля.
+//Набор полей проверяет и передаёт хранилищу сервис, здесь он только применяется к сериализации,
+//и только для методов контроллеров с параметром fields: остальные его не принимают и не проверяют.
+//Без параметра фильтр моделей выводит все поля
+@RestControllerAdvice
+public class FieldSetResponseAdvice extends AbstractMappingJacksonResponseBodyAdvice {
+    private static final ParameterNameDiscoverer PARAMETER_NAMES = new DefaultParameterNameDiscoverer();
+
+    //метод контроллера -> принимает ли он параметр fields
+    private final Map<Method, Boolean> acceptsFields = new ConcurrentHashMap<>();
+
+    @Bean
+    public static Jackson2ObjectMapperBuilderCustomizer fieldSetFilterCustomizer() {
+        return builder -> builder.filters(new SimpleFilterProvider()
+                .setDefaultFilter(SimpleBeanPropertyFilter.serializeAll()));
+    }
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        Method method = returnType.getMethod();
+        return super.supports(returnType, converterType)
+                && method != null
+                && acceptsFields.computeIfAbsent(method, FieldSetResponseAdvice::hasFieldsParameter);
+    }
+
+    private static boolean hasFieldsParameter(Method method) {
+        for (int i = 0; i < method.getParameterCount(); i++) {
+            MethodParameter parameter = new MethodParameter(method, i);
+            parameter.initParameterNameDiscovery(PARAMETER_NAMES);
+            RequestParam requestParam = parameter.getParameterAnnotation(RequestParam.class);
+            if (requestParam == null)
+                continue;
+            String name = requestParam.name().isEmpty() ? parameter.getParameterName() : requestParam.name();
+            if (FieldSet.PARAMETER.equals(name))
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    protected void beforeBodyWriteInternal(MappingJacksonValue bodyContainer, MediaType contentType,
+                                           MethodParameter returnType, ServerHttpRequest request,
+                                           ServerHttpResponse response) {
+        if (!(request instanceof ServletServerHttpRequest servletRequest))
+            return;
+        FieldSet fields = FieldSet.parse(servletRequest.getServletRequest().getParameter(FieldSet.PARAMETER));
+        if (fields.names() != null)
+            bodyContainer.setFilters(new SimpleFilterProvider()
+                    .addFilter(FieldSet.FILTER, SimpleBeanPropertyFilter.filterOutAllExcept(fields.names())));
+    }
+}
@@ -1,32 +1,87 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
 import jakarta.validation.Valid;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.BatchOperationResult;
+import ru.yandex.practicum.filmorate.model.FieldSet;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
 import ru.yandex.practicum.filmorate.service.FilmServiceDb;
 import ru.yandex.practicum.filmorate.service.interfaces.FilmService;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Collection;
+import java.util.List;
 
 @RestController
 @RequestMapping("/films")
 public class FilmController {
+    private static final String NDJSON = "application/x-ndjson";
+
     private final FilmService filmService;
+    private final ObjectMapper objectMapper;
 
-    public FilmController(FilmServiceDb filmService) {
+    public FilmController(FilmServiceDb filmService, ObjectMapper objectMapper) {
         this.filmService = filmService;
+        this.objectMapper = objectMapper;
     }
 
+    //?after=<id>&limit=<n> - постраничная выдача по курсору, без параметров - весь список;
+    //?fields=id,name,likesCount - только перечисленные поля, лишние данные не загружаются
     @GetMapping
-    public Collection<Film> getFilms() {
-        return filmService.getFilms();
+    public ResponseEntity<Collection<Film>> getFilms(@RequestParam(required = false) Long after,
+                                                     @RequestParam(required = false) Integer limit,
+                                                     @RequestParam(required = false) String fields) {
+        if (after == null && limit == null)
+            return ResponseEntity.ok(filmService.getFilms(FieldSet.parse(fields)));
+        return PageResponse.of(filmService.getFilms(after, limit, FieldSet.parse(fields)));
+    }
+
+    //выгрузка всего каталога в формате NDJSON: по одному фильму в строке,
+    //фильмы пишутся в ответ по мере чтения из БД
+    @GetMapping(value = "/stream", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamFilms() {
+        StreamingResponseBody body = outputStream -> {
+            try (SequenceWriter writer = objectMapper.writer()
+                    .withRootValueSeparator("\n")
+                    .writeValues(outputStream)) {
+                filmService.streamFilms(film -> {
+                    try {
+                        writer.write(film);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON))
+                .body(body);
+    }
+
+    //?q=<запрос>&limit=<n> - поиск по словам названия и описания, последнее слово - по началу
+    @GetMapping("/search")
+    public List<Film> searchFilms(@RequestParam(required = false) String q,
+                                  @RequestParam(required = false) Integer limit) {
+        return filmService.searchFilms(q, limit);
     }
 
+    //If-None-Match с актуальным ETag получает 304 без чтения фильма из БД
     @GetMapping("/{filmId}")
-    public Film getFilmById(@PathVariable Long filmId) {
-        return filmService.getFilmById(filmId);
+    public ResponseEntity<Film> getFilmById(@PathVariable Long filmId,
+                                            @RequestParam(required = false) String fields,
+                                            WebRequest request) {
+        return ConditionalResponse.of(request, filmService.getFilmVersion(filmId), ConditionalResponse.REVALIDATE,
+                () -> filmService.getFilmById(filmId, FieldSet.parse(fields)));
     }
 
     @PostMapping
@@ -58,8 +113,27 @@ public class FilmController {
         filmService.deleteLikeFromFilm(id, userId);
     }
 
+    //пакет операций с лайками, в ответе результат для каждой операции в том же порядке
+    @PostMapping("/likes/batch")
+    public List<BatchOperationResult> applyLikeOperations(@RequestBody List<LikeOperation> operations) {
+        return filmService.applyLikeOperations(operations);
+    }
+
+    //?genreId=<id>&year=<год> - топ внутри жанра и/или года выхода;
+    //ETag меняется при любом изменении данных
     @GetMapping("/popular")
-    public Collection<Film> getTopPopularFilms(@RequestParam(defaultValue = "10") Integer count) {
-        return filmService.getTopPopularFilms(count);
+    public ResponseEntity<Collection<Film>> getTopPopularFilms(@RequestParam(defaultValue = "10") Integer count,
+                                                               @RequestParam(required = false) Integer genreId,
+                                                               @RequestParam(required = false) Integer year,
+                                                               @RequestParam(required = false) String fields,
+                                                               WebRequest request) {
+        return ConditionalResponse.of(request, filmService.getDataVersion(), ConditionalResponse.REVALIDATE,
+                () -> filmService.getTopPopularFilms(count, genreId, year, FieldSet.parse(fields)));
+    }
+
+    //фильмы с наиболее совпадающими множествами лайкнувших, по умолчанию 10
+    @GetMapping("/{id}/similar")
+    public List<Film> getSimilarFilms(@PathVariable Long id, @RequestParam(required = false) Integer limit) {
+        return filmService.getSimilarFilms(id, limit);
     }
 }
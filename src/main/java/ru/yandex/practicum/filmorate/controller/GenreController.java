@@ -1,10 +1,12 @@
 package ru.yandex.practicum.filmorate.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.service.interfaces.GenreService;
 
@@ -16,13 +18,16 @@ import java.util.Collection;
 public class GenreController {
     private final GenreService genreService;
 
+    //справочник отдаётся с долгим Cache-Control и ETag для проверки после его истечения
     @GetMapping
-    public Collection<Genre> getGenres() {
-        return genreService.getGenres();
+    public ResponseEntity<Collection<Genre>> getGenres(WebRequest request) {
+        return ConditionalResponse.of(request, genreService.getVersion(), ConditionalResponse.REFERENCE,
+                genreService::getGenres);
     }
 
     @GetMapping("/{id}")
-    public Genre getGenreById(@PathVariable Integer id) {
-        return genreService.getGenreById(id);
+    public ResponseEntity<Genre> getGenreById(@PathVariable Integer id, WebRequest request) {
+        return ConditionalResponse.of(request, genreService.getVersion(), ConditionalResponse.REFERENCE,
+                () -> genreService.getGenreById(id));
     }
 }
@@ -0,0 +1,40 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.model.ImportReport;
+import ru.yandex.practicum.filmorate.service.importer.ImportFormat;
+import ru.yandex.practicum.filmorate.service.interfaces.BulkImportService;
+
+import java.io.IOException;
+
+//тело запроса - файл text/csv или application/x-ndjson, читается потоком без загрузки в память
+@RestController
+@RequestMapping("/import")
+@RequiredArgsConstructor
+public class ImportController {
+    private final BulkImportService bulkImportService;
+
+    @PostMapping("/films")
+    public ImportReport importFilms(HttpServletRequest request) throws IOException {
+        return bulkImportService.importFilms(request.getInputStream(), ImportFormat.fromContentType(request.getContentType()));
+    }
+
+    @PostMapping("/users")
+    public ImportReport importUsers(HttpServletRequest request) throws IOException {
+        return bulkImportService.importUsers(request.getInputStream(), ImportFormat.fromContentType(request.getContentType()));
+    }
+
+    @PostMapping("/likes")
+    public ImportReport importLikes(HttpServletRequest request) throws IOException {
+        return bulkImportService.importLikes(request.getInputStream(), ImportFormat.fromContentType(request.getContentType()));
+    }
+
+    @PostMapping("/friendships")
+    public ImportReport importFriendships(HttpServletRequest request) throws IOException {
+        return bulkImportService.importFriendships(request.getInputStream(), ImportFormat.fromContentType(request.getContentType()));
+    }
+}
@@ -1,10 +1,12 @@
 package ru.yandex.practicum.filmorate.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.model.MPA;
 import ru.yandex.practicum.filmorate.service.interfaces.MpaService;
 
@@ -16,13 +18,16 @@ import java.util.Collection;
 public class MpaController {
     private final MpaService mpaService;
 
+    //справочник отдаётся с долгим Cache-Control и ETag для проверки после его истечения
     @GetMapping
-    public Collection<MPA> getMpa() {
-        return mpaService.getMpa();
+    public ResponseEntity<Collection<MPA>> getMpa(WebRequest request) {
+        return ConditionalResponse.of(request, mpaService.getVersion(), ConditionalResponse.REFERENCE,
+                mpaService::getMpa);
     }
 
     @GetMapping("/{id}")
-    public MPA getMpaById(@PathVariable Integer id) {
-        return mpaService.getMpaById(id);
+    public ResponseEntity<MPA> getMpaById(@PathVariable Integer id, WebRequest request) {
+        return ConditionalResponse.of(request, mpaService.getVersion(), ConditionalResponse.REFERENCE,
+                () -> mpaService.getMpaById(id));
     }
 }
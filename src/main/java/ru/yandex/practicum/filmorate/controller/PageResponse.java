@@ -0,0 +1,18 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.springframework.http.ResponseEntity;
+import ru.yandex.practicum.filmorate.model.Page;
+
+import java.util.Collection;
+
+//тело ответа остаётся массивом, курсор следующей страницы передаётся в заголовке
+public class PageResponse {
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    public static <T> ResponseEntity<Collection<T>> of(Page<T> page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.nextCursor() != null)
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor().toString());
+        return response.body(page.items());
+    }
+}
@@ -3,21 +3,36 @@ package ru.yandex.practicum.filmorate.controller;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import ru.yandex.practicum.filmorate.model.BatchOperationResult;
+import ru.yandex.practicum.filmorate.model.FieldSet;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FriendshipOperation;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.interfaces.FilmService;
 import ru.yandex.practicum.filmorate.service.interfaces.UserService;
 
 import java.util.Collection;
+import java.util.List;
 
 @RestController
 @RequestMapping("/users")
 @RequiredArgsConstructor
 public class UserController {
     private final UserService userService;
+    private final FilmService filmService;
 
+    //?after=<id>&limit=<n> - постраничная выдача по курсору, без параметров - весь список;
+    //?fields=id,login,friendsCount - только перечисленные поля
     @GetMapping
-    public Collection<User> getUsers() {
-        return userService.getUsers();
+    public ResponseEntity<Collection<User>> getUsers(@RequestParam(required = false) Long after,
+                                                     @RequestParam(required = false) Integer limit,
+                                                     @RequestParam(required = false) String fields) {
+        if (after == null && limit == null)
+            return ResponseEntity.ok(userService.getUsers(FieldSet.parse(fields)));
+        return PageResponse.of(userService.getUsers(after, limit, FieldSet.parse(fields)));
     }
 
     @PostMapping
@@ -32,8 +47,11 @@ public class UserController {
     }
 
     @GetMapping("/{userId}")
-    public User getUserById(@PathVariable Long id) {
-        return userService.getUserById(id);
+    public ResponseEntity<User> getUserById(@PathVariable Long userId,
+                                            @RequestParam(required = false) String fields,
+                                            WebRequest request) {
+        return ConditionalResponse.of(request, userService.getUserVersion(userId), ConditionalResponse.REVALIDATE,
+                () -> userService.getUserById(userId, FieldSet.parse(fields)));
     }
 
     @DeleteMapping("/{userId}")
@@ -54,13 +72,35 @@ public class UserController {
         userService.deleteFriend(id, friendId);
     }
 
+    //пакет операций с друзьями, в ответе результат для каждой операции в том же порядке
+    @PostMapping("/friends/batch")
+    public List<BatchOperationResult> applyFriendshipOperations(@RequestBody List<FriendshipOperation> operations) {
+        return userService.applyFriendshipOperations(operations);
+    }
+
     @GetMapping("/{id}/friends")
-    public Collection<User> getFriendsOfUser(@PathVariable Long id) {
-        return userService.getFriendsOfUser(id);
+    public ResponseEntity<Collection<User>> getFriendsOfUser(@PathVariable Long id,
+                                                             @RequestParam(required = false) Long after,
+                                                             @RequestParam(required = false) Integer limit) {
+        if (after == null && limit == null)
+            return ResponseEntity.ok(userService.getFriendsOfUser(id));
+        return PageResponse.of(userService.getFriendsOfUser(id, after, limit));
     }
 
     @GetMapping("/{id}/friends/common/{otherId}")
     public Collection<User> getIntersectingFriends(@PathVariable Long id, @PathVariable Long otherId) {
         return userService.getIntersectingFriends(id, otherId);
     }
+
+    //возможные друзья: друзья друзей по убыванию числа общих друзей, по умолчанию 10
+    @GetMapping("/{id}/friends/suggestions")
+    public List<User> getFriendSuggestions(@PathVariable Long id, @RequestParam(required = false) Integer limit) {
+        return userService.getFriendSuggestions(id, limit);
+    }
+
+    //фильмы, понравившиеся пользователям с похожими лайками, по умолчанию 10
+    @GetMapping("/{id}/recommendations")
+    public List<Film> getRecommendedFilms(@PathVariable Long id, @RequestParam(required = false) Integer limit) {
+        return filmService.getRecommendedFilms(id, limit);
+    }
 }
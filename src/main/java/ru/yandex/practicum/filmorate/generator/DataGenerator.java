@@ -0,0 +1,211 @@
+package ru.yandex.practicum.filmorate.generator;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.dao.StorageReloader;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+//генератор данных для нагрузочных проверок: пишет пользователей, фильмы, жанры фильмов,
+//лайки и дружбу напрямую в таблицы batch-запросами. Популярность фильмов, жанров и рейтингов
+//распределена по Ципфу, число друзей и лайков пользователя - по Парето, поэтому есть
+//и фильмы-хиты с десятками тысяч лайков, и пользователи с тысячами друзей.
+//Все случайные величины берутся из одного SplittableRandom(seed)
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class DataGenerator {
+    private static final LocalDate FIRST_RELEASE = LocalDate.of(1950, 1, 1);
+    private static final LocalDate FIRST_BIRTHDAY = LocalDate.of(1950, 1, 1);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final StorageReloader storageReloader;
+
+    public GenerationReport generate(GeneratorSettings settings) {
+        long startedAt = System.currentTimeMillis();
+        SplittableRandom random = new SplittableRandom(settings.getSeed());
+
+        long[] userIds = insertUsers(settings, random);
+        long[] filmIds = insertFilms(settings, random);
+        long filmGenres = insertFilmGenres(settings, filmIds, random);
+        long likes = insertLikes(settings, userIds, filmIds, random);
+        long friendships = insertFriendships(settings, userIds, random);
+
+        //таблицы заполнены в обход DAO, индексы и кэши в памяти строятся заново
+        storageReloader.reloadAll();
+
+        GenerationReport report = new GenerationReport(userIds.length, filmIds.length, filmGenres, likes,
+                friendships, System.currentTimeMillis() - startedAt);
+        log.info("Сгенерировано: {}", report);
+        return report;
+    }
+
+    private long[] insertUsers(GeneratorSettings settings, SplittableRandom random) {
+        String insertQuery = "INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)";
+        long maxIdBefore = maxId("users");
+
+        try (BatchInserter inserter = new BatchInserter(insertQuery, settings.getBatchSize())) {
+            for (int i = 0; i < settings.getUsers(); i++) {
+                String login = "user" + settings.getSeed() + "_" + i;
+                inserter.add(login + "@filmorate.ru", login, "User " + i,
+                        Date.valueOf(FIRST_BIRTHDAY.plusDays(random.nextInt(365 * 55))));
+            }
+        }
+        return idsAfter("users", maxIdBefore);
+    }
+
+    private long[] insertFilms(GeneratorSettings settings, SplittableRandom random) {
+        String insertQuery = "INSERT INTO films (name, description, release_date, duration, mpa_id) VALUES (?, ?, ?, ?, ?)";
+        long maxIdBefore = maxId("films");
+        List<Integer> mpaIds = jdbcTemplate.queryForList("SELECT id FROM mpa ORDER BY id", Integer.class);
+        ZipfSampler mpaSampler = new ZipfSampler(mpaIds.size(), settings.getFilmPopularityExponent(), random);
+
+        try (BatchInserter inserter = new BatchInserter(insertQuery, settings.getBatchSize())) {
+            for (int i = 0; i < settings.getFilms(); i++) {
+                inserter.add("Film " + i, "Generated film " + i,
+                        Date.valueOf(FIRST_RELEASE.plusDays(random.nextInt(365 * 75))),
+                        60 + random.nextInt(120),
+                        mpaIds.get(mpaSampler.sample(random)));
+            }
+        }
+        return idsAfter("films", maxIdBefore);
+    }
+
+    private long insertFilmGenres(GeneratorSettings settings, long[] filmIds, SplittableRandom random) {
+        String insertQuery = "INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)";
+        List<Integer> genreIds = jdbcTemplate.queryForList("SELECT id FROM genres ORDER BY id", Integer.class);
+        ZipfSampler genreSampler = new ZipfSampler(genreIds.size(), settings.getFilmPopularityExponent(), random);
+        int maxGenres = Math.min(settings.getMaxGenresPerFilm(), genreIds.size());
+
+        try (BatchInserter inserter = new BatchInserter(insertQuery, settings.getBatchSize())) {
+            for (long filmId : filmIds) {
+                int count = 1 + random.nextInt(maxGenres);
+                Set<Integer> genres = new HashSet<>();
+                while (genres.size() < count) {
+                    genres.add(genreIds.get(genreSampler.sample(random)));
+                }
+                for (Integer genreId : genres) {
+                    inserter.add(filmId, genreId);
+                }
+            }
+            return inserter.getTotal();
+        }
+    }
+
+    private long insertLikes(GeneratorSettings settings, long[] userIds, long[] filmIds, SplittableRandom random) {
+        String insertQuery = "INSERT INTO film_likes (film_id, user_id) VALUES (?, ?)";
+        if (filmIds.length == 0)
+            return 0;
+        ZipfSampler filmSampler = new ZipfSampler(filmIds.length, settings.getFilmPopularityExponent(), random);
+
+        try (BatchInserter inserter = new BatchInserter(insertQuery, settings.getBatchSize())) {
+            for (long userId : userIds) {
+                int count = pareto(settings.getAverageLikesPerUser(), settings.getLikesPerUserExponent(),
+                        filmIds.length, random);
+                for (int filmIndex : distinctSamples(filmSampler, count, -1, random)) {
+                    inserter.add(filmIds[filmIndex], userId);
+                }
+            }
+            return inserter.getTotal();
+        }
+    }
+
+    //дружба односторонняя, как в UserDbStorage: друзей пользователь выбирает сам,
+    //а популярные пользователи (по Ципфу) попадают в друзья чаще остальных
+    private long insertFriendships(GeneratorSettings settings, long[] userIds, SplittableRandom random) {
+        String insertQuery = "INSERT INTO friendship (user_id, friend_id) VALUES (?, ?)";
+        if (userIds.length < 2)
+            return 0;
+        ZipfSampler userSampler = new ZipfSampler(userIds.length, settings.getFilmPopularityExponent(), random);
+
+        try (BatchInserter inserter = new BatchInserter(insertQuery, settings.getBatchSize())) {
+            for (int userIndex = 0; userIndex < userIds.length; userIndex++) {
+                int count = pareto(settings.getAverageFriends(), settings.getFriendDegreeExponent(),
+                        userIds.length - 1, random);
+                for (int friendIndex : distinctSamples(userSampler, count, userIndex, random)) {
+                    inserter.add(userIds[userIndex], userIds[friendIndex]);
+                }
+            }
+            return inserter.getTotal();
+        }
+    }
+
+    //целое по Парето с заданным средним: x = xm / U^(1 / alpha), где xm = mean * (alpha - 1) / alpha
+    private int pareto(int mean, double alpha, int max, SplittableRandom random) {
+        if (mean <= 0)
+            return 0;
+        double scale = mean * (alpha - 1) / alpha;
+        double value = scale / Math.pow(1 - random.nextDouble(), 1 / alpha);
+        return (int) Math.min(max, Math.round(value));
+    }
+
+    //count разных номеров, кроме excluded; при длинном хвосте распределения часть попыток
+    //попадает в уже выбранные номера, поэтому число попыток ограничено
+    private List<Integer> distinctSamples(ZipfSampler sampler, int count, int excluded, SplittableRandom random) {
+        Set<Integer> result = new HashSet<>();
+        List<Integer> ordered = new ArrayList<>(count);
+        for (int attempt = 0; ordered.size() < count && attempt < count * 10; attempt++) {
+            int index = sampler.sample(random);
+            if (index != excluded && result.add(index))
+                ordered.add(index);
+        }
+        return ordered;
+    }
+
+    private long maxId(String table) {
+        return jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + table, Long.class);
+    }
+
+    private long[] idsAfter(String table, long maxIdBefore) {
+        return jdbcTemplate.queryForList("SELECT id FROM " + table + " WHERE id > ? ORDER BY id", Long.class, maxIdBefore)
+                .stream()
+                .mapToLong(Long::longValue)
+                .toArray();
+    }
+
+    //накапливает строки и отправляет их batch-запросами по batchSize строк
+    private class BatchInserter implements AutoCloseable {
+        private final String query;
+        private final int batchSize;
+        private final List<Object[]> batch;
+        private long total;
+
+        BatchInserter(String query, int batchSize) {
+            this.query = query;
+            this.batchSize = batchSize;
+            this.batch = new ArrayList<>(batchSize);
+        }
+
+        void add(Object... args) {
+            batch.add(args);
+            if (batch.size() == batchSize)
+                flush();
+        }
+
+        long getTotal() {
+            flush();
+            return total;
+        }
+
+        private void flush() {
+            if (batch.isEmpty())
+                return;
+            jdbcTemplate.batchUpdate(query, batch);
+            total += batch.size();
+            batch.clear();
+        }
+
+        @Override
+        public void close() {
+            flush();
+        }
+    }
+}
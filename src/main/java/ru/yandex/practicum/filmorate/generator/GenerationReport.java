@@ -0,0 +1,6 @@
+package ru.yandex.practicum.filmorate.generator;
+
+//сколько строк записано в каждую таблицу
+public record GenerationReport(long users, long films, long filmGenres, long likes, long friendships,
+                               long elapsedMillis) {
+}
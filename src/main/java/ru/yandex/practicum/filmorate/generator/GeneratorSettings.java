@@ -0,0 +1,34 @@
+package ru.yandex.practicum.filmorate.generator;
+
+import lombok.Builder;
+import lombok.Value;
+
+//параметры генерации: при одинаковых параметрах и seed генератор
+//пишет в пустую БД одни и те же данные
+@Value
+@Builder(toBuilder = true)
+public class GeneratorSettings {
+    @Builder.Default
+    long seed = 42;
+    @Builder.Default
+    int users = 10_000;
+    @Builder.Default
+    int films = 2_000;
+    //среднее число друзей; степени распределены по Парето с показателем friendDegreeExponent
+    @Builder.Default
+    int averageFriends = 20;
+    @Builder.Default
+    double friendDegreeExponent = 2.1;
+    //среднее число лайков пользователя, тоже по Парето
+    @Builder.Default
+    int averageLikesPerUser = 30;
+    @Builder.Default
+    double likesPerUserExponent = 2.5;
+    //показатель закона Ципфа для выбора фильма, жанра и рейтинга
+    @Builder.Default
+    double filmPopularityExponent = 1.0;
+    @Builder.Default
+    int maxGenresPerFilm = 3;
+    @Builder.Default
+    int batchSize = 1_000;
+}
@@ -0,0 +1,42 @@
+package ru.yandex.practicum.filmorate.generator;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+//выбор номера из [0, n) по закону Ципфа: вероятность k-го по популярности номера
+//пропорциональна 1 / (k + 1)^exponent. Ранги перемешаны, чтобы популярность не совпадала
+//с порядком id; выбор - двоичный поиск по заранее посчитанной функции распределения
+public class ZipfSampler {
+    private final double[] cumulative;
+    private final int[] indexByRank;
+
+    public ZipfSampler(int n, double exponent, SplittableRandom random) {
+        cumulative = new double[n];
+        double sum = 0;
+        for (int rank = 0; rank < n; rank++) {
+            sum += 1.0 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < n; rank++) {
+            cumulative[rank] /= sum;
+        }
+
+        indexByRank = new int[n];
+        for (int i = 0; i < n; i++) {
+            indexByRank[i] = i;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = indexByRank[i];
+            indexByRank[i] = indexByRank[j];
+            indexByRank[j] = swap;
+        }
+    }
+
+    public int sample(SplittableRandom random) {
+        int rank = Arrays.binarySearch(cumulative, random.nextDouble());
+        if (rank < 0)
+            rank = -rank - 1;
+        return indexByRank[Math.min(rank, indexByRank.length - 1)];
+    }
+}
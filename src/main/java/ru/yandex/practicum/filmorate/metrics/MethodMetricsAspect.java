@@ -0,0 +1,105 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Page;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+//метрики публичных методов хранилищ и сервисов:
+//filmorate.storage / filmorate.service - таймеры вызовов (число вызовов, время, ошибки в теге exception),
+//filmorate.storage.rows / filmorate.service.rows - сколько записей вернул метод
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class MethodMetricsAspect {
+    private final MeterRegistry meterRegistry;
+    //метрики создаются при первом вызове метода (с первой ошибкой данного типа) и дальше берутся
+    //из кеша: построение и регистрация метра на каждый вызов стоят выделений памяти и поиска в реестре
+    private final Map<MeterKey, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<MeterKey, DistributionSummary> rowsSummaries = new ConcurrentHashMap<>();
+
+    //exception - null для успешных вызовов и для числа записей
+    private record MeterKey(String metricName, Method method, Class<? extends Throwable> exception) {
+    }
+
+    @Pointcut("execution(public * ru.yandex.practicum.filmorate.storage.dao..*(..))")
+    public void storageMethod() {
+    }
+
+    @Pointcut("execution(public * ru.yandex.practicum.filmorate.service..*(..))")
+    public void serviceMethod() {
+    }
+
+    @Around("storageMethod()")
+    public Object measureStorage(ProceedingJoinPoint joinPoint) throws Throwable {
+        return measure("filmorate.storage", joinPoint);
+    }
+
+    @Around("serviceMethod()")
+    public Object measureService(ProceedingJoinPoint joinPoint) throws Throwable {
+        return measure("filmorate.service", joinPoint);
+    }
+
+    private Object measure(String metricName, ProceedingJoinPoint joinPoint) throws Throwable {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        Class<? extends Throwable> exception = null;
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            Object result = joinPoint.proceed();
+            Integer rows = countRows(result);
+            if (rows != null)
+                rowsSummaries.computeIfAbsent(new MeterKey(metricName, method, null), this::rowsSummary)
+                        .record(rows);
+            return result;
+        } catch (Throwable ex) {
+            exception = ex.getClass();
+            throw ex;
+        } finally {
+            sample.stop(timers.computeIfAbsent(new MeterKey(metricName, method, exception), this::timer));
+        }
+    }
+
+    private Timer timer(MeterKey key) {
+        return Timer.builder(key.metricName())
+                .description("Время выполнения метода")
+                .tags("class", key.method().getDeclaringClass().getSimpleName(),
+                        "method", key.method().getName(),
+                        "exception", key.exception() != null ? key.exception().getSimpleName() : "none")
+                .register(meterRegistry);
+    }
+
+    private DistributionSummary rowsSummary(MeterKey key) {
+        return DistributionSummary.builder(key.metricName() + ".rows")
+                .description("Число записей, возвращённых методом")
+                .tags("class", key.method().getDeclaringClass().getSimpleName(),
+                        "method", key.method().getName())
+                .register(meterRegistry);
+    }
+
+    //null - метод возвращает не набор записей
+    private Integer countRows(Object result) {
+        if (result instanceof Collection<?> collection)
+            return collection.size();
+        if (result instanceof Optional<?> optional)
+            return optional.isPresent() ? 1 : 0;
+        if (result instanceof Page<?> page)
+            return page.items().size();
+        if (result instanceof Map<?, ?> map)
+            return map.size();
+        return null;
+    }
+}
@@ -0,0 +1,74 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+//в режиме виртуальных потоков (spring.threads.virtual.enabled=true) следит через JFR за закреплением
+//виртуального потока на платформенном: блокировка внутри synchronized или нативного вызова занимает
+//поток-носитель, и при долгих закреплениях виртуальные потоки перестают масштабироваться.
+//Каждое закрепление дольше порога пишется в лог и в таймер filmorate.virtual.pinned с тегом frame -
+//первым кадром стека вне JDK, то есть местом в приложении или библиотеке, где произошло закрепление
+@Slf4j
+@Component
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadPinningMonitor {
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    private final MeterRegistry meterRegistry;
+    private final Duration threshold;
+    private RecordingStream recordingStream;
+
+    public VirtualThreadPinningMonitor(MeterRegistry meterRegistry,
+                                       @Value("${filmorate.virtual-threads.pinning-threshold:20ms}")
+                                       Duration threshold) {
+        this.meterRegistry = meterRegistry;
+        this.threshold = threshold;
+    }
+
+    @PostConstruct
+    public void start() {
+        recordingStream = new RecordingStream();
+        recordingStream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        recordingStream.onEvent(PINNED_EVENT, this::onPinned);
+        recordingStream.startAsync();
+        log.debug("Запущено отслеживание закреплений виртуальных потоков дольше {}", threshold);
+    }
+
+    @PreDestroy
+    public void stop() {
+        recordingStream.close();
+    }
+
+    private void onPinned(RecordedEvent event) {
+        String frame = firstNonJdkFrame(event);
+        Timer.builder("filmorate.virtual.pinned")
+                .description("Время, на которое виртуальный поток закрепился за потоком-носителем")
+                .tags("frame", frame)
+                .register(meterRegistry)
+                .record(event.getDuration());
+        log.warn("Виртуальный поток закреплён на {} мс в {}", event.getDuration().toMillis(), frame);
+    }
+
+    private String firstNonJdkFrame(RecordedEvent event) {
+        if (event.getStackTrace() == null)
+            return "unknown";
+        for (RecordedFrame frame : event.getStackTrace().getFrames()) {
+            String className = frame.getMethod().getType().getName();
+            if (!className.startsWith("java.") && !className.startsWith("jdk.") && !className.startsWith("sun."))
+                return className + "." + frame.getMethod().getName();
+        }
+        return "jdk";
+    }
+}
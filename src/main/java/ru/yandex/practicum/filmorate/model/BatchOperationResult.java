@@ -0,0 +1,35 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//результат одной операции из пакета, index - её позиция в запросе
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchOperationResult {
+    private int index;
+    private Status status;
+    private String message;
+
+    public enum Status {
+        OK,
+        NOT_FOUND,
+        INVALID
+    }
+
+    public static BatchOperationResult ok(int index) {
+        return new BatchOperationResult(index, Status.OK, null);
+    }
+
+    public static BatchOperationResult notFound(int index, String message) {
+        return new BatchOperationResult(index, Status.NOT_FOUND, message);
+    }
+
+    public static BatchOperationResult invalid(int index, String message) {
+        return new BatchOperationResult(index, Status.INVALID, message);
+    }
+}
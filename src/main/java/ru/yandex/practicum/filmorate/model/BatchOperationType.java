@@ -0,0 +1,7 @@
+package ru.yandex.practicum.filmorate.model;
+
+//действие пакетной операции: поставить/убрать лайк, добавить/удалить друга
+public enum BatchOperationType {
+    ADD,
+    REMOVE
+}
@@ -0,0 +1,33 @@
+package ru.yandex.practicum.filmorate.model;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+//поля ответа, выбранные параметром ?fields=id,name,likesCount; names == null - все поля.
+//Хранилища по набору полей решают, что подгружать: лайки, жанры и друзей, которых нет в наборе,
+//они не читают; сериализация выводит только выбранные поля фильтра FILTER
+public record FieldSet(Set<String> names) {
+    public static final String FILTER = "fields";
+    public static final String PARAMETER = "fields";
+    public static final FieldSet ALL = new FieldSet(null);
+
+    public static FieldSet parse(String fields) {
+        if (fields == null || fields.isBlank())
+            return ALL;
+        return new FieldSet(Arrays.stream(fields.split(","))
+                .map(String::trim)
+                .filter(field -> !field.isEmpty())
+                .collect(Collectors.toCollection(LinkedHashSet::new)));
+    }
+
+    public boolean includes(String field) {
+        return names == null || names.contains(field);
+    }
+
+    //поле явно перечислено в параметре: вычисляемые поля выводятся только так
+    public boolean requests(String field) {
+        return names != null && names.contains(field);
+    }
+}
@@ -1,5 +1,8 @@
 package ru.yandex.practicum.filmorate.model;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.PositiveOrZero;
 import jakarta.validation.constraints.Size;
@@ -13,6 +16,7 @@ import java.util.HashSet;
 import java.util.Set;
 
 @Data
+@JsonFilter(FieldSet.FILTER)
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder(toBuilder = true)
@@ -30,4 +34,8 @@ public class Film {
     private Set<Long> userIdsLiked = new HashSet<>();
     //список жанров фильма
     private Set<Genre> genres = new HashSet<>();
+    //число лайков: заполняется и выводится, только если запрошено параметром fields
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Integer likesCount;
 }
@@ -2,14 +2,15 @@ package ru.yandex.practicum.filmorate.model;
 
 import lombok.AllArgsConstructor;
 import lombok.Builder;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import lombok.Value;
+import lombok.extern.jackson.Jacksonized;
 
-@Data
+//жанр не меняется после загрузки, один экземпляр из кэша GenreStorage разделяют все фильмы
+@Value
 @Builder(toBuilder = true)
-@NoArgsConstructor
+@Jacksonized
 @AllArgsConstructor
 public class Genre {
-    private Integer id;
-    private String name;
+    Integer id;
+    String name;
 }
@@ -0,0 +1,28 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//итог загрузки файла: сколько строк принято и отклонено, скорость загрузки
+//и причины отказа для первых отклонённых строк
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportReport {
+    private String entity;
+    private long accepted;
+    private long rejected;
+    private long elapsedMillis;
+    private double rowsPerSecond;
+    @Builder.Default
+    private List<RejectedRow> rejectedRows = new ArrayList<>();
+
+    public record RejectedRow(long line, String reason) {
+    }
+}
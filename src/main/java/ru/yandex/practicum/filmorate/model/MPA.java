@@ -2,14 +2,15 @@ package ru.yandex.practicum.filmorate.model;
 
 import lombok.AllArgsConstructor;
 import lombok.Builder;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import lombok.Value;
+import lombok.extern.jackson.Jacksonized;
 
-@Data
+//неизменяемый объект справочника: экземпляры из кэша раздаются всем фильмам
+@Value
 @Builder(toBuilder = true)
+@Jacksonized
 @AllArgsConstructor
-@NoArgsConstructor
 public class MPA {
-    private Integer id;
-    private String name;
+    Integer id;
+    String name;
 }
@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.model;
+
+import java.util.List;
+import java.util.function.Function;
+
+//страница выборки по курсору: nextCursor - id последнего элемента,
+//его нужно передать в after для получения следующей страницы; null - страниц больше нет
+public record Page<T>(List<T> items, Long nextCursor) {
+    public static <T> Page<T> of(List<T> items, int limit, Function<T, Long> idGetter) {
+        if (items.size() < limit)
+            return new Page<>(items, null);
+        return new Page<>(items, idGetter.apply(items.get(items.size() - 1)));
+    }
+}
@@ -1,5 +1,8 @@
 package ru.yandex.practicum.filmorate.model;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.PastOrPresent;
@@ -14,6 +17,7 @@ import java.util.Set;
 
 
 @Data
+@JsonFilter(FieldSet.FILTER)
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder(toBuilder = true)
@@ -29,4 +33,8 @@ public class User {
     private LocalDate birthday;
     //список Id пользователей-друзей для данного пользователя
     private Set<Long> friendsIds = new HashSet<>();
+    //число друзей: заполняется и выводится, только если запрошено параметром fields
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Integer friendsCount;
 }
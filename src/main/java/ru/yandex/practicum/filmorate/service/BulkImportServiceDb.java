@@ -0,0 +1,326 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exception.InvalidJsonFieldException;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.*;
+import ru.yandex.practicum.filmorate.service.importer.CsvLineParser;
+import ru.yandex.practicum.filmorate.service.importer.ImportFormat;
+import ru.yandex.practicum.filmorate.service.interfaces.BulkImportService;
+import ru.yandex.practicum.filmorate.service.interfaces.FilmService;
+import ru.yandex.practicum.filmorate.service.interfaces.UserService;
+import ru.yandex.practicum.filmorate.storage.interfaces.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.interfaces.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.interfaces.MpaStorage;
+import ru.yandex.practicum.filmorate.storage.interfaces.UserStorage;
+import ru.yandex.practicum.filmorate.validation.FilmValidation;
+import ru.yandex.practicum.filmorate.validation.UserValidation;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+
+//массовая загрузка из файлов CSV/NDJSON: файл читается построчно, каждая строка
+//проверяется по тем же правилам, что и при создании через API, принятые строки
+//копятся в пакет и записываются batch-запросами по filmorate.import.batch-size строк
+@Service
+@Slf4j
+public class BulkImportServiceDb implements BulkImportService {
+    //в отчёт попадают только первые отклонённые строки, остальные учитываются в счётчике
+    private static final int MAX_REPORTED_REJECTIONS = 100;
+
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+    private final MpaStorage mpaStorage;
+    private final GenreStorage genreStorage;
+    private final FilmService filmService;
+    private final UserService userService;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+
+    public BulkImportServiceDb(FilmStorage filmStorage,
+                               UserStorage userStorage,
+                               MpaStorage mpaStorage,
+                               GenreStorage genreStorage,
+                               FilmService filmService,
+                               UserService userService,
+                               Validator validator,
+                               ObjectMapper objectMapper,
+                               @Value("${filmorate.import.batch-size:1000}") int batchSize) {
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+        this.mpaStorage = mpaStorage;
+        this.genreStorage = genreStorage;
+        this.filmService = filmService;
+        this.userService = userService;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+    }
+
+    //разбор строки файла в объект, ошибка разбора или проверки отклоняет строку
+    private interface RecordParser<T> {
+        T fromCsv(Map<String, String> fields);
+
+        T fromJson(String line) throws JsonProcessingException;
+    }
+
+    //запись пакета, результат - причина отказа для каждой записи пакета или null, если запись принята
+    private interface BatchWriter<T> {
+        List<String> write(List<T> batch);
+    }
+
+    //колонки: name,description,releaseDate,duration,mpaId,genreIds (id жанров через |)
+    @Override
+    public ImportReport importFilms(InputStream input, ImportFormat format) {
+        RecordParser<Film> parser = new RecordParser<>() {
+            @Override
+            public Film fromCsv(Map<String, String> fields) {
+                Film film = new Film();
+                film.setName(fields.get("name"));
+                film.setDescription(fields.get("description"));
+                if (fields.containsKey("releaseDate"))
+                    film.setReleaseDate(LocalDate.parse(fields.get("releaseDate")));
+                film.setDuration(Integer.parseInt(fields.getOrDefault("duration", "0")));
+                if (fields.containsKey("mpaId"))
+                    film.setMpa(MPA.builder().id(Integer.parseInt(fields.get("mpaId"))).build());
+                if (fields.containsKey("genreIds")) {
+                    film.setGenres(Arrays.stream(fields.get("genreIds").split("\\|"))
+                            .map(String::trim)
+                            .map(id -> Genre.builder().id(Integer.parseInt(id)).build())
+                            .collect(Collectors.toCollection(LinkedHashSet::new)));
+                }
+                return validateFilm(film);
+            }
+
+            @Override
+            public Film fromJson(String line) throws JsonProcessingException {
+                return validateFilm(objectMapper.readValue(line, Film.class));
+            }
+        };
+
+        return importRecords("films", input, format, parser, batch -> {
+            filmStorage.createFilms(batch);
+            return Collections.nCopies(batch.size(), null);
+        });
+    }
+
+    //колонки: email,login,name,birthday
+    @Override
+    public ImportReport importUsers(InputStream input, ImportFormat format) {
+        RecordParser<User> parser = new RecordParser<>() {
+            @Override
+            public User fromCsv(Map<String, String> fields) {
+                User user = new User();
+                user.setEmail(fields.get("email"));
+                user.setLogin(fields.get("login"));
+                user.setName(fields.get("name"));
+                if (fields.containsKey("birthday"))
+                    user.setBirthday(LocalDate.parse(fields.get("birthday")));
+                return validateUser(user);
+            }
+
+            @Override
+            public User fromJson(String line) throws JsonProcessingException {
+                return validateUser(objectMapper.readValue(line, User.class));
+            }
+        };
+
+        return importRecords("users", input, format, parser, batch -> {
+            userStorage.createUsers(batch);
+            return Collections.nCopies(batch.size(), null);
+        });
+    }
+
+    //колонки: filmId,userId
+    @Override
+    public ImportReport importLikes(InputStream input, ImportFormat format) {
+        RecordParser<LikeOperation> parser = new RecordParser<>() {
+            @Override
+            public LikeOperation fromCsv(Map<String, String> fields) {
+                return new LikeOperation(parseId(fields, "filmId"), parseId(fields, "userId"), BatchOperationType.ADD);
+            }
+
+            @Override
+            public LikeOperation fromJson(String line) throws JsonProcessingException {
+                LikeOperation operation = objectMapper.readValue(line, LikeOperation.class);
+                if (operation.getType() == null)
+                    operation.setType(BatchOperationType.ADD);
+                return operation;
+            }
+        };
+
+        //существование фильмов и пользователей проверяется по id в памяти, без запросов к БД
+        return importRecords("likes", input, format, parser,
+                batch -> toRejections(filmService.applyLikeOperations(batch)));
+    }
+
+    //колонки: userId,friendId
+    @Override
+    public ImportReport importFriendships(InputStream input, ImportFormat format) {
+        RecordParser<FriendshipOperation> parser = new RecordParser<>() {
+            @Override
+            public FriendshipOperation fromCsv(Map<String, String> fields) {
+                return new FriendshipOperation(parseId(fields, "userId"), parseId(fields, "friendId"),
+                        BatchOperationType.ADD);
+            }
+
+            @Override
+            public FriendshipOperation fromJson(String line) throws JsonProcessingException {
+                FriendshipOperation operation = objectMapper.readValue(line, FriendshipOperation.class);
+                if (operation.getType() == null)
+                    operation.setType(BatchOperationType.ADD);
+                return operation;
+            }
+        };
+
+        return importRecords("friendships", input, format, parser,
+                batch -> toRejections(userService.applyFriendshipOperations(batch)));
+    }
+
+    private <T> ImportReport importRecords(String entity, InputStream input, ImportFormat format,
+                                           RecordParser<T> parser, BatchWriter<T> writer) {
+        long startedAt = System.nanoTime();
+        ImportReport report = ImportReport.builder().entity(entity).build();
+        List<T> batch = new ArrayList<>(batchSize);
+        List<Long> batchLines = new ArrayList<>(batchSize);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            List<String> header = null;
+            long lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank())
+                    continue;
+                if (format == ImportFormat.CSV && header == null) {
+                    header = CsvLineParser.parse(line);
+                    continue;
+                }
+
+                try {
+                    T record = format == ImportFormat.CSV
+                            ? parser.fromCsv(CsvLineParser.toMap(header, line))
+                            : parser.fromJson(line);
+                    batch.add(record);
+                    batchLines.add(lineNumber);
+                } catch (JsonProcessingException ex) {
+                    reject(report, lineNumber, "Некорректный JSON: " + ex.getOriginalMessage());
+                } catch (RuntimeException ex) {
+                    reject(report, lineNumber, ex.getMessage());
+                }
+
+                if (batch.size() == batchSize)
+                    flush(report, batch, batchLines, writer);
+            }
+            flush(report, batch, batchLines, writer);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        long elapsedNanos = System.nanoTime() - startedAt;
+        report.setElapsedMillis(elapsedNanos / 1_000_000);
+        if (elapsedNanos > 0)
+            report.setRowsPerSecond((report.getAccepted() + report.getRejected()) * 1e9 / elapsedNanos);
+        log.info("Импорт {}: принято {}, отклонено {}, {} мс, {} строк/с", entity, report.getAccepted(),
+                report.getRejected(), report.getElapsedMillis(), Math.round(report.getRowsPerSecond()));
+        return report;
+    }
+
+    private <T> void flush(ImportReport report, List<T> batch, List<Long> batchLines, BatchWriter<T> writer) {
+        if (batch.isEmpty())
+            return;
+
+        List<String> rejections = writer.write(batch);
+        for (int i = 0; i < batch.size(); i++) {
+            if (rejections.get(i) == null)
+                report.setAccepted(report.getAccepted() + 1);
+            else
+                reject(report, batchLines.get(i), rejections.get(i));
+        }
+        batch.clear();
+        batchLines.clear();
+    }
+
+    private void reject(ImportReport report, long line, String reason) {
+        report.setRejected(report.getRejected() + 1);
+        if (report.getRejectedRows().size() < MAX_REPORTED_REJECTIONS)
+            report.getRejectedRows().add(new ImportReport.RejectedRow(line, reason));
+    }
+
+    private List<String> toRejections(List<BatchOperationResult> results) {
+        return results.stream()
+                .map(result -> result.getStatus() == BatchOperationResult.Status.OK ? null : result.getMessage())
+                .toList();
+    }
+
+    private Film validateFilm(Film film) throws ValidationException, NotFoundException {
+        if (film.getId() != null)
+            throw new InvalidJsonFieldException("Для нового фильма нельзя указать Id");
+        if (film.getReleaseDate() == null)
+            throw new ValidationException("Дата релиза должна быть указана");
+
+        validateConstraints(film);
+        FilmValidation.validateFilmReleaseDate(film);
+
+        if (film.getMpa() != null) {
+            film.setMpa(mpaStorage.getMpaById(film.getMpa().getId())
+                    .orElseThrow(() -> new NotFoundException("Возрастной рейтинг с id = " + film.getMpa().getId() + " не найден")));
+        }
+        if (film.getGenres() == null)
+            film.setGenres(new LinkedHashSet<>());
+        Set<Genre> genres = new LinkedHashSet<>();
+        for (Genre genre : film.getGenres()) {
+            genres.add(genreStorage.getGenreById(genre.getId())
+                    .orElseThrow(() -> new NotFoundException("Жанр с id = " + genre.getId() + " не найден")));
+        }
+        film.setGenres(genres);
+        //лайки загружаются отдельным файлом
+        film.setUserIdsLiked(new HashSet<>());
+        return film;
+    }
+
+    private User validateUser(User user) throws ValidationException {
+        if (user.getId() != null)
+            throw new InvalidJsonFieldException("Для нового пользователя нельзя указать Id");
+        if (user.getBirthday() == null)
+            throw new ValidationException("Дата рождения должна быть указана");
+
+        validateConstraints(user);
+        UserValidation.validateUser(user);
+        //дружба загружается отдельным файлом
+        user.setFriendsIds(new HashSet<>());
+        return user;
+    }
+
+    private <T> void validateConstraints(T object) throws ValidationException {
+        Set<ConstraintViolation<T>> violations = validator.validate(object);
+        if (!violations.isEmpty()) {
+            throw new ValidationException(violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+        }
+    }
+
+    private Long parseId(Map<String, String> fields, String column) throws ValidationException {
+        String value = fields.get(column);
+        if (value == null)
+            throw new ValidationException("Колонка " + column + " должна быть заполнена");
+        return Long.parseLong(value);
+    }
+}
@@ -6,18 +6,29 @@ import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.InvalidJsonFieldException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchOperationResult;
+import ru.yandex.practicum.filmorate.model.FieldSet;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
 import ru.yandex.practicum.filmorate.model.MPA;
+import ru.yandex.practicum.filmorate.model.Page;
 import ru.yandex.practicum.filmorate.service.interfaces.FilmService;
 import ru.yandex.practicum.filmorate.storage.interfaces.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.interfaces.GenreStorage;
 import ru.yandex.practicum.filmorate.storage.interfaces.MpaStorage;
 import ru.yandex.practicum.filmorate.storage.interfaces.UserStorage;
+import ru.yandex.practicum.filmorate.validation.BatchValidation;
+import ru.yandex.practicum.filmorate.validation.FieldSetValidation;
 import ru.yandex.practicum.filmorate.validation.FilmValidation;
+import ru.yandex.practicum.filmorate.validation.PageValidation;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 
 // Указываем, что класс является бином и его
 // нужно добавить в контекст приложения
@@ -25,6 +36,12 @@ import java.util.Set;
 @Slf4j
 @RequiredArgsConstructor
 public class FilmServiceDb implements FilmService {
+    //сколько фильмов одновременно держится в памяти при выгрузке каталога
+    private static final int STREAM_CHUNK_SIZE = 500;
+    private static final int DEFAULT_RECOMMENDATIONS_LIMIT = 10;
+    private static final int DEFAULT_SIMILAR_FILMS_LIMIT = 10;
+    private static final int DEFAULT_SEARCH_LIMIT = 10;
+
     private final FilmStorage filmStorage;
     private final UserStorage userStorage;
     private final MpaStorage mpaStorage;
@@ -32,7 +49,42 @@ public class FilmServiceDb implements FilmService {
 
     @Override
     public Collection<Film> getFilms() {
-        return filmStorage.getFilms();
+        return getFilms(FieldSet.ALL);
+    }
+
+    @Override
+    public Collection<Film> getFilms(FieldSet fields) {
+        try {
+            FieldSetValidation.validateFields(fields, Film.class);
+            return filmStorage.getFilms(fields);
+        } catch (ValidationException ex) {
+            log.debug(ex.getMessage());
+            throw ex;
+        }
+    }
+
+    @Override
+    public Page<Film> getFilms(Long after, Integer limit) {
+        return getFilms(after, limit, FieldSet.ALL);
+    }
+
+    @Override
+    public Page<Film> getFilms(Long after, Integer limit, FieldSet fields) {
+        try {
+            PageValidation.validatePage(after, limit);
+            FieldSetValidation.validateFields(fields, Film.class);
+            int pageSize = limit != null ? limit : PageValidation.DEFAULT_LIMIT;
+            List<Film> films = filmStorage.getFilmsAfter(after != null ? after : 0L, pageSize, fields);
+            return Page.of(films, pageSize, Film::getId);
+        } catch (ValidationException ex) {
+            log.debug(ex.getMessage());
+            throw ex;
+        }
+    }
+
+    @Override
+    public void streamFilms(Consumer<Film> consumer) {
+        filmStorage.streamFilms(STREAM_CHUNK_SIZE, consumer);
     }
 
     @Override
@@ -77,15 +129,35 @@ public class FilmServiceDb implements FilmService {
 
     @Override
     public Film getFilmById(Long id) {
+        return getFilmById(id, FieldSet.ALL);
+    }
+
+    @Override
+    public Film getFilmById(Long id, FieldSet fields) {
         try {
-            validateFilmId(id);
-            return filmStorage.getFilmById(id).get();
+            if (id == null)
+                throw new ValidationException("Id фильма должен быть указан");
+            FieldSetValidation.validateFields(fields, Film.class);
+            return filmStorage.getFilmById(id, fields)
+                    .orElseThrow(() -> new NotFoundException("Фильм с id = " + id + " не найден"));
         } catch (ValidationException | NotFoundException ex) {
             log.debug(ex.getMessage());
             throw ex;
         }
     }
 
+    //версии читаются из памяти, для несуществующего фильма версия тоже есть:
+    //ответ на условный запрос к нему не отличается от обычного
+    @Override
+    public long getFilmVersion(Long id) {
+        return filmStorage.getFilmVersion(id);
+    }
+
+    @Override
+    public long getDataVersion() {
+        return filmStorage.getDataVersion();
+    }
+
     @Override
     public void addLikeToFilm(Long filmId, Long userId) {
         try {
@@ -115,16 +187,112 @@ public class FilmServiceDb implements FilmService {
     //вернуть коллекцию фильмов с сортировкой по убыванию по количеству лайков
     @Override
     public Collection<Film> getTopPopularFilms(Integer count) {
+        return getTopPopularFilms(count, null, null);
+    }
+
+    //то же среди фильмов жанра genreId и года выхода year, если они указаны
+    @Override
+    public Collection<Film> getTopPopularFilms(Integer count, Integer genreId, Integer year) {
+        return getTopPopularFilms(count, genreId, year, FieldSet.ALL);
+    }
+
+    @Override
+    public Collection<Film> getTopPopularFilms(Integer count, Integer genreId, Integer year, FieldSet fields) {
         try {
             if (count <= 0)
                 throw new IllegalArgumentException("Параметр count должен быть положительным числом");
-            return filmStorage.getTopPopularFilms(count);
-        } catch (IllegalArgumentException ex) {
+            if (genreId != null && genreStorage.getGenreById(genreId).isEmpty())
+                throw new NotFoundException("Жанр с id = " + genreId + " не найден");
+            FieldSetValidation.validateFields(fields, Film.class);
+            return filmStorage.getTopPopularFilms(count, genreId, year, fields);
+        } catch (IllegalArgumentException | NotFoundException | ValidationException ex) {
             log.debug(ex.getMessage());
             throw ex;
         }
     }
 
+    @Override
+    public List<Film> getSimilarFilms(Long filmId, Integer limit) {
+        try {
+            validateFilmId(filmId);
+            PageValidation.validatePage(null, limit);
+            return filmStorage.getSimilarFilms(filmId, limit != null ? limit : DEFAULT_SIMILAR_FILMS_LIMIT);
+        } catch (ValidationException | NotFoundException ex) {
+            log.debug(ex.getMessage());
+            throw ex;
+        }
+    }
+
+    @Override
+    public List<Film> getRecommendedFilms(Long userId, Integer limit) {
+        try {
+            validateUserIdExists(userId);
+            PageValidation.validatePage(null, limit);
+            return filmStorage.getRecommendedFilms(userId, limit != null ? limit : DEFAULT_RECOMMENDATIONS_LIMIT);
+        } catch (ValidationException | NotFoundException ex) {
+            log.debug(ex.getMessage());
+            throw ex;
+        }
+    }
+
+    @Override
+    public List<Film> searchFilms(String query, Integer limit) {
+        try {
+            if (query == null || query.isBlank())
+                throw new ValidationException("Поисковый запрос не может быть пустым");
+            PageValidation.validatePage(null, limit);
+            return filmStorage.searchFilms(query, limit != null ? limit : DEFAULT_SEARCH_LIMIT);
+        } catch (ValidationException ex) {
+            log.debug(ex.getMessage());
+            throw ex;
+        }
+    }
+
+    //существование всех фильмов и пользователей пакета проверяется по множествам id в памяти,
+    //операции с несуществующими id не применяются, остальные применяются одной транзакцией
+    @Override
+    public List<BatchOperationResult> applyLikeOperations(List<LikeOperation> operations) {
+        try {
+            BatchValidation.validateBatchSize(operations);
+
+            Set<Long> filmIds = new HashSet<>();
+            Set<Long> userIds = new HashSet<>();
+            for (LikeOperation operation : operations) {
+                if (operation != null) {
+                    if (operation.getFilmId() != null)
+                        filmIds.add(operation.getFilmId());
+                    if (operation.getUserId() != null)
+                        userIds.add(operation.getUserId());
+                }
+            }
+            Set<Long> existingFilmIds = filmStorage.getExistingFilmIds(filmIds);
+            Set<Long> existingUserIds = userStorage.getExistingUserIds(userIds);
+
+            List<BatchOperationResult> results = new ArrayList<>(operations.size());
+            List<LikeOperation> accepted = new ArrayList<>();
+            for (int i = 0; i < operations.size(); i++) {
+                LikeOperation operation = operations.get(i);
+                if (operation == null || operation.getFilmId() == null
+                        || operation.getUserId() == null || operation.getType() == null)
+                    results.add(BatchOperationResult.invalid(i, "Должны быть указаны filmId, userId и type"));
+                else if (!existingFilmIds.contains(operation.getFilmId()))
+                    results.add(BatchOperationResult.notFound(i, "Фильм с id = " + operation.getFilmId() + " не найден"));
+                else if (!existingUserIds.contains(operation.getUserId()))
+                    results.add(BatchOperationResult.notFound(i, "Пользователь с id = " + operation.getUserId() + " не найден"));
+                else {
+                    accepted.add(operation);
+                    results.add(BatchOperationResult.ok(i));
+                }
+            }
+
+            if (!accepted.isEmpty())
+                filmStorage.applyLikeOperations(accepted);
+            return results;
+        } catch (ValidationException ex) {
+            log.debug(ex.getMessage());
+            throw ex;
+        }
+    }
 
     private void validateMpa(MPA mpa) throws NotFoundException {
         if (mpa != null) {
@@ -147,14 +315,14 @@ public class FilmServiceDb implements FilmService {
     private void validateFilmId(Long id) throws NotFoundException, ValidationException {
         if (id == null)
             throw new ValidationException("Id фильма должен быть указан");
-        if (filmStorage.getFilmById(id).isEmpty())
+        if (!filmStorage.isFilmExist(id))
             throw new NotFoundException("Фильм с id = " + id + " не найден");
     }
 
     private void validateUserIdExists(Long id) throws NotFoundException {
         if (id == null)
             throw new ValidationException("Id пользователя должен быть указан");
-        if (userStorage.getUserById(id).isEmpty())
+        if (!userStorage.isUserExist(id))
             throw new NotFoundException("Пользователь с id = " + id + " не найден");
     }
 }
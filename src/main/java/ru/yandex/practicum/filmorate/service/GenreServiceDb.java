@@ -27,4 +27,9 @@ public class GenreServiceDb implements GenreService {
     public Genre getGenreById(Integer id) {
         return genreStorage.getGenreById(id).orElseThrow(() -> new NotFoundException("Жанр с id = \" + id + \" не найден"));
     }
+
+    @Override
+    public long getVersion() {
+        return genreStorage.getVersion();
+    }
 }
@@ -27,4 +27,9 @@ public class MpaServiceDb implements MpaService {
     public MPA getMpaById(Integer id) {
         return mpaStorage.getMpaById(id).orElseThrow(() -> new NotFoundException("Возрастной рейтинг с id = " + id + " не найден"));
     }
+
+    @Override
+    public long getVersion() {
+        return mpaStorage.getVersion();
+    }
 }
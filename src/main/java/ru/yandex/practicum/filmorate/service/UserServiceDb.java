@@ -6,12 +6,23 @@ import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.InvalidJsonFieldException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchOperationResult;
+import ru.yandex.practicum.filmorate.model.FieldSet;
+import ru.yandex.practicum.filmorate.model.FriendshipOperation;
+import ru.yandex.practicum.filmorate.model.Page;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.interfaces.UserService;
 import ru.yandex.practicum.filmorate.storage.interfaces.UserStorage;
+import ru.yandex.practicum.filmorate.validation.BatchValidation;
+import ru.yandex.practicum.filmorate.validation.FieldSetValidation;
+import ru.yandex.practicum.filmorate.validation.PageValidation;
 import ru.yandex.practicum.filmorate.validation.UserValidation;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 // Указываем, что класс является бином и его
 // нужно добавить в контекст приложения
@@ -19,11 +30,43 @@ import java.util.Collection;
 @RequiredArgsConstructor
 @Slf4j
 public class UserServiceDb implements UserService {
+    private static final int DEFAULT_SUGGESTIONS_LIMIT = 10;
+
     private final UserStorage userStorage;
 
     @Override
     public Collection<User> getUsers() {
-        return userStorage.getUsers();
+        return getUsers(FieldSet.ALL);
+    }
+
+    @Override
+    public Collection<User> getUsers(FieldSet fields) {
+        try {
+            FieldSetValidation.validateFields(fields, User.class);
+            return userStorage.getUsers(fields);
+        } catch (ValidationException ex) {
+            log.debug(ex.getMessage());
+            throw ex;
+        }
+    }
+
+    @Override
+    public Page<User> getUsers(Long after, Integer limit) {
+        return getUsers(after, limit, FieldSet.ALL);
+    }
+
+    @Override
+    public Page<User> getUsers(Long after, Integer limit, FieldSet fields) {
+        try {
+            PageValidation.validatePage(after, limit);
+            FieldSetValidation.validateFields(fields, User.class);
+            int pageSize = limit != null ? limit : PageValidation.DEFAULT_LIMIT;
+            List<User> users = userStorage.getUsersAfter(after != null ? after : 0L, pageSize, fields);
+            return Page.of(users, pageSize, User::getId);
+        } catch (ValidationException ex) {
+            log.debug(ex.getMessage());
+            throw ex;
+        }
     }
 
     @Override
@@ -66,15 +109,28 @@ public class UserServiceDb implements UserService {
 
     @Override
     public User getUserById(Long id) {
+        return getUserById(id, FieldSet.ALL);
+    }
+
+    @Override
+    public User getUserById(Long id, FieldSet fields) {
         try {
-            validateUserId(id);
-            return userStorage.getUserById(id).get();
+            if (id == null || id < 0)
+                throw new ValidationException("Id пользователя должен быть положительным и не пустым");
+            FieldSetValidation.validateFields(fields, User.class);
+            return userStorage.getUserById(id, fields)
+                    .orElseThrow(() -> new NotFoundException("Пользователь с id = " + id + " не найден"));
         } catch (ValidationException | NotFoundException ex) {
             log.debug(ex.getMessage());
             throw ex;
         }
     }
 
+    @Override
+    public long getUserVersion(Long id) {
+        return userStorage.getUserVersion(id);
+    }
+
     @Override
     public void addFriend(Long userId, Long friendId) {
         try {
@@ -115,6 +171,20 @@ public class UserServiceDb implements UserService {
         }
     }
 
+    @Override
+    public Page<User> getFriendsOfUser(Long id, Long after, Integer limit) {
+        try {
+            validateUserId(id);
+            PageValidation.validatePage(after, limit);
+            int pageSize = limit != null ? limit : PageValidation.DEFAULT_LIMIT;
+            List<User> friends = userStorage.getFriendsOfUserAfter(id, after != null ? after : 0L, pageSize);
+            return Page.of(friends, pageSize, User::getId);
+        } catch (ValidationException | NotFoundException ex) {
+            log.debug(ex.getMessage());
+            throw ex;
+        }
+    }
+
     @Override
     public Collection<User> getIntersectingFriends(Long userId, Long friendId) {
         try {
@@ -131,10 +201,68 @@ public class UserServiceDb implements UserService {
         }
     }
 
+    @Override
+    public List<User> getFriendSuggestions(Long id, Integer limit) {
+        try {
+            validateUserId(id);
+            PageValidation.validatePage(null, limit);
+            return userStorage.getFriendSuggestions(id, limit != null ? limit : DEFAULT_SUGGESTIONS_LIMIT);
+        } catch (ValidationException | NotFoundException ex) {
+            log.debug(ex.getMessage());
+            throw ex;
+        }
+    }
+
+    //существование всех пользователей пакета проверяется по множеству id в памяти,
+    //операции с несуществующими id не применяются, остальные применяются одной транзакцией
+    @Override
+    public List<BatchOperationResult> applyFriendshipOperations(List<FriendshipOperation> operations) {
+        try {
+            BatchValidation.validateBatchSize(operations);
+
+            Set<Long> userIds = new HashSet<>();
+            for (FriendshipOperation operation : operations) {
+                if (operation != null) {
+                    if (operation.getUserId() != null)
+                        userIds.add(operation.getUserId());
+                    if (operation.getFriendId() != null)
+                        userIds.add(operation.getFriendId());
+                }
+            }
+            Set<Long> existingUserIds = userStorage.getExistingUserIds(userIds);
+
+            List<BatchOperationResult> results = new ArrayList<>(operations.size());
+            List<FriendshipOperation> accepted = new ArrayList<>();
+            for (int i = 0; i < operations.size(); i++) {
+                FriendshipOperation operation = operations.get(i);
+                if (operation == null || operation.getUserId() == null
+                        || operation.getFriendId() == null || operation.getType() == null)
+                    results.add(BatchOperationResult.invalid(i, "Должны быть указаны userId, friendId и type"));
+                else if (operation.getUserId().equals(operation.getFriendId()))
+                    results.add(BatchOperationResult.invalid(i, "Нельзя добавить самого себя в друзья"));
+                else if (!existingUserIds.contains(operation.getUserId()))
+                    results.add(BatchOperationResult.notFound(i, "Пользователь с id = " + operation.getUserId() + " не найден"));
+                else if (!existingUserIds.contains(operation.getFriendId()))
+                    results.add(BatchOperationResult.notFound(i, "Пользователь с id = " + operation.getFriendId() + " не найден"));
+                else {
+                    accepted.add(operation);
+                    results.add(BatchOperationResult.ok(i));
+                }
+            }
+
+            if (!accepted.isEmpty())
+                userStorage.applyFriendshipOperations(accepted);
+            return results;
+        } catch (ValidationException ex) {
+            log.debug(ex.getMessage());
+            throw ex;
+        }
+    }
+
     private void validateUserId(Long id) throws NotFoundException, ValidationException {
         if (id == null || id < 0)
             throw new ValidationException("Id пользователя должен быть положительным и не пустым");
-        if (userStorage.getUserById(id).isEmpty())
+        if (!userStorage.isUserExist(id))
             throw new NotFoundException("Пользователь с id = " + id + " не найден");
     }
 }
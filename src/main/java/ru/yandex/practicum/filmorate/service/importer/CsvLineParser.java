@@ -0,0 +1,58 @@
+package ru.yandex.practicum.filmorate.service.importer;
+
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//разбор одной строки CSV: поля через запятую, значение в кавычках может содержать
+//запятые, кавычка внутри такого значения записывается двумя кавычками
+public class CsvLineParser {
+    public static List<String> parse(String line) throws ValidationException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted)
+            throw new ValidationException("Незакрытая кавычка в строке CSV");
+
+        fields.add(field.toString().trim());
+        return fields;
+    }
+
+    //значения строки по названиям колонок из заголовка, пустые значения не попадают в результат
+    public static Map<String, String> toMap(List<String> header, String line) throws ValidationException {
+        List<String> values = parse(line);
+        if (values.size() > header.size())
+            throw new ValidationException("В строке больше значений, чем колонок в заголовке");
+
+        Map<String, String> fields = new HashMap<>();
+        for (int i = 0; i < values.size(); i++) {
+            if (!values.get(i).isEmpty())
+                fields.put(header.get(i), values.get(i));
+        }
+        return fields;
+    }
+}
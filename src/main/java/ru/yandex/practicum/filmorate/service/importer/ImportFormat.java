@@ -0,0 +1,21 @@
+package ru.yandex.practicum.filmorate.service.importer;
+
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+public enum ImportFormat {
+    //первая строка - заголовок с названиями колонок
+    CSV,
+    //по одному JSON-объекту в строке
+    NDJSON;
+
+    public static ImportFormat fromContentType(String contentType) throws ValidationException {
+        if (contentType != null) {
+            String type = contentType.toLowerCase();
+            if (type.startsWith("text/csv"))
+                return CSV;
+            if (type.startsWith("application/x-ndjson") || type.startsWith("application/json"))
+                return NDJSON;
+        }
+        throw new ValidationException("Поддерживаются только форматы text/csv и application/x-ndjson");
+    }
+}
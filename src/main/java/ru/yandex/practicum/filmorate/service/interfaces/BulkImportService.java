@@ -0,0 +1,16 @@
+package ru.yandex.practicum.filmorate.service.interfaces;
+
+import ru.yandex.practicum.filmorate.model.ImportReport;
+import ru.yandex.practicum.filmorate.service.importer.ImportFormat;
+
+import java.io.InputStream;
+
+public interface BulkImportService {
+    ImportReport importFilms(InputStream input, ImportFormat format);
+
+    ImportReport importUsers(InputStream input, ImportFormat format);
+
+    ImportReport importLikes(InputStream input, ImportFormat format);
+
+    ImportReport importFriendships(InputStream input, ImportFormat format);
+}
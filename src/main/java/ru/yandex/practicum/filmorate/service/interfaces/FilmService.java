@@ -1,12 +1,26 @@
 package ru.yandex.practicum.filmorate.service.interfaces;
 
+import ru.yandex.practicum.filmorate.model.BatchOperationResult;
+import ru.yandex.practicum.filmorate.model.FieldSet;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.model.Page;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
 
 public interface FilmService {
     Collection<Film> getFilms();
 
+    Collection<Film> getFilms(FieldSet fields);
+
+    Page<Film> getFilms(Long after, Integer limit);
+
+    Page<Film> getFilms(Long after, Integer limit, FieldSet fields);
+
+    void streamFilms(Consumer<Film> consumer);
+
     Film createFilm(Film newFilm);
 
     Film updateFilm(Film newFilm);
@@ -15,9 +29,27 @@ public interface FilmService {
 
     Film getFilmById(Long id);
 
+    Film getFilmById(Long id, FieldSet fields);
+
+    long getFilmVersion(Long id);
+
+    long getDataVersion();
+
     void addLikeToFilm(Long filmId, Long userId);
 
     void deleteLikeFromFilm(Long filmId, Long userId);
 
     Collection<Film> getTopPopularFilms(Integer count);
+
+    Collection<Film> getTopPopularFilms(Integer count, Integer genreId, Integer year);
+
+    Collection<Film> getTopPopularFilms(Integer count, Integer genreId, Integer year, FieldSet fields);
+
+    List<Film> getSimilarFilms(Long filmId, Integer limit);
+
+    List<Film> getRecommendedFilms(Long userId, Integer limit);
+
+    List<Film> searchFilms(String query, Integer limit);
+
+    List<BatchOperationResult> applyLikeOperations(List<LikeOperation> operations);
 }
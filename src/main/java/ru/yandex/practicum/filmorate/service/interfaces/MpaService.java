@@ -8,4 +8,6 @@ public interface MpaService {
     Collection<MPA> getMpa();
 
     MPA getMpaById(Integer id);
+
+    long getVersion();
 }
@@ -1,12 +1,23 @@
 package ru.yandex.practicum.filmorate.service.interfaces;
 
+import ru.yandex.practicum.filmorate.model.BatchOperationResult;
+import ru.yandex.practicum.filmorate.model.FieldSet;
+import ru.yandex.practicum.filmorate.model.FriendshipOperation;
+import ru.yandex.practicum.filmorate.model.Page;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.Collection;
+import java.util.List;
 
 public interface UserService {
     Collection<User> getUsers();
 
+    Collection<User> getUsers(FieldSet fields);
+
+    Page<User> getUsers(Long after, Integer limit);
+
+    Page<User> getUsers(Long after, Integer limit, FieldSet fields);
+
     User createUser(User newUser);
 
     User updateUser(User newUser);
@@ -15,11 +26,21 @@ public interface UserService {
 
     User getUserById(Long id);
 
+    User getUserById(Long id, FieldSet fields);
+
+    long getUserVersion(Long id);
+
     void addFriend(Long userId, Long friendId);
 
     void deleteFriend(Long userId, Long friendId);
 
     Collection<User> getFriendsOfUser(Long id);
 
+    Page<User> getFriendsOfUser(Long id, Long after, Integer limit);
+
     Collection<User> getIntersectingFriends(Long userId, Long friendId);
+
+    List<User> getFriendSuggestions(Long id, Integer limit);
+
+    List<BatchOperationResult> applyFriendshipOperations(List<FriendshipOperation> operations);
 }
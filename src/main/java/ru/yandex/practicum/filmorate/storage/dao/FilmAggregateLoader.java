@@ -0,0 +1,144 @@
+package ru.yandex.practicum.filmorate.storage.dao;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.FieldSet;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.index.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.interfaces.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.mappers.FilmRowMapper;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+//загрузчик фильмов целиком: сначала выбираются строки из films,
+//затем лайки и жанры подгружаются для всех id одним запросом на таблицу
+//и раскладываются по фильмам в памяти, поэтому число запросов не зависит от числа фильмов;
+//рейтинги и названия жанров берутся из кэша справочников без обращения к БД;
+//ещё не записанные в БД лайки накладываются из буфера отложенной записи.
+//С набором полей лайки и жанры читаются, только если они в него входят,
+//а число лайков берётся из рейтинга популярности в памяти
+@Component
+@RequiredArgsConstructor
+public class FilmAggregateLoader {
+    private final JdbcTemplate jdbcTemplate;
+    private final FilmRowMapper filmRowMapper;
+    private final GenreStorage genreStorage;
+    private final LikeWriteBehindBuffer likeWriteBehindBuffer;
+    private final FilmPopularityIndex filmPopularityIndex;
+
+    public List<Film> load(String filmsQuery, Object... args) {
+        return load(FieldSet.ALL, filmsQuery, args);
+    }
+
+    public List<Film> load(FieldSet fields, String filmsQuery, Object... args) {
+        List<Film> films = jdbcTemplate.query(filmsQuery, filmRowMapper, args);
+        enrich(films, fields);
+        return films;
+    }
+
+    //построчное чтение без загрузки всей выборки в память: курсор только вперёд,
+    //строки накапливаются порциями по chunkSize, порция дополняется лайками и жанрами
+    //и сразу отдаётся потребителю
+    public void stream(String filmsQuery, int chunkSize, Consumer<Film> consumer) {
+        List<Film> chunk = new ArrayList<>(chunkSize);
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(filmsQuery,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(chunkSize);
+            return ps;
+        }, rs -> {
+            chunk.add(filmRowMapper.mapRow(rs, rs.getRow()));
+            if (chunk.size() == chunkSize)
+                flushChunk(chunk, consumer);
+        });
+        flushChunk(chunk, consumer);
+    }
+
+    //фильмы возвращаются в том же порядке, в котором переданы id
+    public List<Film> loadByIds(List<Long> ids) {
+        return loadByIds(ids, FieldSet.ALL);
+    }
+
+    public List<Film> loadByIds(List<Long> ids, FieldSet fields) {
+        if (ids.isEmpty())
+            return new ArrayList<>();
+
+        String findByIdsQuery = "SELECT * FROM films WHERE id = ANY(?)";
+        Map<Long, Film> filmsById = load(fields, findByIdsQuery, (Object) ids.toArray(new Long[0])).stream()
+                .collect(Collectors.toMap(Film::getId, film -> film));
+
+        List<Film> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Film film = filmsById.get(id);
+            if (film != null)
+                result.add(film);
+        }
+        return result;
+    }
+
+    private void flushChunk(List<Film> chunk, Consumer<Film> consumer) {
+        enrich(chunk);
+        chunk.forEach(consumer);
+        chunk.clear();
+    }
+
+    public void enrich(List<Film> films) {
+        enrich(films, FieldSet.ALL);
+    }
+
+    public void enrich(List<Film> films, FieldSet fields) {
+        if (films.isEmpty())
+            return;
+        if (fields.requests("likesCount")) {
+            for (Film film : films) {
+                film.setLikesCount(filmPopularityIndex.getLikesCount(film.getId()));
+            }
+        }
+        if (!fields.includes("userIdsLiked") && !fields.includes("genres"))
+            return;
+
+        Map<Long, Film> filmsById = new HashMap<>();
+        for (Film film : films) {
+            filmsById.put(film.getId(), film);
+        }
+        Long[] filmIds = filmsById.keySet().toArray(new Long[0]);
+
+        if (fields.includes("userIdsLiked"))
+            fillLikes(filmsById, filmIds);
+        if (fields.includes("genres"))
+            fillGenres(filmsById, filmIds);
+    }
+
+    private void fillLikes(Map<Long, Film> filmsById, Long[] filmIds) {
+        String selectLikesByFilmIdsQuery = "SELECT film_id, user_id FROM film_likes WHERE film_id = ANY(?)";
+        Map<Long, Map<Long, Boolean>> buffered = likeWriteBehindBuffer.snapshot(filmsById.keySet());
+        jdbcTemplate.query(selectLikesByFilmIdsQuery, rs -> {
+            filmsById.get(rs.getLong("film_id")).getUserIdsLiked().add(rs.getLong("user_id"));
+        }, (Object) filmIds);
+
+        buffered.forEach((filmId, likes) -> {
+            Set<Long> userIdsLiked = filmsById.get(filmId).getUserIdsLiked();
+            likes.forEach((userId, liked) -> {
+                if (liked)
+                    userIdsLiked.add(userId);
+                else
+                    userIdsLiked.remove(userId);
+            });
+        });
+    }
+
+    private void fillGenres(Map<Long, Film> filmsById, Long[] filmIds) {
+        String selectGenresByFilmIdsQuery = "SELECT film_id, genre_id FROM film_genres" +
+                " WHERE film_id = ANY(?)" +
+                " ORDER BY film_id, genre_id";
+        jdbcTemplate.query(selectGenresByFilmIdsQuery, rs -> {
+            Film film = filmsById.get(rs.getLong("film_id"));
+            genreStorage.getGenreById(rs.getInt("genre_id")).ifPresent(genre -> film.getGenres().add(genre));
+        }, (Object) filmIds);
+    }
+}
@@ -1,77 +1,100 @@
 package ru.yandex.practicum.filmorate.storage.dao;
 
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.BatchOperationType;
+import ru.yandex.practicum.filmorate.model.FieldSet;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
-import ru.yandex.practicum.filmorate.model.MPA;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.storage.index.EntityIdIndex;
+import ru.yandex.practicum.filmorate.storage.index.EntityVersions;
+import ru.yandex.practicum.filmorate.storage.index.FilmLikesIndex;
+import ru.yandex.practicum.filmorate.storage.index.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.index.FilmSimilarityIndex;
 import ru.yandex.practicum.filmorate.storage.interfaces.FilmStorage;
-import ru.yandex.practicum.filmorate.storage.mappers.GenreRowMapper;
-import ru.yandex.practicum.filmorate.storage.mappers.MpaRowMapper;
+import ru.yandex.practicum.filmorate.storage.interfaces.GenreStorage;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
 import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 @Repository
 @RequiredArgsConstructor
 public class FilmDbStorage implements FilmStorage {
     private final JdbcTemplate jdbcTemplate;
 
-    private final MpaRowMapper mpaRowMapper;
-    private final GenreRowMapper genreRowMapper;
-    private final RowMapper<Film> filmRowMapper = (rs, rowNum) -> {
-        Film film = new Film();
-
-        film.setId(rs.getLong("id"));
-        film.setName(rs.getString("name"));
-        film.setDescription(rs.getString("description"));
-        Date releaseDate = rs.getDate("release_date");
-        film.setReleaseDate(releaseDate.toLocalDate());
-        film.setDuration(rs.getInt("duration"));
-
-        Integer mpaId = rs.getInt("mpa_id");
-        if (mpaId != null) {
-            var result = getMpaById(mpaId);
-            if (result.isPresent())
-                film.setMpa(result.get());
-            else
-                film.setMpa(null);
-        } else {
-            film.setMpa(null);
-        }
+    private final FilmAggregateLoader filmAggregateLoader;
+    private final GenreStorage genreStorage;
+    private final FilmPopularityIndex filmPopularityIndex;
+    private final FilmLikesIndex filmLikesIndex;
+    private final FilmSimilarityIndex filmSimilarityIndex;
+    private final FilmSearchIndex filmSearchIndex;
+    private final EntityVersions entityVersions;
+    private final TransactionTemplate transactionTemplate;
+    private final LikeWriteBehindBuffer likeWriteBehindBuffer;
+    //id существующих фильмов для проверок существования без запросов к БД
+    private final EntityIdIndex filmIds = new EntityIdIndex();
+
+    private record LikeKey(Long filmId, Long userId) {
+    }
 
-        Set<Long> userLikes = new HashSet<>(getUserIdsLikesOfFilm(film.getId()));
-        film.setUserIdsLiked(userLikes);
+    @PostConstruct
+    public void loadFilmIds() {
+        String selectIdsQuery = "SELECT id FROM films";
+        filmIds.reload(jdbcTemplate.queryForList(selectIdsQuery, Long.class));
+    }
 
-        Set<Genre> filmGenres = new HashSet<>(getGenresOfFilmById(film.getId()));
-        film.setGenres(filmGenres);
+    @Override
+    public Collection<Film> getFilms() {
+        return getFilms(FieldSet.ALL);
+    }
 
-        return film;
-    };
+    @Override
+    public Collection<Film> getFilms(FieldSet fields) {
+        String findAllQuery = "SELECT * FROM films ORDER BY id";
+        return filmAggregateLoader.load(fields, findAllQuery);
+    }
 
+    @Override
+    public List<Film> getFilmsAfter(Long afterId, int limit) {
+        return getFilmsAfter(afterId, limit, FieldSet.ALL);
+    }
 
     @Override
-    public Collection<Film> getFilms() {
-        String findAllQuery = "SELECT * FROM films";
-        return jdbcTemplate.query(findAllQuery, filmRowMapper);
+    public List<Film> getFilmsAfter(Long afterId, int limit, FieldSet fields) {
+        String findPageQuery = "SELECT * FROM films WHERE id > ? ORDER BY id LIMIT ?";
+        return filmAggregateLoader.load(fields, findPageQuery, afterId, limit);
+    }
+
+    @Override
+    public void streamFilms(int chunkSize, Consumer<Film> consumer) {
+        String findAllQuery = "SELECT * FROM films ORDER BY id";
+        filmAggregateLoader.stream(findAllQuery, chunkSize, consumer);
     }
 
     @Override
     public Optional<Film> getFilmById(Long id) {
+        return getFilmById(id, FieldSet.ALL);
+    }
+
+    @Override
+    public Optional<Film> getFilmById(Long id, FieldSet fields) {
         String findByIdQuery = "SELECT * FROM films WHERE id = ?";
-        try {
-            Film film = jdbcTemplate.queryForObject(findByIdQuery, filmRowMapper, id);
-            return Optional.ofNullable(film);
-        } catch (EmptyResultDataAccessException ex) {
-            return Optional.empty();
-        }
+        return filmAggregateLoader.load(fields, findByIdQuery, id).stream().findFirst();
     }
 
     @Override
@@ -98,11 +121,106 @@ public class FilmDbStorage implements FilmStorage {
         //сгенерированный id нового фильма
         newFilm.setId(id);
 
-        saveLikesOfFilm(newFilm.getUserIdsLiked(), newFilm.getId());
+        //у нового фильма лайков в БД ещё нет, удалять перед вставкой нечего
+        insertLikesOfFilm(newFilm.getUserIdsLiked(), newFilm.getId());
         saveGenresOfFilm(newFilm.getGenres(), newFilm.getId());
+        List<Integer> genreIds = existingGenreIds(newFilm.getGenres());
+        List<ReentrantLock> locks = filmLikesIndex.allLocks();
+        locks.forEach(ReentrantLock::lock);
+        try {
+            addToIndexes(newFilm, newFilm.getUserIdsLiked(), genreIds);
+        } finally {
+            locks.forEach(ReentrantLock::unlock);
+        }
         return newFilm;
     }
 
+    //пакетная вставка: фильмы одним batch-запросом, сгенерированные id сопоставляются
+    //фильмам по порядку, затем жанры и лайки всех фильмов пакета - тоже batch-запросами
+    @Override
+    public List<Film> createFilms(List<Film> newFilms) {
+        if (newFilms.isEmpty())
+            return newFilms;
+
+        String insertQuery = "INSERT INTO films (name, description, release_date, duration, mpa_id) VALUES (?, ?, ?, ?, ?)";
+        String insertFilmGenreQuery = "INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)";
+        String insertLikeQuery = "INSERT INTO film_likes (film_id, user_id) VALUES (?, ?)";
+
+        List<List<Integer>> genreIdsOfFilms = new ArrayList<>(newFilms.size());
+        for (Film film : newFilms) {
+            genreIdsOfFilms.add(film.getGenres() != null ? existingGenreIds(film.getGenres()) : List.of());
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
+            jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(insertQuery, new String[]{"id"}),
+                    new BatchPreparedStatementSetter() {
+                        @Override
+                        public void setValues(PreparedStatement ps, int i) throws SQLException {
+                            Film film = newFilms.get(i);
+                            ps.setString(1, film.getName());
+                            ps.setString(2, film.getDescription());
+                            ps.setDate(3, Date.valueOf(film.getReleaseDate()));
+                            ps.setInt(4, film.getDuration());
+                            if (film.getMpa() != null)
+                                ps.setInt(5, film.getMpa().getId());
+                            else
+                                ps.setNull(5, Types.INTEGER);
+                        }
+
+                        @Override
+                        public int getBatchSize() {
+                            return newFilms.size();
+                        }
+                    }, keyHolder);
+
+            List<Map<String, Object>> keys = keyHolder.getKeyList();
+            List<Object[]> genreArgs = new ArrayList<>();
+            List<Object[]> likeArgs = new ArrayList<>();
+            for (int i = 0; i < newFilms.size(); i++) {
+                Film film = newFilms.get(i);
+                film.setId(((Number) keys.get(i).values().iterator().next()).longValue());
+                for (Integer genreId : genreIdsOfFilms.get(i)) {
+                    genreArgs.add(new Object[]{film.getId(), genreId});
+                }
+                if (film.getUserIdsLiked() != null) {
+                    for (Long userId : film.getUserIdsLiked()) {
+                        likeArgs.add(new Object[]{film.getId(), userId});
+                    }
+                }
+            }
+            if (!genreArgs.isEmpty())
+                jdbcTemplate.batchUpdate(insertFilmGenreQuery, genreArgs);
+            if (!likeArgs.isEmpty())
+                jdbcTemplate.batchUpdate(insertLikeQuery, likeArgs);
+        });
+
+        List<ReentrantLock> locks = filmLikesIndex.allLocks();
+        locks.forEach(ReentrantLock::lock);
+        try {
+            for (int i = 0; i < newFilms.size(); i++) {
+                Film film = newFilms.get(i);
+                addToIndexes(film, film.getUserIdsLiked() != null ? film.getUserIdsLiked() : Set.of(),
+                        genreIdsOfFilms.get(i));
+            }
+        } finally {
+            locks.forEach(ReentrantLock::unlock);
+        }
+        return newFilms;
+    }
+
+    //новый фильм, уже записанный в БД вместе с лайками и жанрами genreIds, добавляется во все индексы;
+    //вызывается под блокировками всех пользователей: как только id фильма попал в filmIds,
+    //ему можно ставить лайки, и они не должны лечь между записью лайков в индексы
+    private void addToIndexes(Film film, Set<Long> userIdsLiked, List<Integer> genreIds) {
+        filmIds.add(film.getId());
+        filmPopularityIndex.setFilm(film.getId(), userIdsLiked.size(), film.getReleaseDate().getYear(), genreIds);
+        filmLikesIndex.setLikes(film.getId(), userIdsLiked);
+        filmSimilarityIndex.markChanged(film.getId());
+        filmSearchIndex.setFilm(film.getId(), film.getName(), film.getDescription());
+        entityVersions.filmChanged(film.getId());
+    }
+
     @Override
     public Film updateFilm(Film newFilm) {
         String updateQuery = "UPDATE films SET name = ?," +
@@ -120,8 +238,27 @@ public class FilmDbStorage implements FilmStorage {
                 newFilm.getMpa() != null ? newFilm.getMpa().getId() : null,
                 newFilm.getId());
 
-        saveLikesOfFilm(newFilm.getUserIdsLiked(), newFilm.getId());
         saveGenresOfFilm(newFilm.getGenres(), newFilm.getId());
+        //лайки фильма перезаписываются целиком: под блокировками всех пользователей ни отложенные,
+        //ни новые лайки не лягут между перезаписью таблицы и индексов
+        List<ReentrantLock> locks = filmLikesIndex.allLocks();
+        locks.forEach(ReentrantLock::lock);
+        try {
+            likeWriteBehindBuffer.flush();
+            saveLikesOfFilm(newFilm.getUserIdsLiked(), newFilm.getId());
+            //лайки фильма перезаписаны целиком, а жанры только добавляются к прежним,
+            //поэтому для рейтингов по жанрам они перечитываются из БД
+            String selectGenreIdsQuery = "SELECT genre_id FROM film_genres WHERE film_id = ?";
+            filmPopularityIndex.setFilm(newFilm.getId(), newFilm.getUserIdsLiked().size(),
+                    newFilm.getReleaseDate().getYear(),
+                    jdbcTemplate.queryForList(selectGenreIdsQuery, Integer.class, newFilm.getId()));
+            filmLikesIndex.setLikes(newFilm.getId(), newFilm.getUserIdsLiked());
+            filmSimilarityIndex.markChanged(newFilm.getId());
+            filmSearchIndex.setFilm(newFilm.getId(), newFilm.getName(), newFilm.getDescription());
+            entityVersions.filmChanged(newFilm.getId());
+        } finally {
+            locks.forEach(ReentrantLock::unlock);
+        }
 
         return newFilm;
     }
@@ -129,23 +266,55 @@ public class FilmDbStorage implements FilmStorage {
     @Override
     public void deleteFilm(Long id) {
         String deleteByIdQuery = "DELETE FROM films WHERE id = ?";
-        jdbcTemplate.update(deleteByIdQuery, id);
+
+        //лайки фильма ставят любые пользователи: под блокировками всех пользователей новых
+        //отложенных лайков фильму не появится, а принятые записываются до удаления,
+        //иначе их сброс после удаления упрётся во внешний ключ
+        List<ReentrantLock> locks = filmLikesIndex.allLocks();
+        locks.forEach(ReentrantLock::lock);
+        try {
+            likeWriteBehindBuffer.flush();
+            jdbcTemplate.update(deleteByIdQuery, id);
+            filmIds.remove(id);
+            filmPopularityIndex.removeFilm(id);
+            filmLikesIndex.removeFilm(id);
+            filmSimilarityIndex.removeFilm(id);
+            filmSearchIndex.removeFilm(id);
+            entityVersions.filmChanged(id);
+        } finally {
+            locks.forEach(ReentrantLock::unlock);
+        }
     }
 
 
+    //одна операция - одно выражение: вставка только при отсутствии пары,
+    //одновременную вставку той же пары отсекает уникальный ключ (film_id, user_id);
+    //индекс лайков меняется под блокировкой пользователя и только если лайк реально добавлен
     @Override
     public void addLikeToFilm(Long filmId, Long userId) {
-        String insertNewFriendQuery = "INSERT INTO film_likes (film_id, user_id) VALUES (?, ?)";
+        String insertLikeQuery = "INSERT INTO film_likes (film_id, user_id)" +
+                " SELECT ?, ? WHERE NOT EXISTS" +
+                " (SELECT 1 FROM film_likes WHERE film_id = ? AND user_id = ?)";
 
-        if (!isLikeAlreadyExist(filmId, userId)) {
-            GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
-            jdbcTemplate.update(connection -> {
-                PreparedStatement ps = connection
-                        .prepareStatement(insertNewFriendQuery, Statement.RETURN_GENERATED_KEYS);
-                ps.setLong(1, filmId);
-                ps.setLong(2, userId);
-                return ps;
-            }, keyHolder);
+        ReentrantLock lock = filmLikesIndex.lockFor(userId);
+        lock.lock();
+        try {
+            //фильм удалён после проверки в сервисе
+            if (!filmIds.contains(filmId))
+                return;
+            boolean added = likeWriteBehindBuffer.isEnabled()
+                    ? likeWriteBehindBuffer.setLike(filmId, userId, true)
+                    : jdbcTemplate.update(insertLikeQuery, filmId, userId, filmId, userId) > 0;
+            if (added) {
+                filmPopularityIndex.changeLikes(filmId, 1);
+                filmLikesIndex.addLike(filmId, userId);
+                filmSimilarityIndex.addLike(filmId, userId);
+                entityVersions.filmChanged(filmId);
+            }
+        } catch (DuplicateKeyException ignored) {
+            //лайк уже поставлен запросом в обход блокировки (массовой загрузкой)
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -153,28 +322,80 @@ public class FilmDbStorage implements FilmStorage {
     public void removeLikeFromFilm(Long filmId, Long userId) {
         String deleteLikeQuery = "DELETE FROM film_likes WHERE film_id = ? AND user_id = ?";
 
-        if (isLikeAlreadyExist(filmId, userId)) {
-            jdbcTemplate.update(deleteLikeQuery, filmId, userId);
+        ReentrantLock lock = filmLikesIndex.lockFor(userId);
+        lock.lock();
+        try {
+            boolean removed = likeWriteBehindBuffer.isEnabled()
+                    ? likeWriteBehindBuffer.setLike(filmId, userId, false)
+                    : jdbcTemplate.update(deleteLikeQuery, filmId, userId) > 0;
+            if (removed) {
+                filmPopularityIndex.changeLikes(filmId, -1);
+                filmLikesIndex.removeLike(filmId, userId);
+                filmSimilarityIndex.markChanged(filmId);
+                entityVersions.filmChanged(filmId);
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
+    //фильмы берутся из индекса похожих фильмов, из БД читаются только их строки
+    @Override
+    public List<Film> getSimilarFilms(Long filmId, int limit) {
+        return filmAggregateLoader.loadByIds(Arrays.stream(filmSimilarityIndex.findSimilar(filmId, limit))
+                .boxed()
+                .toList());
+    }
+
+    //фильмы подбираются по индексу поиска, из БД читаются только найденные
+    @Override
+    public List<Film> searchFilms(String query, int limit) {
+        return filmAggregateLoader.loadByIds(Arrays.stream(filmSearchIndex.search(query, limit))
+                .boxed()
+                .toList());
+    }
+
+    //фильмы берутся из индекса лайков, из БД читаются только строки рекомендованных фильмов
+    @Override
+    public List<Film> getRecommendedFilms(Long userId, int limit) {
+        return filmAggregateLoader.loadByIds(Arrays.stream(filmLikesIndex.recommendFilms(userId, limit))
+                .boxed()
+                .toList());
+    }
+
     @Override
     public Collection<Film> getTopPopularFilms(Integer count) {
-        String selectMostPopularFilmsQuery = """
-                SELECT f.*
-                FROM films f
-                LEFT JOIN film_likes l ON f.id = l.film_id
-                GROUP BY f.id
-                ORDER BY COUNT(l.user_id) DESC
-                LIMIT ?
-                """;
+        return getTopPopularFilms(count, null, null);
+    }
+
+    @Override
+    public Collection<Film> getTopPopularFilms(Integer count, Integer genreId, Integer year) {
+        return getTopPopularFilms(count, genreId, year, FieldSet.ALL);
+    }
 
-        return jdbcTemplate.query(selectMostPopularFilmsQuery, filmRowMapper, count);
+    @Override
+    public Collection<Film> getTopPopularFilms(Integer count, Integer genreId, Integer year, FieldSet fields) {
+        //порядок берётся из рейтингов в памяти, из БД читаются только сами фильмы
+        return filmAggregateLoader.loadByIds(filmPopularityIndex.getTopFilmIds(count, genreId, year), fields);
     }
 
 
+    @Override
+    public long getFilmVersion(Long id) {
+        return entityVersions.getFilmVersion(id);
+    }
+
+    @Override
+    public long getDataVersion() {
+        return entityVersions.getDataVersion();
+    }
+
     @Override
     public boolean isLikeAlreadyExist(Long filmId, Long userId) {
+        Boolean buffered = likeWriteBehindBuffer.getBufferedState(filmId, userId);
+        if (buffered != null)
+            return buffered;
+
         String isLikeAlreadyExistQuery = "SELECT COUNT(*) FROM film_likes" +
                 " WHERE film_id = ?" +
                 " AND user_id = ?";
@@ -187,70 +408,140 @@ public class FilmDbStorage implements FilmStorage {
     }
 
     @Override
-    public void deleteAll() {
-        String deleteByIdQuery = "DELETE FROM films";
-        jdbcTemplate.update(deleteByIdQuery);
+    public boolean isFilmExist(Long id) {
+        return filmIds.contains(id);
     }
 
-    public Optional<MPA> getMpaById(Integer id) {
-        String selectByIdQuery = "SELECT * FROM mpa WHERE id = ?";
+    @Override
+    public Set<Long> getExistingFilmIds(Collection<Long> ids) {
+        return filmIds.retainExisting(ids);
+    }
+
+    @Override
+    public void applyLikeOperations(List<LikeOperation> operations) {
+        //пакет пишется в обход буфера: сначала в БД попадают ранее принятые операции
+        likeWriteBehindBuffer.flush();
+
+        String insertLikeQuery = "INSERT INTO film_likes (film_id, user_id)" +
+                " SELECT ?, ? WHERE NOT EXISTS" +
+                " (SELECT 1 FROM film_likes WHERE film_id = ? AND user_id = ?)";
+        String deleteLikeQuery = "DELETE FROM film_likes WHERE film_id = ? AND user_id = ?";
+
+        //для каждой пары фильм-пользователь имеет значение только последняя операция в пакете
+        Map<LikeKey, BatchOperationType> lastOperations = new LinkedHashMap<>();
+        for (LikeOperation operation : operations) {
+            lastOperations.put(new LikeKey(operation.getFilmId(), operation.getUserId()), operation.getType());
+        }
+
+        List<LikeKey> likesToAdd = new ArrayList<>();
+        List<LikeKey> likesToRemove = new ArrayList<>();
+        lastOperations.forEach((like, type) -> {
+            if (type == BatchOperationType.ADD)
+                likesToAdd.add(like);
+            else
+                likesToRemove.add(like);
+        });
+
+        List<Object[]> insertArgs = likesToAdd.stream()
+                .map(like -> new Object[]{like.filmId(), like.userId(), like.filmId(), like.userId()})
+                .toList();
+        List<Object[]> deleteArgs = likesToRemove.stream()
+                .map(like -> new Object[]{like.filmId(), like.userId()})
+                .toList();
+
+        List<ReentrantLock> locks = filmLikesIndex.locksFor(lastOperations.keySet().stream()
+                .map(LikeKey::userId)
+                .toList());
+        locks.forEach(ReentrantLock::lock);
         try {
-            MPA mpa = jdbcTemplate.queryForObject(selectByIdQuery, mpaRowMapper, id);
-            return Optional.ofNullable(mpa);
-        } catch (EmptyResultDataAccessException ex) {
-            return Optional.empty();
+            int[][] counts;
+            try {
+                counts = executeLikesBatch(insertLikeQuery, insertArgs, deleteLikeQuery, deleteArgs);
+            } catch (DuplicateKeyException ex) {
+                //пару вставил параллельный запрос после проверки NOT EXISTS: транзакция откатилась,
+                //при повторе такая пара уже видна и пропускается
+                counts = executeLikesBatch(insertLikeQuery, insertArgs, deleteLikeQuery, deleteArgs);
+            }
+
+            //рейтинг и индекс лайков меняются только после фиксации транзакции
+            for (int i = 0; i < likesToAdd.size(); i++) {
+                LikeKey like = likesToAdd.get(i);
+                if (counts[0][i] > 0) {
+                    filmPopularityIndex.changeLikes(like.filmId(), 1);
+                    filmLikesIndex.addLike(like.filmId(), like.userId());
+                    filmSimilarityIndex.addLike(like.filmId(), like.userId());
+                    entityVersions.filmChanged(like.filmId());
+                }
+            }
+            for (int i = 0; i < likesToRemove.size(); i++) {
+                LikeKey like = likesToRemove.get(i);
+                if (counts[1][i] > 0) {
+                    filmPopularityIndex.changeLikes(like.filmId(), -1);
+                    filmLikesIndex.removeLike(like.filmId(), like.userId());
+                    filmSimilarityIndex.markChanged(like.filmId());
+                    entityVersions.filmChanged(like.filmId());
+                }
+            }
+        } finally {
+            locks.forEach(ReentrantLock::unlock);
         }
     }
 
-    public List<Long> getUserIdsLikesOfFilm(Long id) {
-        String selectUserLikesByFilmIdQuery = "SELECT user_id FROM film_likes WHERE film_id = ?";
-        return jdbcTemplate.queryForList(selectUserLikesByFilmIdQuery, Long.class, id);
+    private int[][] executeLikesBatch(String insertLikeQuery, List<Object[]> insertArgs,
+                                      String deleteLikeQuery, List<Object[]> deleteArgs) {
+        return transactionTemplate.execute(status -> new int[][]{
+                insertArgs.isEmpty() ? new int[0] : jdbcTemplate.batchUpdate(insertLikeQuery, insertArgs),
+                deleteArgs.isEmpty() ? new int[0] : jdbcTemplate.batchUpdate(deleteLikeQuery, deleteArgs)
+        });
     }
 
-    public List<Genre> getGenresOfFilmById(Long id) {
-        String selectGenresOfFilmByIdQuery = "SELECT g.id, g.name " +
-                " FROM genres AS g" +
-                " JOIN film_genres AS fg" +
-                " ON g.id = fg.genre_id" +
-                " WHERE fg.film_id = ?" +
-                " ORDER BY g.id";
-        return jdbcTemplate.query(selectGenresOfFilmByIdQuery, genreRowMapper, id);
+    @Override
+    public void deleteAll() {
+        String deleteByIdQuery = "DELETE FROM films";
+        jdbcTemplate.update(deleteByIdQuery);
+        filmIds.clear();
+        filmPopularityIndex.clear();
+        filmLikesIndex.clear();
+        filmSimilarityIndex.clear();
+        filmSearchIndex.clear();
+        entityVersions.allChanged();
     }
 
     private void saveGenresOfFilm(Set<Genre> genres, Long filmId) {
-        String findAllGenresIdQuery = "SELECT id FROM genres";
-        String insertFilmGenreQuery = "INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)";
-
-        List<Integer> genresId = jdbcTemplate.queryForList(findAllGenresIdQuery, Integer.class);
+        String insertFilmGenreQuery = "INSERT INTO film_genres (film_id, genre_id)" +
+                " SELECT ?, ? WHERE NOT EXISTS" +
+                " (SELECT 1 FROM film_genres WHERE film_id = ? AND genre_id = ?)";
+
+        List<Object[]> args = existingGenreIds(genres).stream()
+                .map(genreId -> new Object[]{filmId, genreId, filmId, genreId})
+                .toList();
+        if (!args.isEmpty())
+            jdbcTemplate.batchUpdate(insertFilmGenreQuery, args);
+    }
 
-        for (var genre : genres) {
-            if (genresId.contains(genre.getId())) {
-                if (!isFilmGenreAlreadyExist(filmId, genre.getId())) {
-                    jdbcTemplate.update(insertFilmGenreQuery, filmId, genre.getId());
-                }
-            }
-        }
+    //id жанров фильма, которые есть в справочнике
+    private List<Integer> existingGenreIds(Set<Genre> genres) {
+        return genres.stream()
+                .map(Genre::getId)
+                .filter(genreId -> genreStorage.getGenreById(genreId).isPresent())
+                .distinct()
+                .toList();
     }
 
     private void saveLikesOfFilm(Set<Long> userIdsLikes, Long filmId) {
         String deleteByIdQuery = "DELETE FROM film_likes WHERE film_id = ?";
         jdbcTemplate.update(deleteByIdQuery, filmId);
 
-        String insertByIdQuery = "INSERT INTO film_likes WHERE film_id = ? AND user_id = ?";
-        for (var userId : userIdsLikes) {
-            jdbcTemplate.update(insertByIdQuery, filmId, userId);
-        }
+        insertLikesOfFilm(userIdsLikes, filmId);
     }
 
-    private boolean isFilmGenreAlreadyExist(Long filmId, Integer genreId) {
-        String isFriendAlreadyExistQuery = "SELECT COUNT(*) FROM film_genres" +
-                " WHERE film_id = ?" +
-                " AND genre_id = ?";
-        try {
-            int result = jdbcTemplate.queryForObject(isFriendAlreadyExistQuery, Integer.class, filmId, genreId);
-            return result > 0;
-        } catch (EmptyResultDataAccessException ignored) {
-            return false;
-        }
+    private void insertLikesOfFilm(Set<Long> userIdsLikes, Long filmId) {
+        String insertLikeQuery = "INSERT INTO film_likes (film_id, user_id) VALUES (?, ?)";
+
+        List<Object[]> args = userIdsLikes.stream()
+                .map(userId -> new Object[]{filmId, userId})
+                .toList();
+        if (!args.isEmpty())
+            jdbcTemplate.batchUpdate(insertLikeQuery, args);
     }
 }
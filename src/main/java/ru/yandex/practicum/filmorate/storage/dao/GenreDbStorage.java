@@ -1,7 +1,7 @@
 package ru.yandex.practicum.filmorate.storage.dao;
 
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
-import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.model.Genre;
@@ -9,28 +9,47 @@ import ru.yandex.practicum.filmorate.storage.interfaces.GenreStorage;
 import ru.yandex.practicum.filmorate.storage.mappers.GenreRowMapper;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
 
+//справочник жанров загружается в память при старте приложения,
+//повторное чтение из БД выполняется только в refreshCache()
 @Repository
 @RequiredArgsConstructor
 public class GenreDbStorage implements GenreStorage {
     private final JdbcTemplate jdbcTemplate;
     private final GenreRowMapper genreRowMapper;
 
+    //хеш содержимого, а не счётчик: совпадает у одинаковых справочников и после перезапуска
+    private volatile long version;
+    private volatile Map<Integer, Genre> genresById = Map.of();
+
+    @PostConstruct
     @Override
-    public Collection<Genre> getGenres() {
+    public void refreshCache() {
         String findAllQuery = "SELECT * FROM genres ORDER BY id";
-        return jdbcTemplate.query(findAllQuery, genreRowMapper);
+        Map<Integer, Genre> loaded = new LinkedHashMap<>();
+        for (Genre genre : jdbcTemplate.query(findAllQuery, genreRowMapper)) {
+            loaded.put(genre.getId(), genre);
+        }
+        genresById = Collections.unmodifiableMap(loaded);
+        version = Integer.toUnsignedLong(loaded.hashCode());
+    }
+
+    @Override
+    public Collection<Genre> getGenres() {
+        return genresById.values();
     }
 
     @Override
     public Optional<Genre> getGenreById(Integer id) {
-        String findById = "SELECT * FROM genres WHERE id = ?";
-        try {
-            Genre mpa = jdbcTemplate.queryForObject(findById, genreRowMapper, id);
-            return Optional.ofNullable(mpa);
-        } catch (EmptyResultDataAccessException ex) {
-            return Optional.empty();
-        }
+        return Optional.ofNullable(genresById.get(id));
+    }
+
+    @Override
+    public long getVersion() {
+        return version;
     }
 }
@@ -0,0 +1,197 @@
+package ru.yandex.practicum.filmorate.storage.dao;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+//журнал операций с лайками, ещё не записанных в film_likes: файлы-сегменты likes-<номер>.log
+//в каталоге журнала, запись фиксированной длины - признак лайка (1 - поставлен, 0 - снят),
+//id фильма и id пользователя. Перед сбросом буфера в БД текущий сегмент закрывается для записи,
+//после фиксации транзакции закрытые сегменты удаляются; при старте все оставшиеся сегменты
+//читаются по порядку номеров. Неполная последняя запись (сбой во время записи) пропускается
+class LikeOperationLog implements Closeable {
+    private static final int RECORD_SIZE = Byte.BYTES + 2 * Long.BYTES;
+    private static final String PREFIX = "likes-";
+    private static final String SUFFIX = ".log";
+
+    private final Path directory;
+    private final List<Segment> sealed = new ArrayList<>();
+    //сегменты, канал которых закрыло прерывание пишущего потока: их записи ещё не в БД,
+    //поэтому они удаляются вместе с закрытыми при следующем сбросе
+    private final List<Segment> interrupted = new ArrayList<>();
+    private final ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+    private long nextNumber;
+    private Segment current;
+
+    record LikeRecord(long filmId, long userId, boolean liked) {
+    }
+
+    static final class Segment {
+        private final Path path;
+        private final FileChannel channel;
+        //сегмент удалён после фиксации сброса: все его операции уже в БД
+        private volatile boolean deleted;
+
+        private Segment(Path path, FileChannel channel) {
+            this.path = path;
+            this.channel = channel;
+        }
+    }
+
+    LikeOperationLog(Path directory) {
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        nextNumber = segmentPaths(directory).stream()
+                .mapToLong(LikeOperationLog::segmentNumber)
+                .max()
+                .orElse(0) + 1;
+        current = openSegment();
+    }
+
+    //все записи оставшихся сегментов в порядке их добавления
+    static List<LikeRecord> readAll(Path directory) {
+        List<LikeRecord> records = new ArrayList<>();
+        for (Path path : segmentPaths(directory)) {
+            try {
+                ByteBuffer content = ByteBuffer.wrap(Files.readAllBytes(path));
+                while (content.remaining() >= RECORD_SIZE) {
+                    boolean liked = content.get() == 1;
+                    records.add(new LikeRecord(content.getLong(), content.getLong(), liked));
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        return records;
+    }
+
+    //сегменты, оставшиеся от прошлого запуска; вызывается до открытия нового журнала
+    static void deleteAll(Path directory) {
+        for (Path path : segmentPaths(directory)) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+
+    //запись без сброса на диск; вызывается под блокировкой буфера, чтобы порядок записей
+    //совпадал с порядком операций. Возвращает сегмент, который нужно синхронизировать
+    Segment append(long filmId, long userId, boolean liked) {
+        //канал закрыт прерыванием потока во время записи или синхронизации: дальше пишется новый сегмент
+        if (!current.channel.isOpen()) {
+            interrupted.add(current);
+            current = openSegment();
+        }
+        buffer.clear();
+        buffer.put((byte) (liked ? 1 : 0)).putLong(filmId).putLong(userId).flip();
+        try {
+            while (buffer.hasRemaining()) {
+                current.channel.write(buffer);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return current;
+    }
+
+    //сброс на диск вне блокировки буфера: параллельные запросы синхронизируют канал одновременно,
+    //и ОС объединяет их в одну запись. Закрытый канал удалённого сегмента означает, что операция
+    //уже в БД; любой другой закрытый канал (ClosedByInterruptException) - что она не сброшена на диск
+    static void sync(Segment segment) {
+        try {
+            segment.channel.force(false);
+        } catch (ClosedChannelException ex) {
+            if (!segment.deleted)
+                throw new UncheckedIOException(ex);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    //дальнейшие операции пишутся в новый сегмент
+    void rotate() {
+        sealed.addAll(interrupted);
+        interrupted.clear();
+        sealed.add(current);
+        current = openSegment();
+    }
+
+    //удалить закрытые сегменты, все операции которых уже зафиксированы в БД
+    void deleteSealed() {
+        for (Segment segment : sealed) {
+            closeAndDelete(segment);
+        }
+        sealed.clear();
+    }
+
+    @Override
+    public void close() {
+        deleteSealed();
+        //непустые текущий и прерванные сегменты остаются на диске и повторяются при старте,
+        //повтор уже записанных операций ничего не меняет
+        try {
+            boolean empty = current.channel.isOpen() && current.channel.size() == 0;
+            current.channel.close();
+            if (empty)
+                Files.deleteIfExists(current.path);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private Segment openSegment() {
+        Path path = directory.resolve(String.format("%s%020d%s", PREFIX, nextNumber++, SUFFIX));
+        try {
+            return new Segment(path, FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static void closeAndDelete(Segment segment) {
+        try {
+            segment.deleted = true;
+            segment.channel.close();
+            Files.deleteIfExists(segment.path);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static List<Path> segmentPaths(Path directory) {
+        if (!Files.isDirectory(directory))
+            return List.of();
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+                    })
+                    .sorted((first, second) -> Long.compare(segmentNumber(first), segmentNumber(second)))
+                    .toList();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static long segmentNumber(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+}
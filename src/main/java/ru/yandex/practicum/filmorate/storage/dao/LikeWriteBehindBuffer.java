@@ -0,0 +1,429 @@
+package ru.yandex.practicum.filmorate.storage.dao;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.storage.index.EntityVersions;
+import ru.yandex.practicum.filmorate.storage.index.FilmLikesIndex;
+import ru.yandex.practicum.filmorate.storage.index.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.index.FilmSimilarityIndex;
+
+import java.io.UncheckedIOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+//отложенная запись лайков (filmorate.likes.write-behind.enabled=true): операция сначала пишется
+//в журнал на диске и в буфер в памяти, и запрос сразу получает ответ; в film_likes буфер
+//сбрасывается одной транзакцией, когда накопится flush-size пар или пройдёт flush-interval.
+//В буфере хранится только итоговое состояние каждой пары фильм-пользователь, поэтому лайк,
+//снятый до сброса, в БД не пишется вовсе. Чтения накладывают буфер на данные из БД.
+//После сбоя операции из журнала применяются к БД при следующем запуске.
+//Буфер ограничен max-pending парами: когда БД не успевает или недоступна, новые пары
+//пишутся в неё сразу, и запросы ждут БД, а не копят операции в памяти
+@Slf4j
+@Component
+public class LikeWriteBehindBuffer {
+    //предел паузы между повторами сброса после ошибок, если flush-interval меньше
+    private static final Duration MAX_RETRY_DELAY = Duration.ofSeconds(30);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final FilmPopularityIndex filmPopularityIndex;
+    private final FilmLikesIndex filmLikesIndex;
+    private final FilmSimilarityIndex filmSimilarityIndex;
+    private final EntityVersions entityVersions;
+    private final boolean enabled;
+    private final int flushSize;
+    private final int maxPending;
+    private final Duration flushInterval;
+    private final Path logDirectory;
+    private final boolean syncLog;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushNeeded = lock.newCondition();
+    //сбросы выполняются по одному: фоновым потоком и перед записью лайков в обход буфера
+    private final ReentrantLock flushLock = new ReentrantLock();
+    //filmId -> (userId -> состояние пары); pending - принятые операции, flushing - записываемые в БД
+    private Map<Long, Map<Long, PendingLike>> pending = new HashMap<>();
+    private Map<Long, Map<Long, PendingLike>> flushing = new HashMap<>();
+    private int pendingCount;
+    private LikeOperationLog operationLog;
+    private Thread flusher;
+    private volatile boolean running;
+
+    //liked - состояние после операций, before - до них (в БД или в записываемом пакете)
+    private record PendingLike(boolean before, boolean liked) {
+    }
+
+    public LikeWriteBehindBuffer(JdbcTemplate jdbcTemplate,
+                                 TransactionTemplate transactionTemplate,
+                                 FilmPopularityIndex filmPopularityIndex,
+                                 FilmLikesIndex filmLikesIndex,
+                                 FilmSimilarityIndex filmSimilarityIndex,
+                                 EntityVersions entityVersions,
+                                 @Value("${filmorate.likes.write-behind.enabled:false}") boolean enabled,
+                                 @Value("${filmorate.likes.write-behind.flush-size:1000}") int flushSize,
+                                 @Value("${filmorate.likes.write-behind.max-pending:100000}") int maxPending,
+                                 @Value("${filmorate.likes.write-behind.flush-interval:200ms}") Duration flushInterval,
+                                 @Value("${filmorate.likes.write-behind.log-dir:./db/likes-log}") Path logDirectory,
+                                 @Value("${filmorate.likes.write-behind.sync:true}") boolean syncLog) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.filmPopularityIndex = filmPopularityIndex;
+        this.filmLikesIndex = filmLikesIndex;
+        this.filmSimilarityIndex = filmSimilarityIndex;
+        this.entityVersions = entityVersions;
+        this.enabled = enabled;
+        this.flushSize = flushSize;
+        this.maxPending = maxPending;
+        this.flushInterval = flushInterval;
+        this.logDirectory = logDirectory;
+        this.syncLog = syncLog;
+    }
+
+    //восстановление после сбоя: операции журнала применяются к БД до приёма новых
+    @PostConstruct
+    public void start() {
+        if (!enabled)
+            return;
+
+        List<LikeOperationLog.LikeRecord> records = LikeOperationLog.readAll(logDirectory);
+        if (!records.isEmpty()) {
+            Map<Long, Map<Long, PendingLike>> recovered = new HashMap<>();
+            for (LikeOperationLog.LikeRecord record : records) {
+                recovered.computeIfAbsent(record.filmId(), filmId -> new HashMap<>())
+                        .put(record.userId(), new PendingLike(!record.liked(), record.liked()));
+            }
+            write(recovered);
+            filmPopularityIndex.reload();
+            filmLikesIndex.reload();
+            filmSimilarityIndex.rebuild();
+            log.info("Из журнала лайков восстановлено операций: {}", records.size());
+        }
+        LikeOperationLog.deleteAll(logDirectory);
+        operationLog = new LikeOperationLog(logDirectory);
+
+        running = true;
+        flusher = Thread.ofPlatform().daemon().name("likes-write-behind").start(this::flushLoop);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (!enabled)
+            return;
+
+        running = false;
+        lock.lock();
+        try {
+            flushNeeded.signal();
+        } finally {
+            lock.unlock();
+        }
+        flusher.join();
+        flush();
+        operationLog.close();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    //поставить (liked = true) или снять лайк; false - пара уже в таком состоянии и ничего не изменилось.
+    //Вызывается под блокировкой пользователя из FilmLikesIndex.lockFor, к БД обращается, только
+    //когда буфер заполнен. К моменту возврата операция записана в журнал или в film_likes
+    public boolean setLike(long filmId, long userId, boolean liked) {
+        LikeOperationLog.Segment segment;
+        boolean full;
+        lock.lock();
+        try {
+            PendingLike pendingLike = pending.getOrDefault(filmId, Map.of()).get(userId);
+            Boolean flushingState = pendingLike == null ? getState(flushing, filmId, userId) : null;
+            boolean current;
+            boolean before;
+            if (pendingLike != null) {
+                current = pendingLike.liked();
+                before = pendingLike.before();
+            } else {
+                //пары нет среди принятых операций: её состояние в БД знает индекс лайков,
+                //который меняется вместе с таблицей под той же блокировкой пользователя
+                current = flushingState != null ? flushingState : filmLikesIndex.hasLike(filmId, userId);
+                before = current;
+            }
+            if (current == liked)
+                return false;
+
+            //пара, которой нет в буфере, при заполненном буфере пишется в БД сразу (вне блокировки буфера);
+            //пары из буфера так писать нельзя - запись пакета легла бы поверх, поэтому они меняются в буфере
+            full = pendingLike == null && flushingState == null && pendingCount >= maxPending;
+            if (full) {
+                segment = null;
+            } else {
+                segment = operationLog.append(filmId, userId, liked);
+                Map<Long, PendingLike> filmPending = pending.computeIfAbsent(filmId, id -> new HashMap<>());
+                if (before == liked) {
+                    //лайк снят до сброса (или наоборот): пара возвращается в исходное состояние
+                    filmPending.remove(userId);
+                    if (filmPending.isEmpty())
+                        pending.remove(filmId);
+                    pendingCount--;
+                } else {
+                    filmPending.put(userId, new PendingLike(before, liked));
+                    pendingCount++;
+                    if (pendingCount >= flushSize)
+                        flushNeeded.signal();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (full)
+            return writeDirectly(filmId, userId, liked);
+        if (syncLog)
+            sync(segment, filmId, userId, liked);
+        return true;
+    }
+
+    //канал сегмента может закрыть прерывание этого или соседнего потока до сброса на диск:
+    //тогда запись повторяется в новом сегменте, и сброс выполняется без учёта прерывания.
+    //Повтор безопасен - операции с парой идут под блокировкой пользователя, а восстановление
+    //из журнала лишь выставляет паре её последнее состояние
+    private void sync(LikeOperationLog.Segment segment, long filmId, long userId, boolean liked) {
+        try {
+            LikeOperationLog.sync(segment);
+            return;
+        } catch (UncheckedIOException ex) {
+            if (!(ex.getCause() instanceof ClosedChannelException))
+                throw ex;
+        }
+
+        boolean interrupted = Thread.interrupted();
+        try {
+            lock.lock();
+            try {
+                segment = operationLog.append(filmId, userId, liked);
+            } finally {
+                lock.unlock();
+            }
+            LikeOperationLog.sync(segment);
+        } finally {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    //состояние пары по ещё не записанным в БД операциям, null - в буфере пары нет
+    public Boolean getBufferedState(long filmId, long userId) {
+        lock.lock();
+        try {
+            Boolean state = getState(pending, filmId, userId);
+            return state != null ? state : getState(flushing, filmId, userId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //снимок буфера по фильмам: filmId -> (userId -> есть ли лайк). Снимок берётся до чтения из БД,
+    //тогда операции, записанные в БД между снимком и чтением, не теряются
+    public Map<Long, Map<Long, Boolean>> snapshot(Collection<Long> filmIds) {
+        lock.lock();
+        try {
+            if (pending.isEmpty() && flushing.isEmpty())
+                return Map.of();
+
+            Map<Long, Map<Long, Boolean>> result = new HashMap<>();
+            for (Long filmId : filmIds) {
+                copyStates(flushing, filmId, result);
+                copyStates(pending, filmId, result);
+            }
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //записать накопленные операции в film_likes; возвращает число записанных пар.
+    //При ошибке записываемый пакет сохраняется и повторяется следующим сбросом
+    public int flush() {
+        if (!enabled)
+            return 0;
+
+        flushLock.lock();
+        try {
+            Map<Long, Map<Long, PendingLike>> batch;
+            lock.lock();
+            try {
+                if (flushing.isEmpty()) {
+                    if (pending.isEmpty())
+                        return 0;
+                    flushing = pending;
+                    pending = new HashMap<>();
+                    pendingCount = 0;
+                    operationLog.rotate();
+                }
+                batch = flushing;
+            } finally {
+                lock.unlock();
+            }
+
+            int written = write(batch);
+
+            lock.lock();
+            try {
+                flushing = new HashMap<>();
+                operationLog.deleteSealed();
+            } finally {
+                lock.unlock();
+            }
+            return written;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushLoop() {
+        int failures = 0;
+        while (running) {
+            lock.lock();
+            try {
+                if (failures > 0) {
+                    //после ошибки сброс повторяется только через паузу, даже если буфер заполнен
+                    long nanos = retryDelay(failures).toNanos();
+                    while (running && nanos > 0) {
+                        nanos = flushNeeded.awaitNanos(nanos);
+                    }
+                } else if (pendingCount < flushSize) {
+                    flushNeeded.await(flushInterval.toNanos(), TimeUnit.NANOSECONDS);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+            if (!running)
+                return;
+
+            try {
+                flush();
+                if (failures > 0)
+                    log.info("Запись лайков в БД восстановлена после ошибок подряд: {}", failures);
+                failures = 0;
+            } catch (RuntimeException ex) {
+                failures++;
+                //трассировка пишется только для первой ошибки подряд
+                if (failures == 1)
+                    log.warn("Не удалось записать лайки в БД, повтор через {}", retryDelay(failures), ex);
+                else
+                    log.warn("Не удалось записать лайки в БД (ошибок подряд: {}), повтор через {}: {}",
+                            failures, retryDelay(failures), ex.getMessage());
+            }
+        }
+    }
+
+    //пауза после failures ошибок подряд: flush-interval, удваиваемый с каждой ошибкой до MAX_RETRY_DELAY
+    private Duration retryDelay(int failures) {
+        Duration limit = flushInterval.compareTo(MAX_RETRY_DELAY) > 0 ? flushInterval : MAX_RETRY_DELAY;
+        Duration delay = flushInterval.multipliedBy(1L << Math.min(failures - 1, 20));
+        return delay.compareTo(limit) > 0 ? limit : delay;
+    }
+
+    private int write(Map<Long, Map<Long, PendingLike>> batch) {
+        String insertLikeQuery = "INSERT INTO film_likes (film_id, user_id)" +
+                " SELECT ?, ? WHERE NOT EXISTS" +
+                " (SELECT 1 FROM film_likes WHERE film_id = ? AND user_id = ?)";
+        String deleteLikeQuery = "DELETE FROM film_likes WHERE film_id = ? AND user_id = ?";
+
+        List<Object[]> insertArgs = new ArrayList<>();
+        List<Object[]> deleteArgs = new ArrayList<>();
+        batch.forEach((filmId, likes) -> likes.forEach((userId, like) -> {
+            if (like.liked())
+                insertArgs.add(new Object[]{filmId, userId, filmId, userId});
+            else
+                deleteArgs.add(new Object[]{filmId, userId});
+        }));
+
+        try {
+            try {
+                executeBatch(insertLikeQuery, insertArgs, deleteLikeQuery, deleteArgs);
+            } catch (DuplicateKeyException ex) {
+                //пару вставили в обход буфера (массовой загрузкой): при повторе она пропускается
+                executeBatch(insertLikeQuery, insertArgs, deleteLikeQuery, deleteArgs);
+            }
+        } catch (DataIntegrityViolationException ex) {
+            //фильм или пользователь удалён до сброса: пары записываются по одной, такие пропускаются
+            writeOneByOne(insertLikeQuery, insertArgs, deleteLikeQuery, deleteArgs);
+        }
+        return insertArgs.size() + deleteArgs.size();
+    }
+
+    private void executeBatch(String insertLikeQuery, List<Object[]> insertArgs,
+                              String deleteLikeQuery, List<Object[]> deleteArgs) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!insertArgs.isEmpty())
+                jdbcTemplate.batchUpdate(insertLikeQuery, insertArgs);
+            if (!deleteArgs.isEmpty())
+                jdbcTemplate.batchUpdate(deleteLikeQuery, deleteArgs);
+        });
+    }
+
+    private void writeOneByOne(String insertLikeQuery, List<Object[]> insertArgs,
+                               String deleteLikeQuery, List<Object[]> deleteArgs) {
+        for (Object[] args : insertArgs) {
+            try {
+                jdbcTemplate.update(insertLikeQuery, args);
+            } catch (DuplicateKeyException ignored) {
+                //лайк уже есть
+            } catch (DataIntegrityViolationException ex) {
+                log.debug("Лайк фильму {} от пользователя {} не записан: фильм или пользователь удалён", args[0], args[1]);
+                //рейтинг и индекс лайков были изменены при приёме операции
+                filmPopularityIndex.changeLikes((Long) args[0], -1);
+                filmLikesIndex.removeLike((Long) args[0], (Long) args[1]);
+                filmSimilarityIndex.markChanged((Long) args[0]);
+                entityVersions.filmChanged((Long) args[0]);
+            }
+        }
+        for (Object[] args : deleteArgs) {
+            jdbcTemplate.update(deleteLikeQuery, args);
+        }
+    }
+
+    private boolean writeDirectly(long filmId, long userId, boolean liked) {
+        String insertLikeQuery = "INSERT INTO film_likes (film_id, user_id)" +
+                " SELECT ?, ? WHERE NOT EXISTS" +
+                " (SELECT 1 FROM film_likes WHERE film_id = ? AND user_id = ?)";
+        String deleteLikeQuery = "DELETE FROM film_likes WHERE film_id = ? AND user_id = ?";
+
+        if (liked)
+            return jdbcTemplate.update(insertLikeQuery, filmId, userId, filmId, userId) > 0;
+        return jdbcTemplate.update(deleteLikeQuery, filmId, userId) > 0;
+    }
+
+    private static Boolean getState(Map<Long, Map<Long, PendingLike>> likes, long filmId, long userId) {
+        Map<Long, PendingLike> filmLikes = likes.get(filmId);
+        if (filmLikes == null)
+            return null;
+        PendingLike like = filmLikes.get(userId);
+        return like != null ? like.liked() : null;
+    }
+
+    private static void copyStates(Map<Long, Map<Long, PendingLike>> likes, Long filmId,
+                                   Map<Long, Map<Long, Boolean>> result) {
+        Map<Long, PendingLike> filmLikes = likes.get(filmId);
+        if (filmLikes == null)
+            return;
+        Map<Long, Boolean> states = result.computeIfAbsent(filmId, id -> new HashMap<>());
+        filmLikes.forEach((userId, like) -> states.put(userId, like.liked()));
+    }
+}
@@ -1,7 +1,7 @@
 package ru.yandex.practicum.filmorate.storage.dao;
 
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
-import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.model.MPA;
@@ -9,28 +9,47 @@ import ru.yandex.practicum.filmorate.storage.interfaces.MpaStorage;
 import ru.yandex.practicum.filmorate.storage.mappers.MpaRowMapper;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
 
+//таблица mpa почти не меняется, поэтому читается целиком при старте
+//и затем все обращения обслуживаются из памяти до явного вызова refreshCache()
 @Repository
 @RequiredArgsConstructor
 public class MpaDbStorage implements MpaStorage {
     private final JdbcTemplate jdbcTemplate;
     private final MpaRowMapper mpaRowMapper;
 
+    //хеш содержимого, а не счётчик: совпадает у одинаковых справочников и после перезапуска
+    private volatile long version;
+    private volatile Map<Integer, MPA> mpaById = Map.of();
+
+    @PostConstruct
     @Override
-    public Collection<MPA> getMpa() {
+    public void refreshCache() {
         String findAllQuery = "SELECT * FROM mpa ORDER BY id";
-        return jdbcTemplate.query(findAllQuery, mpaRowMapper);
+        Map<Integer, MPA> loaded = new LinkedHashMap<>();
+        for (MPA mpa : jdbcTemplate.query(findAllQuery, mpaRowMapper)) {
+            loaded.put(mpa.getId(), mpa);
+        }
+        mpaById = Collections.unmodifiableMap(loaded);
+        version = Integer.toUnsignedLong(loaded.hashCode());
+    }
+
+    @Override
+    public Collection<MPA> getMpa() {
+        return mpaById.values();
     }
 
     @Override
     public Optional<MPA> getMpaById(Integer id) {
-        String findById = "SELECT * FROM mpa WHERE id = ?";
-        try {
-            MPA mpa = jdbcTemplate.queryForObject(findById, mpaRowMapper, id);
-            return Optional.ofNullable(mpa);
-        } catch (EmptyResultDataAccessException ex) {
-            return Optional.empty();
-        }
+        return Optional.ofNullable(mpaById.get(id));
+    }
+
+    @Override
+    public long getVersion() {
+        return version;
     }
 }
@@ -0,0 +1,64 @@
+package ru.yandex.practicum.filmorate.storage.dao;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.sql.init.SqlDataSourceScriptDatabaseInitializer;
+import org.springframework.boot.autoconfigure.sql.init.SqlInitializationProperties;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+//инициализация БД: после schema.sql и data.sql выполняются версии схемы из migrations/,
+//которых ещё нет в schema_version. Каждая версия выполняется один раз, поэтому дорогие шаги
+//(удаление дубликатов по всей таблице) не повторяются при каждом старте.
+//Заменяет стандартный инициализатор Spring Boot, поэтому хранилища, как и раньше, создаются
+//только после инициализации БД
+@Slf4j
+@Component
+public class SchemaInitializer extends SqlDataSourceScriptDatabaseInitializer {
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(2, "Уникальные ключи лайков, жанров фильма и дружбы",
+                    "migrations/V2__unique_keys.sql"),
+            new Migration(3, "Индексы для обратных связей лайков, дружбы и жанров",
+                    "migrations/V3__reverse_indexes.sql"));
+
+    private record Migration(int version, String description, String script) {
+    }
+
+    public SchemaInitializer(DataSource dataSource, SqlInitializationProperties properties) {
+        super(dataSource, properties);
+    }
+
+    //версии применяются, только если скрипты инициализации включены (spring.sql.init.mode)
+    @Override
+    public boolean initializeDatabase() {
+        boolean initialized = super.initializeDatabase();
+        if (initialized)
+            migrate();
+        return initialized;
+    }
+
+    //DDL в H2 фиксируется сразу, поэтому скрипты версий написаны так, чтобы повтор
+    //после сбоя посреди версии ничего не ломал; версия записывается после её скрипта
+    private void migrate() {
+        String selectVersionsQuery = "SELECT version FROM schema_version";
+        String insertVersionQuery = "INSERT INTO schema_version (version, description) VALUES (?, ?)";
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(getDataSource());
+        Set<Integer> applied = new HashSet<>(jdbcTemplate.queryForList(selectVersionsQuery, Integer.class));
+        for (Migration migration : MIGRATIONS) {
+            if (applied.contains(migration.version()))
+                continue;
+            ResourceDatabasePopulator populator = new ResourceDatabasePopulator(new ClassPathResource(migration.script()));
+            populator.setSqlScriptEncoding("UTF-8");
+            populator.execute(getDataSource());
+            jdbcTemplate.update(insertVersionQuery, migration.version(), migration.description());
+            log.info("Применена версия схемы {}: {}", migration.version(), migration.description());
+        }
+    }
+}
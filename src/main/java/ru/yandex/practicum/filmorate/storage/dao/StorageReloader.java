@@ -0,0 +1,43 @@
+package ru.yandex.practicum.filmorate.storage.dao;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.index.EntityVersions;
+import ru.yandex.practicum.filmorate.storage.index.FilmLikesIndex;
+import ru.yandex.practicum.filmorate.storage.index.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.index.FilmSimilarityIndex;
+import ru.yandex.practicum.filmorate.storage.index.FriendshipGraph;
+import ru.yandex.practicum.filmorate.storage.interfaces.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.interfaces.MpaStorage;
+
+//перечитывает из БД всё, что хранилища держат в памяти; нужен после записи
+//в таблицы в обход DAO - генератором данных, скриптами или тестами
+@Component
+@RequiredArgsConstructor
+public class StorageReloader {
+    private final FilmDbStorage filmDbStorage;
+    private final UserDbStorage userDbStorage;
+    private final MpaStorage mpaStorage;
+    private final GenreStorage genreStorage;
+    private final FilmPopularityIndex filmPopularityIndex;
+    private final FriendshipGraph friendshipGraph;
+    private final FilmLikesIndex filmLikesIndex;
+    private final FilmSimilarityIndex filmSimilarityIndex;
+    private final FilmSearchIndex filmSearchIndex;
+    private final EntityVersions entityVersions;
+
+    public void reloadAll() {
+        mpaStorage.refreshCache();
+        genreStorage.refreshCache();
+        filmDbStorage.loadFilmIds();
+        userDbStorage.loadUserIds();
+        filmPopularityIndex.reload();
+        friendshipGraph.reload();
+        filmLikesIndex.reload();
+        filmSimilarityIndex.rebuild();
+        filmSearchIndex.reload();
+        //данные записаны в обход DAO: ETag, выданные до перечитывания, больше не действуют
+        entityVersions.allChanged();
+    }
+}
@@ -0,0 +1,74 @@
+package ru.yandex.practicum.filmorate.storage.dao;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.FieldSet;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.index.FriendshipGraph;
+import ru.yandex.practicum.filmorate.storage.mappers.UserRowMapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//загрузчик пользователей вместе с друзьями: из БД читаются только строки users,
+//id друзей берутся из графа дружбы в памяти; если набор полей не включает список друзей,
+//он не заполняется, а число друзей берётся из графа
+@Component
+@RequiredArgsConstructor
+public class UserAggregateLoader {
+    private final JdbcTemplate jdbcTemplate;
+    private final UserRowMapper userRowMapper;
+    private final FriendshipGraph friendshipGraph;
+
+    public List<User> load(String usersQuery, Object... args) {
+        return load(FieldSet.ALL, usersQuery, args);
+    }
+
+    public List<User> load(FieldSet fields, String usersQuery, Object... args) {
+        List<User> users = jdbcTemplate.query(usersQuery, userRowMapper, args);
+        enrich(users, fields);
+        return users;
+    }
+
+    //пользователи возвращаются в том же порядке, в котором переданы id
+    public List<User> loadByIds(long[] ids) {
+        if (ids.length == 0)
+            return new ArrayList<>();
+
+        String findByIdsQuery = "SELECT * FROM users WHERE id = ANY(?)";
+        Long[] boxedIds = Arrays.stream(ids).boxed().toArray(Long[]::new);
+        Map<Long, User> usersById = new HashMap<>();
+        for (User user : load(findByIdsQuery, (Object) boxedIds)) {
+            usersById.put(user.getId(), user);
+        }
+
+        List<User> result = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            User user = usersById.get(id);
+            if (user != null)
+                result.add(user);
+        }
+        return result;
+    }
+
+    public void enrich(List<User> users) {
+        enrich(users, FieldSet.ALL);
+    }
+
+    public void enrich(List<User> users, FieldSet fields) {
+        for (User user : users) {
+            long[] friends = friendshipGraph.getFriends(user.getId());
+            if (fields.requests("friendsCount"))
+                user.setFriendsCount(friends.length);
+            if (!fields.includes("friendsIds"))
+                continue;
+            for (long friendId : friends) {
+                user.getFriendsIds().add(friendId);
+            }
+        }
+    }
+}
@@ -1,18 +1,31 @@
 package ru.yandex.practicum.filmorate.storage.dao;
 
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
-import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.BatchOperationType;
+import ru.yandex.practicum.filmorate.model.FieldSet;
+import ru.yandex.practicum.filmorate.model.FriendshipOperation;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.index.EntityIdIndex;
+import ru.yandex.practicum.filmorate.storage.index.EntityVersions;
+import ru.yandex.practicum.filmorate.storage.index.FilmLikesIndex;
+import ru.yandex.practicum.filmorate.storage.index.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.index.FilmSimilarityIndex;
+import ru.yandex.practicum.filmorate.storage.index.FriendshipGraph;
 import ru.yandex.practicum.filmorate.storage.interfaces.UserStorage;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
 
 //класс DAO (data access object) объект доступа к данным в БД к таблице users
 @Repository
@@ -20,37 +33,57 @@ import java.util.*;
 public class UserDbStorage implements UserStorage {
     private final JdbcTemplate jdbcTemplate;
 
-    private final RowMapper<User> userRowMapper = (rs, rowNum) -> {
-        User user = new User();
+    private final UserAggregateLoader userAggregateLoader;
+    private final FilmPopularityIndex filmPopularityIndex;
+    private final FilmLikesIndex filmLikesIndex;
+    private final FilmSimilarityIndex filmSimilarityIndex;
+    private final LikeWriteBehindBuffer likeWriteBehindBuffer;
+    private final FriendshipGraph friendshipGraph;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityVersions entityVersions;
+    //id существующих пользователей для проверок существования без запросов к БД
+    private final EntityIdIndex userIds = new EntityIdIndex();
 
-        user.setId(rs.getLong("id"));
-        user.setEmail(rs.getString("email"));
-        user.setLogin(rs.getString("login"));
-        user.setName(rs.getString("name"));
-        Date birthday = rs.getDate("birthday");
-        user.setBirthday(birthday.toLocalDate());
-
-        Set<Long> friendsIds = new HashSet<>(getFriendsIdsOfUser(user.getId()));
-        user.setFriendsIds(friendsIds);
+    private record FriendshipKey(Long userId, Long friendId) {
+    }
 
-        return user;
-    };
+    @PostConstruct
+    public void loadUserIds() {
+        String selectIdsQuery = "SELECT id FROM users";
+        userIds.reload(jdbcTemplate.queryForList(selectIdsQuery, Long.class));
+    }
 
     @Override
     public Collection<User> getUsers() {
-        String findAllQuery = "SELECT * FROM users";
-        return jdbcTemplate.query(findAllQuery, userRowMapper);
+        return getUsers(FieldSet.ALL);
+    }
+
+    @Override
+    public Collection<User> getUsers(FieldSet fields) {
+        String findAllQuery = "SELECT * FROM users ORDER BY id";
+        return userAggregateLoader.load(fields, findAllQuery);
+    }
+
+    @Override
+    public List<User> getUsersAfter(Long afterId, int limit) {
+        return getUsersAfter(afterId, limit, FieldSet.ALL);
+    }
+
+    @Override
+    public List<User> getUsersAfter(Long afterId, int limit, FieldSet fields) {
+        String findPageQuery = "SELECT * FROM users WHERE id > ? ORDER BY id LIMIT ?";
+        return userAggregateLoader.load(fields, findPageQuery, afterId, limit);
     }
 
     @Override
     public Optional<User> getUserById(Long id) {
+        return getUserById(id, FieldSet.ALL);
+    }
+
+    @Override
+    public Optional<User> getUserById(Long id, FieldSet fields) {
         String findByIdQuery = "SELECT * FROM users WHERE id = ?";
-        try {
-            User result = jdbcTemplate.queryForObject(findByIdQuery, userRowMapper, id);
-            return Optional.ofNullable(result);
-        } catch (EmptyResultDataAccessException ignored) {
-            return Optional.empty();
-        }
+        return userAggregateLoader.load(fields, findByIdQuery, id).stream().findFirst();
     }
 
     @Override
@@ -71,12 +104,59 @@ public class UserDbStorage implements UserStorage {
         Long id = keyHolder.getKeyAs(Long.class);
         //сгенерированный id нового пользователя
         newUser.setId(id);
+        userIds.add(id);
 
-        saveFriendsOfUser(newUser.getFriendsIds(), newUser.getId());
+        //у нового пользователя друзей в БД ещё нет, удалять перед вставкой нечего
+        ReentrantLock lock = friendshipGraph.lockFor(id);
+        lock.lock();
+        try {
+            insertFriendsOfUser(newUser.getFriendsIds(), newUser.getId());
+            friendshipGraph.setFriends(id, newUser.getFriendsIds());
+        } finally {
+            lock.unlock();
+        }
+        entityVersions.userChanged(id);
 
         return newUser;
     }
 
+    //пакетная вставка пользователей одним batch-запросом,
+    //сгенерированные id сопоставляются пользователям по порядку
+    @Override
+    public List<User> createUsers(List<User> newUsers) {
+        if (newUsers.isEmpty())
+            return newUsers;
+
+        String insertQuery = "INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)";
+
+        GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(insertQuery, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        User user = newUsers.get(i);
+                        ps.setString(1, user.getEmail());
+                        ps.setString(2, user.getLogin());
+                        ps.setString(3, user.getName());
+                        ps.setDate(4, Date.valueOf(user.getBirthday()));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return newUsers.size();
+                    }
+                }, keyHolder));
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < newUsers.size(); i++) {
+            newUsers.get(i).setId(((Number) keys.get(i).values().iterator().next()).longValue());
+            userIds.add(newUsers.get(i).getId());
+            entityVersions.userChanged(newUsers.get(i).getId());
+        }
+        return newUsers;
+    }
+
     @Override
     public User updateUser(User newUser) {
         String updateQuery = "UPDATE users SET email = ?," +
@@ -92,22 +172,92 @@ public class UserDbStorage implements UserStorage {
                 newUser.getBirthday(),
                 newUser.getId());
 
-        saveFriendsOfUser(newUser.getFriendsIds(), newUser.getId());
+        ReentrantLock lock = friendshipGraph.lockFor(newUser.getId());
+        lock.lock();
+        try {
+            saveFriendsOfUser(newUser.getFriendsIds(), newUser.getId());
+            friendshipGraph.setFriends(newUser.getId(), newUser.getFriendsIds());
+        } finally {
+            lock.unlock();
+        }
+        entityVersions.userChanged(newUser.getId());
 
         return newUser;
     }
 
     @Override
     public void deleteUser(Long id) {
+        String selectLikedFilmsQuery = "SELECT film_id FROM film_likes WHERE user_id = ?";
         String deleteByIdQuery = "DELETE FROM users WHERE id = ?";
-        jdbcTemplate.update(deleteByIdQuery, id);
+
+        //дружба удаляется каскадно в обе стороны: под блокировками пользователя и добавивших его в друзья:
+        //ребро, вставленное до удаления, не попадёт в граф после removeUser. Добавившие его в друзья
+        //после чтения списка убирают ребро сами, не найдя друга среди пользователей (см. addFriend)
+        long[] followers = friendshipGraph.getFollowers(id);
+        List<Long> lockedUserIds = new ArrayList<>(followers.length + 1);
+        lockedUserIds.add(id);
+        for (long followerId : followers) {
+            lockedUserIds.add(followerId);
+        }
+        List<Long> likedFilmsIds;
+        List<ReentrantLock> friendshipLocks = friendshipGraph.locksFor(lockedUserIds);
+        friendshipLocks.forEach(ReentrantLock::lock);
+        try {
+            //лайки пользователя удалятся каскадно, рейтинг фильмов нужно уменьшить на них;
+            //отложенные лайки сначала записываются в БД, чтобы попасть в этот подсчёт, а под блокировкой
+            //пользователя новых до удаления не появится
+            ReentrantLock likesLock = filmLikesIndex.lockFor(id);
+            likesLock.lock();
+            try {
+                likeWriteBehindBuffer.flush();
+                likedFilmsIds = jdbcTemplate.queryForList(selectLikedFilmsQuery, Long.class, id);
+                jdbcTemplate.update(deleteByIdQuery, id);
+                userIds.remove(id);
+                filmLikesIndex.removeUser(id);
+                for (Long filmId : likedFilmsIds) {
+                    filmPopularityIndex.changeLikes(filmId, -1);
+                }
+            } finally {
+                likesLock.unlock();
+            }
+            followers = friendshipGraph.getFollowers(id);
+            friendshipGraph.removeUser(id);
+        } finally {
+            friendshipLocks.forEach(ReentrantLock::unlock);
+        }
+
+        entityVersions.userChanged(id);
+        for (long followerId : followers) {
+            entityVersions.userChanged(followerId);
+        }
+
+        for (Long filmId : likedFilmsIds) {
+            filmSimilarityIndex.markChanged(filmId);
+            entityVersions.filmChanged(filmId);
+        }
     }
 
+    //одна операция - одно выражение: вставка только при отсутствии пары,
+    //одновременную вставку той же пары отсекает уникальный ключ (user_id, friend_id);
+    //граф меняется под той же блокировкой пользователя, что и таблица, и только если строка вставлена
     @Override
     public void addFriend(Long userId, Long friendId) {
-        String insertNewFriendQuery = "INSERT INTO friendship (user_id, friend_id) VALUES (?, ?)";
-        if (!isFriendAlreadyExist(userId, friendId)) {
-            jdbcTemplate.update(insertNewFriendQuery, userId, friendId);
+        String insertFriendQuery = "INSERT INTO friendship (user_id, friend_id)" +
+                " SELECT ?, ? WHERE NOT EXISTS" +
+                " (SELECT 1 FROM friendship WHERE user_id = ? AND friend_id = ?)";
+
+        ReentrantLock lock = friendshipGraph.lockFor(userId);
+        lock.lock();
+        try {
+            if (jdbcTemplate.update(insertFriendQuery, userId, friendId, userId, friendId) > 0) {
+                friendshipGraph.addFriend(userId, friendId);
+                removeFriendIfDeleted(userId, friendId);
+                entityVersions.userChanged(userId);
+            }
+        } catch (DuplicateKeyException ignored) {
+            //друг уже добавлен запросом в обход блокировки (массовой загрузкой)
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -115,59 +265,163 @@ public class UserDbStorage implements UserStorage {
     public void removeFriend(Long userId, Long friendId) {
         String deleteFriendQuery = "DELETE FROM friendship WHERE user_id = ? AND friend_id = ?";
 
-        if (isFriendAlreadyExist(userId, friendId)) {
-            jdbcTemplate.update(deleteFriendQuery, userId, friendId);
+        ReentrantLock lock = friendshipGraph.lockFor(userId);
+        lock.lock();
+        try {
+            //граф и версия меняются, только если строка действительно удалена
+            if (jdbcTemplate.update(deleteFriendQuery, userId, friendId) > 0) {
+                friendshipGraph.removeFriend(userId, friendId);
+                entityVersions.userChanged(userId);
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
+    //id друзей берутся из графа, из БД читаются только строки найденных пользователей
     @Override
     public Collection<User> getFriendsOfUser(Long id) {
-        String findAllFriendsQuery = "SELECT * FROM users AS u" +
-                " JOIN friendship AS f" +
-                " ON u.id = f.friend_id" +
-                " WHERE f.user_id = ?";
-        return jdbcTemplate.query(findAllFriendsQuery, userRowMapper, id);
+        return userAggregateLoader.loadByIds(friendshipGraph.getFriends(id));
+    }
+
+    @Override
+    public List<User> getFriendsOfUserAfter(Long id, Long afterId, int limit) {
+        long[] friends = friendshipGraph.getFriends(id);
+        int from = Arrays.binarySearch(friends, afterId);
+        from = from >= 0 ? from + 1 : -from - 1;
+        int to = (int) Math.min(friends.length, (long) from + limit);
+        return userAggregateLoader.loadByIds(Arrays.copyOfRange(friends, from, Math.max(from, to)));
     }
 
     @Override
     public Collection<User> getIntersectingFriends(Long userId, Long friendId) {
-        String findAllIntersectingFriendsQuery = "SELECT * FROM users" +
-                " WHERE id IN (SELECT friend_id FROM friendship WHERE user_id = ?)" +
-                " AND id IN (SELECT friend_id FROM friendship WHERE user_id = ?)";
-        return jdbcTemplate.query(findAllIntersectingFriendsQuery, userRowMapper, userId, friendId);
+        return userAggregateLoader.loadByIds(friendshipGraph.getCommonFriends(userId, friendId));
+    }
+
+    @Override
+    public List<User> getFriendSuggestions(Long id, int limit) {
+        return userAggregateLoader.loadByIds(friendshipGraph.suggestFriends(id, limit));
     }
 
     @Override
     public void deleteAll() {
         String deleteByIdQuery = "DELETE FROM users";
         jdbcTemplate.update(deleteByIdQuery);
+        userIds.clear();
+        friendshipGraph.clear();
+        filmLikesIndex.clear();
+        filmSimilarityIndex.clear();
+        filmPopularityIndex.reload();
+        entityVersions.allChanged();
+    }
+
+    @Override
+    public long getUserVersion(Long id) {
+        return entityVersions.getUserVersion(id);
     }
 
     @Override
     public boolean isFriendAlreadyExist(Long userId, Long friendId) {
-        String isFriendAlreadyExistQuery = "SELECT COUNT(*) FROM friendship" +
-                " WHERE user_id = ?" +
-                " AND friend_id = ?";
+        return friendshipGraph.isFriend(userId, friendId);
+    }
+
+    @Override
+    public boolean isUserExist(Long id) {
+        return userIds.contains(id);
+    }
+
+    @Override
+    public Set<Long> getExistingUserIds(Collection<Long> ids) {
+        return userIds.retainExisting(ids);
+    }
+
+    @Override
+    public void applyFriendshipOperations(List<FriendshipOperation> operations) {
+        String insertFriendQuery = "INSERT INTO friendship (user_id, friend_id)" +
+                " SELECT ?, ? WHERE NOT EXISTS" +
+                " (SELECT 1 FROM friendship WHERE user_id = ? AND friend_id = ?)";
+        String deleteFriendQuery = "DELETE FROM friendship WHERE user_id = ? AND friend_id = ?";
+
+        //для каждой пары пользователей имеет значение только последняя операция в пакете
+        Map<FriendshipKey, BatchOperationType> lastOperations = new LinkedHashMap<>();
+        for (FriendshipOperation operation : operations) {
+            lastOperations.put(new FriendshipKey(operation.getUserId(), operation.getFriendId()), operation.getType());
+        }
+
+        List<Object[]> insertArgs = new ArrayList<>();
+        List<Object[]> deleteArgs = new ArrayList<>();
+        lastOperations.forEach((friendship, type) -> {
+            if (type == BatchOperationType.ADD)
+                insertArgs.add(new Object[]{friendship.userId(), friendship.friendId(),
+                        friendship.userId(), friendship.friendId()});
+            else
+                deleteArgs.add(new Object[]{friendship.userId(), friendship.friendId()});
+        });
+
+        //пакет пишется под блокировками всех затронутых пользователей,
+        //граф меняется после фиксации транзакции
+        List<ReentrantLock> locks = friendshipGraph.locksFor(lastOperations.keySet().stream()
+                .map(FriendshipKey::userId)
+                .toList());
+        locks.forEach(ReentrantLock::lock);
         try {
-            int result = jdbcTemplate.queryForObject(isFriendAlreadyExistQuery, Integer.class, userId, friendId);
-            return result > 0;
-        } catch (EmptyResultDataAccessException ignored) {
-            return false;
+            try {
+                executeFriendshipBatch(insertFriendQuery, insertArgs, deleteFriendQuery, deleteArgs);
+            } catch (DuplicateKeyException ex) {
+                //пару вставил параллельный запрос после проверки NOT EXISTS: транзакция откатилась,
+                //при повторе такая пара уже видна и пропускается
+                executeFriendshipBatch(insertFriendQuery, insertArgs, deleteFriendQuery, deleteArgs);
+            }
+            lastOperations.forEach((friendship, type) -> {
+                if (type == BatchOperationType.ADD) {
+                    friendshipGraph.addFriend(friendship.userId(), friendship.friendId());
+                    removeFriendIfDeleted(friendship.userId(), friendship.friendId());
+                } else
+                    friendshipGraph.removeFriend(friendship.userId(), friendship.friendId());
+                entityVersions.userChanged(friendship.userId());
+            });
+        } finally {
+            locks.forEach(ReentrantLock::unlock);
         }
     }
 
-    private List<Long> getFriendsIdsOfUser(Long id) {
-        String selectFriendsIdsQuery = "SELECT friend_id FROM friendship WHERE user_id = ?";
-        return jdbcTemplate.queryForList(selectFriendsIdsQuery, Long.class, id);
+    //друг удалён между вставкой и изменением графа: removeUser мог пройти раньше addFriend,
+    //а каскад - не увидеть строку, вставленную во время удаления. Вызывается после изменения графа
+    //и под блокировкой пользователя; deleteUser убирает id из userIds до removeUser, поэтому
+    //ребро уберёт либо removeUser, либо эта проверка
+    private void removeFriendIfDeleted(long userId, long friendId) {
+        String deleteFriendQuery = "DELETE FROM friendship WHERE user_id = ? AND friend_id = ?";
+
+        if (userIds.contains(friendId))
+            return;
+        friendshipGraph.removeFriend(userId, friendId);
+        jdbcTemplate.update(deleteFriendQuery, userId, friendId);
+    }
+
+    private void executeFriendshipBatch(String insertFriendQuery, List<Object[]> insertArgs,
+                                        String deleteFriendQuery, List<Object[]> deleteArgs) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!insertArgs.isEmpty())
+                jdbcTemplate.batchUpdate(insertFriendQuery, insertArgs);
+            if (!deleteArgs.isEmpty())
+                jdbcTemplate.batchUpdate(deleteFriendQuery, deleteArgs);
+        });
     }
 
     private void saveFriendsOfUser(Set<Long> userIdsFriends, Long userId) {
         String deleteByIdQuery = "DELETE FROM friendship WHERE user_id = ?";
         jdbcTemplate.update(deleteByIdQuery, userId);
 
-        String insertByIdQuery = "INSERT INTO friendship WHERE user_id = ? AND friend_id = ?";
-        for (var friendId : userIdsFriends) {
-            jdbcTemplate.update(insertByIdQuery, userId, friendId);
-        }
+        insertFriendsOfUser(userIdsFriends, userId);
+    }
+
+    private void insertFriendsOfUser(Set<Long> userIdsFriends, Long userId) {
+        String insertFriendQuery = "INSERT INTO friendship (user_id, friend_id) VALUES (?, ?)";
+
+        List<Object[]> args = userIdsFriends.stream()
+                .map(friendId -> new Object[]{userId, friendId})
+                .toList();
+        if (!args.isEmpty())
+            jdbcTemplate.batchUpdate(insertFriendQuery, args);
     }
 }
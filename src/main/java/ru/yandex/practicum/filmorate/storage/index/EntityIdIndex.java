@@ -0,0 +1,44 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+//множество id существующих записей таблицы: заполняется из БД при старте,
+//дальше DAO добавляет и удаляет id вместе с записями, поэтому проверка
+//существования при валидации не обращается к БД и не загружает сущность целиком
+public class EntityIdIndex {
+    private final Set<Long> ids = ConcurrentHashMap.newKeySet();
+
+    public void reload(Collection<Long> loadedIds) {
+        ids.clear();
+        ids.addAll(loadedIds);
+    }
+
+    public void add(Long id) {
+        ids.add(id);
+    }
+
+    public void remove(Long id) {
+        ids.remove(id);
+    }
+
+    public void clear() {
+        ids.clear();
+    }
+
+    public boolean contains(Long id) {
+        return id != null && ids.contains(id);
+    }
+
+    //id из переданного набора, которые есть в множестве
+    public Set<Long> retainExisting(Collection<Long> candidateIds) {
+        Set<Long> result = new HashSet<>();
+        for (Long id : candidateIds) {
+            if (contains(id))
+                result.add(id);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,50 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+//версии данных для условных GET: у каждого фильма и пользователя - номер последнего изменения,
+//общая версия растёт при любом изменении. DAO отмечает изменение после записи в таблицу,
+//поэтому версия, прочитанная до чтения данных, не новее самих данных.
+//Номера начинаются со времени запуска в наносекундах, чтобы версии после перезапуска
+//не совпали с выданными до него
+@Component
+public class EntityVersions {
+    private final AtomicLong dataVersion = new AtomicLong(System.currentTimeMillis() * 1_000_000);
+    //версия всех сущностей, не менявшихся с запуска или с последнего изменения в обход DAO
+    private volatile long baseVersion = dataVersion.get();
+    private final Map<Long, Long> filmVersions = new ConcurrentHashMap<>();
+    private final Map<Long, Long> userVersions = new ConcurrentHashMap<>();
+
+    public void filmChanged(long filmId) {
+        filmVersions.put(filmId, dataVersion.incrementAndGet());
+    }
+
+    public void userChanged(long userId) {
+        userVersions.put(userId, dataVersion.incrementAndGet());
+    }
+
+    //данные изменены целиком или в обход DAO: меняются версии всех сущностей;
+    //записи не новее базовой версии больше не нужны, более новые остаются
+    public void allChanged() {
+        long version = dataVersion.incrementAndGet();
+        baseVersion = version;
+        filmVersions.values().removeIf(filmVersion -> filmVersion <= version);
+        userVersions.values().removeIf(userVersion -> userVersion <= version);
+    }
+
+    public long getDataVersion() {
+        return dataVersion.get();
+    }
+
+    public long getFilmVersion(long filmId) {
+        return Math.max(filmVersions.getOrDefault(filmId, 0L), baseVersion);
+    }
+
+    public long getUserVersion(long userId) {
+        return Math.max(userVersions.getOrDefault(userId, 0L), baseVersion);
+    }
+}
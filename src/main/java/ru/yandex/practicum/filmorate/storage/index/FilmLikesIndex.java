@@ -0,0 +1,214 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static ru.yandex.practicum.filmorate.storage.index.SortedLongArrays.insert;
+import static ru.yandex.practicum.filmorate.storage.index.SortedLongArrays.remove;
+
+//лайки в памяти в обе стороны: для пользователя - отсортированный массив id понравившихся фильмов,
+//для фильма - отсортированный массив id поставивших лайк. Массивы подменяются целиком, чтение без
+//блокировок. Заполняется из film_likes при старте, дальше DAO меняет индекс вместе с таблицей
+//(при отложенной записи - вместе с буфером), поэтому индекс видит все принятые лайки
+@Component
+public class FilmLikesIndex {
+    private static final long[] EMPTY = SortedLongArrays.EMPTY;
+    //число блокировок для записи: операции с лайками одного пользователя выполняются по очереди
+    private static final int LOCK_STRIPES = 64;
+
+    private final JdbcTemplate jdbcTemplate;
+    //сколько id просматривается на каждом из двух шагов подбора рекомендаций
+    private final int maxRecommendationExpansion;
+    //по скольким самым похожим пользователям подбираются фильмы
+    private final int maxNeighbours;
+
+    private volatile Map<Long, long[]> filmsByUserId = new ConcurrentHashMap<>();
+    private volatile Map<Long, long[]> usersByFilmId = new ConcurrentHashMap<>();
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public FilmLikesIndex(JdbcTemplate jdbcTemplate,
+                          @Value("${filmorate.recommendations.max-expansion:100000}") int maxRecommendationExpansion,
+                          @Value("${filmorate.recommendations.neighbours:50}") int maxNeighbours) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxRecommendationExpansion = maxRecommendationExpansion;
+        this.maxNeighbours = maxNeighbours;
+    }
+
+    @PostConstruct
+    public void reload() {
+        String selectLikesQuery = "SELECT film_id, user_id FROM film_likes";
+        SortedLongArrays.Pairs likes = new SortedLongArrays.Pairs();
+        jdbcTemplate.query(selectLikesQuery, rs -> {
+            likes.add(rs.getLong("user_id"), rs.getLong("film_id"));
+        });
+        loadLikes(likes.first, likes.second, likes.size);
+    }
+
+    //заменить индекс лайками userIds[i] -> filmIds[i], i < size
+    public void loadLikes(long[] userIds, long[] filmIds, int size) {
+        Map<Long, long[]> films = SortedLongArrays.group(userIds, filmIds, size);
+        Map<Long, long[]> users = SortedLongArrays.group(filmIds, userIds, size);
+        filmsByUserId = films;
+        usersByFilmId = users;
+    }
+
+    //блокировка записи лайков пользователя: изменение таблицы (или буфера) и индекса под ней
+    //выполняются для одного пользователя в том же порядке
+    public ReentrantLock lockFor(long userId) {
+        return locks[Math.floorMod(Long.hashCode(userId), LOCK_STRIPES)];
+    }
+
+    //блокировки для набора пользователей в одном порядке, чтобы пакеты не ждали друг друга по кругу
+    public List<ReentrantLock> locksFor(Collection<Long> userIds) {
+        SortedSet<Integer> stripes = new TreeSet<>();
+        for (Long userId : userIds) {
+            stripes.add(Math.floorMod(Long.hashCode(userId), LOCK_STRIPES));
+        }
+        List<ReentrantLock> result = new ArrayList<>(stripes.size());
+        for (int stripe : stripes) {
+            result.add(locks[stripe]);
+        }
+        return result;
+    }
+
+    //блокировки всех пользователей в том же порядке: для изменений, затрагивающих лайки любого пользователя
+    public List<ReentrantLock> allLocks() {
+        return List.of(locks);
+    }
+
+    public void addLike(long filmId, long userId) {
+        filmsByUserId.compute(userId, (id, films) -> insert(films, filmId));
+        usersByFilmId.compute(filmId, (id, users) -> insert(users, userId));
+    }
+
+    public void removeLike(long filmId, long userId) {
+        filmsByUserId.computeIfPresent(userId, (id, films) -> remove(films, filmId));
+        usersByFilmId.computeIfPresent(filmId, (id, users) -> remove(users, userId));
+    }
+
+    //заменить лайки фильма целиком; обе карты меняются по отдельности, поэтому вызывающий
+    //держит allLocks(), иначе addLike/removeLike между шагами разведут карты
+    public void setLikes(long filmId, Collection<Long> userIds) {
+        for (long userId : getUsersOfFilm(filmId)) {
+            filmsByUserId.computeIfPresent(userId, (id, films) -> remove(films, filmId));
+        }
+        long[] users = userIds.stream().mapToLong(Long::longValue).sorted().distinct().toArray();
+        if (users.length == 0)
+            usersByFilmId.remove(filmId);
+        else
+            usersByFilmId.put(filmId, users);
+        for (long userId : users) {
+            filmsByUserId.compute(userId, (id, films) -> insert(films, filmId));
+        }
+    }
+
+    //фильм удалён: его лайки исчезают вместе с каскадным удалением в film_likes
+    public void removeFilm(long filmId) {
+        long[] users = usersByFilmId.remove(filmId);
+        if (users != null) {
+            for (long userId : users) {
+                filmsByUserId.computeIfPresent(userId, (id, films) -> remove(films, filmId));
+            }
+        }
+    }
+
+    //пользователь удалён: его лайки исчезают вместе с каскадным удалением в film_likes
+    public void removeUser(long userId) {
+        long[] films = filmsByUserId.remove(userId);
+        if (films != null) {
+            for (long filmId : films) {
+                usersByFilmId.computeIfPresent(filmId, (id, users) -> remove(users, userId));
+            }
+        }
+    }
+
+    public void clear() {
+        filmsByUserId = new ConcurrentHashMap<>();
+        usersByFilmId = new ConcurrentHashMap<>();
+    }
+
+    //id понравившихся пользователю фильмов по возрастанию; массив нельзя изменять
+    public long[] getFilmsOfUser(long userId) {
+        return filmsByUserId.getOrDefault(userId, EMPTY);
+    }
+
+    public boolean hasLike(long filmId, long userId) {
+        return Arrays.binarySearch(getFilmsOfUser(userId), filmId) >= 0;
+    }
+
+    //id поставивших лайк фильму по возрастанию; массив нельзя изменять
+    public long[] getUsersOfFilm(long filmId) {
+        return usersByFilmId.getOrDefault(filmId, EMPTY);
+    }
+
+    //id фильмов, у которых есть хотя бы один лайк; представление только для чтения
+    public Set<Long> getLikedFilmIds() {
+        return Collections.unmodifiableSet(usersByFilmId.keySet());
+    }
+
+    //до limit фильмов, которых пользователь ещё не лайкал, по убыванию оценки: сначала находятся
+    //до neighbours пользователей с наибольшим числом общих лайков, затем каждый их фильм получает
+    //оценку, равную сумме этих чисел (при равенстве выше меньший id). Лайкнувшие фильм просматриваются
+    //начиная с самых редких фильмов; на каждом шаге просматривается не больше max-expansion id
+    public long[] recommendFilms(long userId, int limit) {
+        long[] liked = getFilmsOfUser(userId);
+        if (liked.length == 0 || limit <= 0)
+            return EMPTY;
+
+        int consideredFilms = Math.min(liked.length, maxRecommendationExpansion);
+        long[][] likers = new long[consideredFilms][];
+        long expansion = 0;
+        for (int i = 0; i < consideredFilms; i++) {
+            likers[i] = getUsersOfFilm(liked[i]);
+            expansion += likers[i].length;
+        }
+        Arrays.sort(likers, Comparator.comparingInt(users -> users.length));
+
+        LongIntCounter commonLikes = new LongIntCounter((int) Math.min(expansion, maxRecommendationExpansion));
+        int budget = maxRecommendationExpansion;
+        for (long[] users : likers) {
+            if (budget <= 0)
+                break;
+            int length = Math.min(users.length, budget);
+            budget -= length;
+            for (int i = 0; i < length; i++) {
+                if (users[i] != userId)
+                    commonLikes.increment(users[i]);
+            }
+        }
+
+        TopScores neighbours = new TopScores(Math.min(maxNeighbours, commonLikes.size()));
+        commonLikes.forEach(neighbours::offer);
+
+        LongIntCounter filmScores = new LongIntCounter(Math.min(maxRecommendationExpansion, 1024));
+        budget = maxRecommendationExpansion;
+        for (long neighbourId : neighbours.toSortedIds()) {
+            if (budget <= 0)
+                break;
+            int weight = commonLikes.get(neighbourId);
+            long[] films = getFilmsOfUser(neighbourId);
+            int length = Math.min(films.length, budget);
+            budget -= length;
+            for (int i = 0; i < length; i++) {
+                if (Arrays.binarySearch(liked, films[i]) < 0)
+                    filmScores.add(films[i], weight);
+            }
+        }
+
+        TopScores top = new TopScores(Math.min(limit, filmScores.size()));
+        filmScores.forEach(top::offer);
+        return top.toSortedIds();
+    }
+}
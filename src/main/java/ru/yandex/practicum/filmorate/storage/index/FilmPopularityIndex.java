@@ -0,0 +1,224 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+//рейтинг популярности фильмов в памяти: счётчик лайков на каждый фильм
+//и упорядоченное по убыванию лайков множество, из которого топ читается за O(count);
+//такие же множества ведутся для каждого жанра и каждого года выхода.
+//Заполняется из film_likes при старте, дальше меняется только на величину
+//реально вставленных/удалённых строк, поэтому совпадает с COUNT(*) по film_likes
+@Component
+@RequiredArgsConstructor
+public class FilmPopularityIndex {
+    //при равном числе лайков фильмы упорядочены по id
+    private static final Comparator<FilmLikes> BY_LIKES_DESC = Comparator
+            .comparingInt(FilmLikes::likes).reversed()
+            .thenComparingLong(FilmLikes::filmId);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<Long, Integer> likesByFilmId = new HashMap<>();
+    private final NavigableSet<FilmLikes> ranking = new TreeSet<>(BY_LIKES_DESC);
+    private final Map<Long, FilmCategories> categoriesByFilmId = new HashMap<>();
+    private final Map<Integer, NavigableSet<FilmLikes>> rankingByGenreId = new HashMap<>();
+    private final Map<Integer, NavigableSet<FilmLikes>> rankingByYear = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private record FilmLikes(long filmId, int likes) {
+    }
+
+    //год выхода (null - не указан) и id жанров фильма
+    private record FilmCategories(Integer year, int[] genreIds) {
+        private boolean matches(Integer genreId, Integer otherYear) {
+            if (otherYear != null && !otherYear.equals(year))
+                return false;
+            return genreId == null || Arrays.stream(genreIds).anyMatch(id -> id == genreId);
+        }
+    }
+
+    @PostConstruct
+    public void reload() {
+        String countLikesQuery = "SELECT f.id, COUNT(l.user_id) AS likes" +
+                " FROM films AS f" +
+                " LEFT JOIN film_likes AS l" +
+                " ON f.id = l.film_id" +
+                " GROUP BY f.id";
+        String selectCategoriesQuery = "SELECT f.id, YEAR(f.release_date) AS release_year," +
+                " ARRAY_AGG(g.genre_id) AS genre_ids" +
+                " FROM films AS f" +
+                " LEFT JOIN film_genres AS g" +
+                " ON f.id = g.film_id" +
+                " GROUP BY f.id";
+        Map<Long, Integer> loaded = new HashMap<>();
+        jdbcTemplate.query(countLikesQuery, rs -> {
+            loaded.put(rs.getLong("id"), rs.getInt("likes"));
+        });
+        Map<Long, FilmCategories> loadedCategories = new HashMap<>();
+        jdbcTemplate.query(selectCategoriesQuery, rs -> {
+            Integer year = rs.getObject("release_year", Integer.class);
+            Object[] genreIds = (Object[]) rs.getArray("genre_ids").getArray();
+            loadedCategories.put(rs.getLong("id"), new FilmCategories(year, Arrays.stream(genreIds)
+                    .filter(Objects::nonNull)
+                    .mapToInt(id -> ((Number) id).intValue())
+                    .toArray()));
+        });
+
+        lock.writeLock().lock();
+        try {
+            likesByFilmId.clear();
+            ranking.clear();
+            categoriesByFilmId.clear();
+            rankingByGenreId.clear();
+            rankingByYear.clear();
+            categoriesByFilmId.putAll(loadedCategories);
+            loaded.forEach(this::put);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //фильм создан или изменён целиком: число лайков, год выхода и жанры заменяются
+    public void setFilm(long filmId, int likes, Integer year, Collection<Integer> genreIds) {
+        lock.writeLock().lock();
+        try {
+            removeFromRanking(filmId);
+            categoriesByFilmId.put(filmId, new FilmCategories(year, genreIds.stream()
+                    .mapToInt(Integer::intValue)
+                    .distinct()
+                    .toArray()));
+            put(filmId, likes);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeFilm(long filmId) {
+        lock.writeLock().lock();
+        try {
+            removeFromRanking(filmId);
+            likesByFilmId.remove(filmId);
+            categoriesByFilmId.remove(filmId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //delta - число реально добавленных (>0) или удалённых (<0) строк film_likes.
+    //Фильма нет в рейтинге - он удалён, и запоздавшее изменение его обратно не добавляет
+    public void changeLikes(long filmId, int delta) {
+        if (delta == 0)
+            return;
+
+        lock.writeLock().lock();
+        try {
+            if (!likesByFilmId.containsKey(filmId))
+                return;
+            int likes = removeFromRanking(filmId);
+            put(filmId, Math.max(0, likes + delta));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            likesByFilmId.clear();
+            ranking.clear();
+            categoriesByFilmId.clear();
+            rankingByGenreId.clear();
+            rankingByYear.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Long> getTopFilmIds(int count) {
+        return getTopFilmIds(count, null, null);
+    }
+
+    //топ среди фильмов жанра genreId и года year (null - без ограничения). Если заданы оба,
+    //обходится меньшее из двух множеств с проверкой второго условия
+    public List<Long> getTopFilmIds(int count, Integer genreId, Integer year) {
+        lock.readLock().lock();
+        try {
+            NavigableSet<FilmLikes> source = ranking;
+            if (genreId != null)
+                source = rankingByGenreId.getOrDefault(genreId, Collections.emptyNavigableSet());
+            if (year != null) {
+                NavigableSet<FilmLikes> byYear = rankingByYear.getOrDefault(year, Collections.emptyNavigableSet());
+                if (genreId == null || byYear.size() < source.size())
+                    source = byYear;
+            }
+            boolean filtered = genreId != null && year != null;
+
+            List<Long> result = new ArrayList<>(Math.min(count, source.size()));
+            Iterator<FilmLikes> iterator = source.iterator();
+            while (iterator.hasNext() && result.size() < count) {
+                long filmId = iterator.next().filmId();
+                if (!filtered || categoriesByFilmId.get(filmId).matches(genreId, year))
+                    result.add(filmId);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getLikesCount(long filmId) {
+        lock.readLock().lock();
+        try {
+            return likesByFilmId.getOrDefault(filmId, 0);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int removeFromRanking(long filmId) {
+        Integer likes = likesByFilmId.get(filmId);
+        if (likes == null)
+            return 0;
+        FilmLikes entry = new FilmLikes(filmId, likes);
+        ranking.remove(entry);
+        FilmCategories categories = categoriesByFilmId.get(filmId);
+        if (categories != null) {
+            for (int genreId : categories.genreIds()) {
+                removeFrom(rankingByGenreId, genreId, entry);
+            }
+            if (categories.year() != null)
+                removeFrom(rankingByYear, categories.year(), entry);
+        }
+        return likes;
+    }
+
+    private void put(long filmId, int likes) {
+        likesByFilmId.put(filmId, likes);
+        FilmLikes entry = new FilmLikes(filmId, likes);
+        ranking.add(entry);
+        FilmCategories categories = categoriesByFilmId.get(filmId);
+        if (categories != null) {
+            for (int genreId : categories.genreIds()) {
+                rankingByGenreId.computeIfAbsent(genreId, id -> new TreeSet<>(BY_LIKES_DESC)).add(entry);
+            }
+            if (categories.year() != null)
+                rankingByYear.computeIfAbsent(categories.year(), id -> new TreeSet<>(BY_LIKES_DESC)).add(entry);
+        }
+    }
+
+    //пустые множества удаляются, чтобы не копить годы и жанры без фильмов
+    private static void removeFrom(Map<Integer, NavigableSet<FilmLikes>> rankings, int key, FilmLikes entry) {
+        NavigableSet<FilmLikes> set = rankings.get(key);
+        if (set != null) {
+            set.remove(entry);
+            if (set.isEmpty())
+                rankings.remove(key);
+        }
+    }
+}
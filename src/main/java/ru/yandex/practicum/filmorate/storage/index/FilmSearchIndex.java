@@ -0,0 +1,257 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+//полнотекстовый поиск по названиям и описаниям фильмов в памяти: обратные индексы
+//слово -> id фильмов (отдельно для названий и описаний) и дерево нормализованных названий целиком.
+//Слова хранятся в префиксных деревьях, поэтому последнее слово запроса ищется как начало слова
+//(поиск по мере набора), а фильмы, название которых начинается с запроса, идут первыми.
+//Заполняется из films при старте, дальше DAO меняет индекс вместе с таблицей
+@Component
+public class FilmSearchIndex {
+    private static final long[] EMPTY = SortedLongArrays.EMPTY;
+    //диакритика отбрасывается (ё -> е, ударения), кроме краткой, которая отличает й от и
+    private static final Pattern COMBINING_MARKS = Pattern.compile("[\\p{Mn}&&[^\\u0306]]");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    //слова запроса сверх этого числа не учитываются
+    private static final int MAX_QUERY_TERMS = 16;
+    //совпадение слова в названии весит больше, чем в описании
+    private static final double NAME_WEIGHT = 3;
+    //надбавка фильмам, название которых начинается с запроса: больше любой суммы по словам
+    private static final double NAME_PREFIX_BOOST = 10_000;
+    //оценки копятся в LongIntCounter в тысячных долях
+    private static final int SCORE_SCALE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    //сколько id просматривается на запрос
+    private final int maxExpansion;
+    //во сколько слов индекса раскрывается начало последнего слова запроса
+    private final int maxPrefixTerms;
+
+    private Map<Long, FilmText> textsByFilmId = new HashMap<>();
+    private PrefixTrie filmsByNameTerm = new PrefixTrie();
+    private PrefixTrie filmsByDescriptionTerm = new PrefixTrie();
+    private PrefixTrie filmsByName = new PrefixTrie();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    //нормализованные слова фильма без повторов и название целиком: нужны, чтобы убрать фильм из индекса
+    private record FilmText(String name, String[] nameTerms, String[] descriptionTerms) {
+    }
+
+    //id фильмов, в которых встретилось слово, и вес совпадения для каждого из них
+    private record Postings(long[] filmIds, double weight) {
+    }
+
+    public FilmSearchIndex(JdbcTemplate jdbcTemplate,
+                           @Value("${filmorate.search.max-expansion:100000}") int maxExpansion,
+                           @Value("${filmorate.search.max-prefix-terms:50}") int maxPrefixTerms) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxExpansion = maxExpansion;
+        this.maxPrefixTerms = maxPrefixTerms;
+    }
+
+    //нижний регистр, разложение совместимых символов и снятие диакритики
+    public static String normalize(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFKD);
+        String stripped = COMBINING_MARKS.matcher(decomposed).replaceAll("");
+        return Normalizer.normalize(stripped, Normalizer.Form.NFC).toLowerCase(Locale.ROOT);
+    }
+
+    //нормализованные слова текста в порядке следования: последовательности букв и цифр
+    public static String[] tokenize(String text) {
+        if (text == null)
+            return new String[0];
+        return SEPARATORS.splitAsStream(normalize(text))
+                .filter(term -> !term.isEmpty())
+                .toArray(String[]::new);
+    }
+
+    @PostConstruct
+    public void reload() {
+        String selectTextsQuery = "SELECT id, name, description FROM films";
+        //слова нумеруются, чтобы сгруппировать пары слово -> фильм без списков на каждое слово
+        Map<String, Integer> termIds = new HashMap<>();
+        List<String> terms = new ArrayList<>();
+        SortedLongArrays.Pairs nameTermPairs = new SortedLongArrays.Pairs();
+        SortedLongArrays.Pairs descriptionTermPairs = new SortedLongArrays.Pairs();
+        SortedLongArrays.Pairs namePairs = new SortedLongArrays.Pairs();
+        Map<Long, FilmText> texts = new HashMap<>();
+        jdbcTemplate.query(selectTextsQuery, rs -> {
+            long filmId = rs.getLong("id");
+            String[] nameTokens = tokenize(rs.getString("name"));
+            String[] nameTerms = distinct(nameTokens);
+            String[] descriptionTerms = distinct(tokenize(rs.getString("description")));
+            for (int i = 0; i < nameTerms.length; i++) {
+                int termId = termIds.computeIfAbsent(nameTerms[i], term -> termId(terms, term));
+                nameTerms[i] = terms.get(termId);
+                nameTermPairs.add(termId, filmId);
+            }
+            for (int i = 0; i < descriptionTerms.length; i++) {
+                int termId = termIds.computeIfAbsent(descriptionTerms[i], term -> termId(terms, term));
+                descriptionTerms[i] = terms.get(termId);
+                descriptionTermPairs.add(termId, filmId);
+            }
+            String name = String.join(" ", nameTokens);
+            int nameId = termIds.computeIfAbsent(name, term -> termId(terms, term));
+            namePairs.add(nameId, filmId);
+            texts.put(filmId, new FilmText(terms.get(nameId), nameTerms, descriptionTerms));
+        });
+
+        PrefixTrie nameTermTrie = buildTrie(terms, nameTermPairs);
+        PrefixTrie descriptionTermTrie = buildTrie(terms, descriptionTermPairs);
+        PrefixTrie nameTrie = buildTrie(terms, namePairs);
+
+        lock.writeLock().lock();
+        try {
+            textsByFilmId = texts;
+            filmsByNameTerm = nameTermTrie;
+            filmsByDescriptionTerm = descriptionTermTrie;
+            filmsByName = nameTrie;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static int termId(List<String> terms, String term) {
+        terms.add(term);
+        return terms.size() - 1;
+    }
+
+    private static PrefixTrie buildTrie(List<String> terms, SortedLongArrays.Pairs pairs) {
+        PrefixTrie trie = new PrefixTrie();
+        SortedLongArrays.group(pairs.first, pairs.second, pairs.size)
+                .forEach((termId, filmIds) -> trie.put(terms.get(termId.intValue()), filmIds));
+        return trie;
+    }
+
+    //фильм создан или изменён: слова названия и описания заменяются
+    public void setFilm(long filmId, String name, String description) {
+        lock.writeLock().lock();
+        try {
+            removeTexts(filmId);
+            String[] nameTokens = tokenize(name);
+            String[] nameTerms = distinct(nameTokens);
+            String[] descriptionTerms = distinct(tokenize(description));
+            for (int i = 0; i < nameTerms.length; i++) {
+                nameTerms[i] = filmsByNameTerm.add(nameTerms[i], filmId);
+            }
+            for (int i = 0; i < descriptionTerms.length; i++) {
+                descriptionTerms[i] = filmsByDescriptionTerm.add(descriptionTerms[i], filmId);
+            }
+            String normalizedName = filmsByName.add(String.join(" ", nameTokens), filmId);
+            textsByFilmId.put(filmId, new FilmText(normalizedName, nameTerms, descriptionTerms));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeFilm(long filmId) {
+        lock.writeLock().lock();
+        try {
+            removeTexts(filmId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            textsByFilmId = new HashMap<>();
+            filmsByNameTerm = new PrefixTrie();
+            filmsByDescriptionTerm = new PrefixTrie();
+            filmsByName = new PrefixTrie();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeTexts(long filmId) {
+        FilmText text = textsByFilmId.remove(filmId);
+        if (text == null)
+            return;
+        for (String term : text.nameTerms()) {
+            filmsByNameTerm.remove(term, filmId);
+        }
+        for (String term : text.descriptionTerms()) {
+            filmsByDescriptionTerm.remove(term, filmId);
+        }
+        filmsByName.remove(text.name(), filmId);
+    }
+
+    //до limit фильмов по убыванию оценки: сначала фильмы, название которых начинается с запроса,
+    //затем по сумме весов совпавших слов (редкие слова весят больше, слова названия - в NAME_WEIGHT раз).
+    //Достаточно совпадения одного слова; последнее слово запроса совпадает и с началом слова.
+    //Списки фильмов просматриваются начиная с самых коротких, всего не больше max-expansion id
+    public long[] search(String query, int limit) {
+        String[] tokens = tokenize(query);
+        if (tokens.length == 0 || limit <= 0)
+            return EMPTY;
+        String[] terms = distinct(Arrays.copyOf(tokens, Math.min(tokens.length, MAX_QUERY_TERMS)));
+        String lastTerm = tokens[Math.min(tokens.length, MAX_QUERY_TERMS) - 1];
+
+        lock.readLock().lock();
+        try {
+            int films = textsByFilmId.size();
+            List<Postings> namePrefixPostings = new ArrayList<>();
+            filmsByName.forEachWithPrefix(String.join(" ", tokens), maxPrefixTerms,
+                    filmIds -> namePrefixPostings.add(new Postings(filmIds, NAME_PREFIX_BOOST)));
+
+            List<Postings> termPostings = new ArrayList<>();
+            for (String term : terms) {
+                if (term.equals(lastTerm)) {
+                    filmsByNameTerm.forEachWithPrefix(term, maxPrefixTerms, filmIds ->
+                            termPostings.add(new Postings(filmIds, NAME_WEIGHT * idf(filmIds.length, films))));
+                    filmsByDescriptionTerm.forEachWithPrefix(term, maxPrefixTerms, filmIds ->
+                            termPostings.add(new Postings(filmIds, idf(filmIds.length, films))));
+                } else {
+                    long[] nameFilmIds = filmsByNameTerm.get(term);
+                    long[] descriptionFilmIds = filmsByDescriptionTerm.get(term);
+                    termPostings.add(new Postings(nameFilmIds, NAME_WEIGHT * idf(nameFilmIds.length, films)));
+                    termPostings.add(new Postings(descriptionFilmIds, idf(descriptionFilmIds.length, films)));
+                }
+            }
+            termPostings.sort(Comparator.comparingInt(postings -> postings.filmIds().length));
+
+            LongIntCounter scores = new LongIntCounter(Math.min(maxExpansion, 1024));
+            int budget = maxExpansion;
+            for (List<Postings> group : List.of(namePrefixPostings, termPostings)) {
+                for (Postings postings : group) {
+                    if (budget <= 0)
+                        break;
+                    int weight = (int) Math.round(postings.weight() * SCORE_SCALE);
+                    long[] filmIds = postings.filmIds();
+                    int length = Math.min(filmIds.length, budget);
+                    budget -= length;
+                    for (int i = 0; i < length; i++) {
+                        scores.add(filmIds[i], weight);
+                    }
+                }
+            }
+
+            TopScores top = new TopScores(Math.min(limit, scores.size()));
+            scores.forEach(top::offer);
+            return top.toSortedIds();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //обратная частота слова: чем в меньшем числе фильмов оно встречается, тем больше вес
+    private static double idf(int filmsWithTerm, int films) {
+        return Math.log(1 + (films - filmsWithTerm + 0.5) / (filmsWithTerm + 0.5));
+    }
+
+    private static String[] distinct(String[] terms) {
+        return Arrays.stream(terms).distinct().toArray(String[]::new);
+    }
+}
@@ -0,0 +1,339 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static ru.yandex.practicum.filmorate.storage.index.SortedLongArrays.insert;
+import static ru.yandex.practicum.filmorate.storage.index.SortedLongArrays.remove;
+
+//похожие фильмы по пересечению множеств лайкнувших (коэффициент Жаккара) без перебора каталога.
+//Для каждого фильма хранится MinHash-подпись: bands * rows минимумов хеш-функций по id лайкнувших,
+//доля совпавших позиций двух подписей оценивает коэффициент Жаккара. Подпись разбита на bands
+//полос по rows значений, фильмы с одинаковой полосой попадают в одну корзину (LSH), поэтому
+//кандидаты - только фильмы из общих корзин.
+//Новый лайк обновляет подпись сразу (минимум только уменьшается); после снятого лайка или
+//замены лайков фильм помечается изменённым, и фоновый поток пересчитывает его подпись по индексу
+//лайков раз в refresh-interval, а раз в rebuild-interval перестраивает индекс целиком
+@Slf4j
+@Component
+public class FilmSimilarityIndex {
+    private static final long[] EMPTY = SortedLongArrays.EMPTY;
+
+    private final FilmLikesIndex filmLikesIndex;
+    private final int bands;
+    private final int rows;
+    private final int maxCandidates;
+    private final Duration refreshInterval;
+    private final Duration rebuildInterval;
+    //коэффициенты хеш-функций h(x) = (a * x + b) >>> 33, a нечётные; зерно постоянное,
+    //чтобы подписи не зависели от запуска
+    private final long[] multipliers;
+    private final long[] increments;
+
+    private volatile Map<Long, int[]> signaturesByFilmId = new ConcurrentHashMap<>();
+    private volatile Map<Long, long[]> filmsByBucket = new ConcurrentHashMap<>();
+    //запись подписей и корзин выполняется по одной, чтение без блокировок
+    private final ReentrantLock lock = new ReentrantLock();
+    //полные перестроения выполняются по одному: фоновым потоком и по запросу
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+    //фильмы, подпись которых нужно пересчитать по индексу лайков
+    private final Set<Long> changedFilms = ConcurrentHashMap.newKeySet();
+    //фильмы, подпись которых сейчас пересчитывается вне блокировки
+    private final Set<Long> refreshingFilms = new HashSet<>();
+    private boolean rebuilding;
+    private Thread refresher;
+    private volatile boolean running;
+
+    public FilmSimilarityIndex(FilmLikesIndex filmLikesIndex,
+                               @Value("${filmorate.similar-films.bands:16}") int bands,
+                               @Value("${filmorate.similar-films.rows:4}") int rows,
+                               @Value("${filmorate.similar-films.max-candidates:10000}") int maxCandidates,
+                               @Value("${filmorate.similar-films.refresh-interval:1s}") Duration refreshInterval,
+                               @Value("${filmorate.similar-films.rebuild-interval:10m}") Duration rebuildInterval) {
+        this.filmLikesIndex = filmLikesIndex;
+        this.bands = bands;
+        this.rows = rows;
+        this.maxCandidates = maxCandidates;
+        this.refreshInterval = refreshInterval;
+        this.rebuildInterval = rebuildInterval;
+
+        SplittableRandom random = new SplittableRandom(0x5EED);
+        multipliers = new long[bands * rows];
+        increments = new long[bands * rows];
+        for (int i = 0; i < multipliers.length; i++) {
+            multipliers[i] = random.nextLong() | 1;
+            increments[i] = random.nextLong();
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        rebuild();
+        running = true;
+        refresher = Thread.ofPlatform().daemon().name("film-similarity").start(this::refreshLoop);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (refresher != null) {
+            refresher.interrupt();
+            refresher.join();
+        }
+    }
+
+    //перестроить подписи и корзины всех фильмов по индексу лайков; лайки, поставленные
+    //во время построения, дописываются пересчётом изменённых фильмов после подмены
+    public void rebuild() {
+        rebuildLock.lock();
+        try {
+            doRebuild();
+        } finally {
+            rebuildLock.unlock();
+        }
+        refreshChanged();
+    }
+
+    private void doRebuild() {
+        lock.lock();
+        try {
+            rebuilding = true;
+            changedFilms.clear();
+        } finally {
+            lock.unlock();
+        }
+
+        Map<Long, int[]> signatures = new ConcurrentHashMap<>();
+        for (Long filmId : filmLikesIndex.getLikedFilmIds()) {
+            long[] users = filmLikesIndex.getUsersOfFilm(filmId);
+            if (users.length > 0)
+                signatures.put(filmId, signature(users));
+        }
+        long[] bucketKeys = new long[signatures.size() * bands];
+        long[] bucketFilms = new long[bucketKeys.length];
+        int size = 0;
+        for (Map.Entry<Long, int[]> entry : signatures.entrySet()) {
+            for (int band = 0; band < bands; band++) {
+                bucketKeys[size] = bucketKey(entry.getValue(), band);
+                bucketFilms[size] = entry.getKey();
+                size++;
+            }
+        }
+        Map<Long, long[]> buckets = SortedLongArrays.group(bucketKeys, bucketFilms, size);
+
+        lock.lock();
+        try {
+            signaturesByFilmId = signatures;
+            filmsByBucket = buckets;
+            rebuilding = false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //пересчитать подписи фильмов, помеченных изменёнными
+    public void refreshChanged() {
+        for (Long filmId : new ArrayList<>(changedFilms)) {
+            lock.lock();
+            try {
+                if (!changedFilms.remove(filmId))
+                    continue;
+                refreshingFilms.add(filmId);
+            } finally {
+                lock.unlock();
+            }
+
+            long[] users = filmLikesIndex.getUsersOfFilm(filmId);
+            int[] updated = users.length > 0 ? signature(users) : null;
+
+            lock.lock();
+            try {
+                refreshingFilms.remove(filmId);
+                //фильм изменился во время пересчёта: подпись устарела, он будет пересчитан снова
+                if (!changedFilms.contains(filmId))
+                    replace(filmId, signaturesByFilmId.get(filmId), updated);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    //лайк добавлен: минимумы подписи только уменьшаются, меняются корзины затронутых полос
+    public void addLike(long filmId, long userId) {
+        lock.lock();
+        try {
+            int[] current = signaturesByFilmId.get(filmId);
+            if (current == null || rebuilding || refreshingFilms.contains(filmId)) {
+                //подпись ещё не построена или строится по старым лайкам
+                changedFilms.add(filmId);
+                if (current == null)
+                    return;
+            }
+            int[] updated = current.clone();
+            long mixed = mix(userId);
+            boolean changed = false;
+            for (int i = 0; i < updated.length; i++) {
+                int hash = hash(mixed, i);
+                if (hash < updated[i]) {
+                    updated[i] = hash;
+                    changed = true;
+                }
+            }
+            if (changed)
+                replace(filmId, current, updated);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //лайки фильма уменьшились или заменены: подпись пересчитывается в фоне
+    public void markChanged(long filmId) {
+        changedFilms.add(filmId);
+    }
+
+    public void removeFilm(long filmId) {
+        lock.lock();
+        try {
+            replace(filmId, signaturesByFilmId.get(filmId), null);
+            changedFilms.remove(filmId);
+            //подпись может строиться по лайкам до удаления: после подмены она убирается пересчётом
+            if (rebuilding || refreshingFilms.contains(filmId))
+                changedFilms.add(filmId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            signaturesByFilmId = new ConcurrentHashMap<>();
+            filmsByBucket = new ConcurrentHashMap<>();
+            changedFilms.clear();
+            changedFilms.addAll(refreshingFilms);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //до limit фильмов по убыванию оценки коэффициента Жаккара с фильмом filmId (при равенстве -
+    //по возрастанию id); рассматриваются только фильмы из общих корзин, не больше max-candidates
+    public long[] findSimilar(long filmId, int limit) {
+        int[] signature = signaturesByFilmId.get(filmId);
+        if (signature == null || limit <= 0)
+            return EMPTY;
+
+        Map<Long, long[]> buckets = filmsByBucket;
+        Map<Long, int[]> signatures = signaturesByFilmId;
+        LongIntCounter candidates = new LongIntCounter(Math.min(maxCandidates, 1024));
+        int budget = maxCandidates;
+        for (int band = 0; band < bands && budget > 0; band++) {
+            long[] films = buckets.getOrDefault(bucketKey(signature, band), EMPTY);
+            int length = Math.min(films.length, budget);
+            budget -= length;
+            for (int i = 0; i < length; i++) {
+                if (films[i] != filmId)
+                    candidates.increment(films[i]);
+            }
+        }
+
+        TopScores top = new TopScores(Math.min(limit, candidates.size()));
+        candidates.forEach((candidateId, bandMatches) -> {
+            int[] other = signatures.get(candidateId);
+            if (other != null)
+                top.offer(candidateId, similarity(signature, other));
+        });
+        return top.toSortedIds();
+    }
+
+    //оценка коэффициента Жаккара: доля совпавших позиций подписей
+    private static double similarity(int[] first, int[] second) {
+        int matches = 0;
+        for (int i = 0; i < first.length; i++) {
+            if (first[i] == second[i])
+                matches++;
+        }
+        return (double) matches / first.length;
+    }
+
+    private void refreshLoop() {
+        long lastRebuild = System.nanoTime();
+        while (running) {
+            try {
+                Thread.sleep(refreshInterval);
+                if (System.nanoTime() - lastRebuild >= rebuildInterval.toNanos()) {
+                    rebuild();
+                    lastRebuild = System.nanoTime();
+                } else {
+                    refreshChanged();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException ex) {
+                log.warn("Не удалось обновить индекс похожих фильмов", ex);
+            }
+        }
+    }
+
+    //подменить подпись фильма и переложить его в корзины полос, которые изменились
+    private void replace(long filmId, int[] current, int[] updated) {
+        Map<Long, long[]> buckets = filmsByBucket;
+        for (int band = 0; band < bands; band++) {
+            long currentKey = current != null ? bucketKey(current, band) : 0;
+            long updatedKey = updated != null ? bucketKey(updated, band) : 0;
+            if (current != null && updated != null && currentKey == updatedKey)
+                continue;
+            if (current != null)
+                buckets.computeIfPresent(currentKey, (key, films) -> remove(films, filmId));
+            if (updated != null)
+                buckets.compute(updatedKey, (key, films) -> insert(films, filmId));
+        }
+        if (updated != null)
+            signaturesByFilmId.put(filmId, updated);
+        else
+            signaturesByFilmId.remove(filmId);
+    }
+
+    private int[] signature(long[] users) {
+        int[] signature = new int[multipliers.length];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for (long userId : users) {
+            long mixed = mix(userId);
+            for (int i = 0; i < signature.length; i++) {
+                int hash = hash(mixed, i);
+                if (hash < signature[i])
+                    signature[i] = hash;
+            }
+        }
+        return signature;
+    }
+
+    private int hash(long mixed, int index) {
+        return (int) ((multipliers[index] * mixed + increments[index]) >>> 33);
+    }
+
+    //ключ корзины: номер полосы и её rows значений
+    private long bucketKey(int[] signature, int band) {
+        long key = band;
+        for (int i = band * rows; i < (band + 1) * rows; i++) {
+            key = key * 0x100000001B3L + signature[i];
+        }
+        return mix(key);
+    }
+
+    //перемешивание битов (финализатор SplitMix64), чтобы соседние id давали несвязанные хеши
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+}
@@ -0,0 +1,224 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static ru.yandex.practicum.filmorate.storage.index.SortedLongArrays.insert;
+import static ru.yandex.practicum.filmorate.storage.index.SortedLongArrays.remove;
+
+//граф дружбы в памяти: для каждого пользователя - отсортированный массив id друзей
+//(исходящие рёбра friendship) и отсортированный массив id тех, у кого он в друзьях (входящие).
+//Массивы не изменяются на месте: запись подменяет массив целиком, поэтому чтение идёт без блокировок.
+//Заполняется из friendship при старте, дальше DAO меняет граф вместе с таблицей
+@Component
+public class FriendshipGraph {
+    private static final long[] EMPTY = SortedLongArrays.EMPTY;
+    //число блокировок для записи: операции с одним пользователем выполняются по очереди
+    private static final int LOCK_STRIPES = 64;
+    //во сколько раз один список должен быть длиннее другого, чтобы пересекать двоичным поиском
+    private static final int BINARY_SEARCH_RATIO = 16;
+
+    private final JdbcTemplate jdbcTemplate;
+    //сколько списков друзей второго уровня просматривается при подборе рекомендаций
+    private final int maxSuggestionExpansion;
+
+    private volatile Map<Long, long[]> friendsByUserId = new ConcurrentHashMap<>();
+    private volatile Map<Long, long[]> followersByUserId = new ConcurrentHashMap<>();
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public FriendshipGraph(JdbcTemplate jdbcTemplate,
+                           @Value("${filmorate.friends.suggestions.max-expansion:100000}") int maxSuggestionExpansion) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxSuggestionExpansion = maxSuggestionExpansion;
+    }
+
+    @PostConstruct
+    public void reload() {
+        String selectFriendshipQuery = "SELECT user_id, friend_id FROM friendship";
+        SortedLongArrays.Pairs edges = new SortedLongArrays.Pairs();
+        jdbcTemplate.query(selectFriendshipQuery, rs -> {
+            edges.add(rs.getLong("user_id"), rs.getLong("friend_id"));
+        });
+        loadEdges(edges.first, edges.second, edges.size);
+    }
+
+    //заменить граф рёбрами from[i] -> to[i], i < size
+    public void loadEdges(long[] from, long[] to, int size) {
+        Map<Long, long[]> friends = SortedLongArrays.group(from, to, size);
+        Map<Long, long[]> followers = SortedLongArrays.group(to, from, size);
+        friendsByUserId = friends;
+        followersByUserId = followers;
+    }
+
+    //блокировка записи дружбы пользователя: изменение таблицы и графа под ней
+    //выполняются для одного пользователя в том же порядке
+    public ReentrantLock lockFor(long userId) {
+        return locks[Math.floorMod(Long.hashCode(userId), LOCK_STRIPES)];
+    }
+
+    //блокировки для набора пользователей в одном порядке, чтобы пакеты не ждали друг друга по кругу
+    public List<ReentrantLock> locksFor(Collection<Long> userIds) {
+        SortedSet<Integer> stripes = new TreeSet<>();
+        for (Long userId : userIds) {
+            stripes.add(Math.floorMod(Long.hashCode(userId), LOCK_STRIPES));
+        }
+        List<ReentrantLock> result = new ArrayList<>(stripes.size());
+        for (int stripe : stripes) {
+            result.add(locks[stripe]);
+        }
+        return result;
+    }
+
+    public void addFriend(long userId, long friendId) {
+        friendsByUserId.compute(userId, (id, friends) -> insert(friends, friendId));
+        followersByUserId.compute(friendId, (id, followers) -> insert(followers, userId));
+    }
+
+    public void removeFriend(long userId, long friendId) {
+        friendsByUserId.computeIfPresent(userId, (id, friends) -> remove(friends, friendId));
+        followersByUserId.computeIfPresent(friendId, (id, followers) -> remove(followers, userId));
+    }
+
+    //заменить список друзей пользователя целиком
+    public void setFriends(long userId, Collection<Long> friendIds) {
+        for (long friendId : getFriends(userId)) {
+            followersByUserId.computeIfPresent(friendId, (id, followers) -> remove(followers, userId));
+        }
+        long[] friends = friendIds.stream().mapToLong(Long::longValue).sorted().distinct().toArray();
+        if (friends.length == 0)
+            friendsByUserId.remove(userId);
+        else
+            friendsByUserId.put(userId, friends);
+        for (long friendId : friends) {
+            followersByUserId.compute(friendId, (id, followers) -> insert(followers, userId));
+        }
+    }
+
+    //пользователь удалён: его рёбра в обе стороны исчезают вместе с каскадным удалением в friendship
+    public void removeUser(long userId) {
+        long[] friends = friendsByUserId.remove(userId);
+        if (friends != null) {
+            for (long friendId : friends) {
+                followersByUserId.computeIfPresent(friendId, (id, followers) -> remove(followers, userId));
+            }
+        }
+        long[] followers = followersByUserId.remove(userId);
+        if (followers != null) {
+            for (long followerId : followers) {
+                friendsByUserId.computeIfPresent(followerId, (id, list) -> remove(list, userId));
+            }
+        }
+    }
+
+    public void clear() {
+        friendsByUserId = new ConcurrentHashMap<>();
+        followersByUserId = new ConcurrentHashMap<>();
+    }
+
+    //id пользователей, добавивших userId в друзья, по возрастанию; массив нельзя изменять
+    public long[] getFollowers(long userId) {
+        return followersByUserId.getOrDefault(userId, EMPTY);
+    }
+
+    //id друзей по возрастанию; массив нельзя изменять
+    public long[] getFriends(long userId) {
+        return friendsByUserId.getOrDefault(userId, EMPTY);
+    }
+
+    public boolean isFriend(long userId, long friendId) {
+        return Arrays.binarySearch(getFriends(userId), friendId) >= 0;
+    }
+
+    //общие друзья по возрастанию id: слияние отсортированных массивов, а если один намного
+    //короче другого - двоичный поиск каждого его элемента в длинном
+    public long[] getCommonFriends(long userId, long otherId) {
+        long[] first = getFriends(userId);
+        long[] second = getFriends(otherId);
+        if (first.length > second.length) {
+            long[] swap = first;
+            first = second;
+            second = swap;
+        }
+        if (first.length == 0)
+            return EMPTY;
+
+        long[] result = new long[first.length];
+        int count = 0;
+        if ((long) first.length * BINARY_SEARCH_RATIO < second.length) {
+            int from = 0;
+            for (long id : first) {
+                int index = Arrays.binarySearch(second, from, second.length, id);
+                if (index >= 0) {
+                    result[count++] = id;
+                    from = index + 1;
+                } else {
+                    from = -index - 1;
+                }
+            }
+        } else {
+            int i = 0;
+            int j = 0;
+            while (i < first.length && j < second.length) {
+                if (first[i] < second[j]) {
+                    i++;
+                } else if (first[i] > second[j]) {
+                    j++;
+                } else {
+                    result[count++] = first[i];
+                    i++;
+                    j++;
+                }
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    //до limit пользователей, не являющихся друзьями, по убыванию числа общих друзей (при равенстве -
+    //по возрастанию id). Просматриваются друзья друзей: сначала списки друзей с меньшим числом
+    //друзей (их общие друзья значат больше), всего не больше max-expansion id, поэтому время ответа
+    //ограничено и для пользователей с огромным числом друзей
+    public long[] suggestFriends(long userId, int limit) {
+        long[] friends = getFriends(userId);
+        if (friends.length == 0 || limit <= 0)
+            return EMPTY;
+
+        int consideredFriends = Math.min(friends.length, maxSuggestionExpansion);
+        long[][] lists = new long[consideredFriends][];
+        long expansion = 0;
+        for (int i = 0; i < consideredFriends; i++) {
+            lists[i] = getFriends(friends[i]);
+            expansion += lists[i].length;
+        }
+        Arrays.sort(lists, Comparator.comparingInt(list -> list.length));
+
+        LongIntCounter mutualFriends = new LongIntCounter((int) Math.min(expansion, maxSuggestionExpansion));
+        int budget = maxSuggestionExpansion;
+        for (long[] list : lists) {
+            if (budget <= 0)
+                break;
+            int length = Math.min(list.length, budget);
+            budget -= length;
+            for (int i = 0; i < length; i++) {
+                long candidateId = list[i];
+                if (candidateId != userId && Arrays.binarySearch(friends, candidateId) < 0)
+                    mutualFriends.increment(candidateId);
+            }
+        }
+
+        TopScores top = new TopScores(Math.min(limit, mutualFriends.size()));
+        mutualFriends.forEach(top::offer);
+        return top.toSortedIds();
+    }
+}
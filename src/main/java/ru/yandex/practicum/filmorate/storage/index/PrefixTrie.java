@@ -0,0 +1,144 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+//префиксное дерево: строка -> отсортированный массив id. Дети узла хранятся в отсортированном
+//массиве символов и параллельном массиве узлов; узлы без id и без детей удаляются.
+//Не потокобезопасно: синхронизацию обеспечивает владелец
+final class PrefixTrie {
+    private static final long[] EMPTY = SortedLongArrays.EMPTY;
+    private static final char[] NO_CHARS = new char[0];
+    private static final Node[] NO_NODES = new Node[0];
+
+    private static final class Node {
+        private char[] chars = NO_CHARS;
+        private Node[] children = NO_NODES;
+        //ключ, заканчивающийся в узле, и его id; у промежуточных узлов null и пустой массив
+        private String key;
+        private long[] ids = EMPTY;
+
+        private Node child(char c) {
+            int index = Arrays.binarySearch(chars, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        private Node addChild(char c) {
+            int index = Arrays.binarySearch(chars, c);
+            if (index >= 0)
+                return children[index];
+            int position = -index - 1;
+            char[] newChars = new char[chars.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(chars, 0, newChars, 0, position);
+            System.arraycopy(children, 0, newChildren, 0, position);
+            newChars[position] = c;
+            newChildren[position] = new Node();
+            System.arraycopy(chars, position, newChars, position + 1, chars.length - position);
+            System.arraycopy(children, position, newChildren, position + 1, children.length - position);
+            chars = newChars;
+            children = newChildren;
+            return newChildren[position];
+        }
+
+        private void removeChild(char c) {
+            int index = Arrays.binarySearch(chars, c);
+            if (index < 0)
+                return;
+            char[] newChars = new char[chars.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(chars, 0, newChars, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(chars, index + 1, newChars, index, chars.length - index - 1);
+            System.arraycopy(children, index + 1, newChildren, index, children.length - index - 1);
+            chars = newChars;
+            children = newChildren;
+        }
+
+        private boolean isEmpty() {
+            return ids.length == 0 && chars.length == 0;
+        }
+    }
+
+    private final Node root = new Node();
+
+    //добавить id к ключу; возвращает экземпляр ключа, хранящийся в дереве,
+    //чтобы владелец не держал копии одной и той же строки
+    String add(String key, long id) {
+        Node node = root;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.addChild(key.charAt(i));
+        }
+        if (node.key == null)
+            node.key = key;
+        node.ids = SortedLongArrays.insert(node.ids, id);
+        return node.key;
+    }
+
+    //заменить id ключа целиком (при загрузке); ids должен быть отсортирован без повторов
+    String put(String key, long[] ids) {
+        Node node = root;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.addChild(key.charAt(i));
+        }
+        if (node.key == null)
+            node.key = key;
+        node.ids = ids;
+        return node.key;
+    }
+
+    void remove(String key, long id) {
+        remove(root, key, 0, id);
+    }
+
+    //true, если узел опустел и его можно убрать у родителя
+    private boolean remove(Node node, String key, int depth, long id) {
+        if (depth == key.length()) {
+            long[] ids = SortedLongArrays.remove(node.ids, id);
+            node.ids = ids != null ? ids : EMPTY;
+            if (node.ids.length == 0)
+                node.key = null;
+            return node.isEmpty();
+        }
+        char c = key.charAt(depth);
+        Node child = node.child(c);
+        if (child != null && remove(child, key, depth + 1, id))
+            node.removeChild(c);
+        return node != root && node.isEmpty();
+    }
+
+    //id ключа по возрастанию; массив нельзя изменять
+    long[] get(String key) {
+        Node node = find(key);
+        return node != null ? node.ids : EMPTY;
+    }
+
+    //обход ключей, начинающихся с prefix: сначала сам prefix, затем продолжения в порядке символов;
+    //останавливается после maxKeys ключей
+    void forEachWithPrefix(String prefix, int maxKeys, Consumer<long[]> consumer) {
+        Node node = find(prefix);
+        if (node != null && maxKeys > 0)
+            visit(node, new int[]{maxKeys}, consumer);
+    }
+
+    private static void visit(Node node, int[] remaining, Consumer<long[]> consumer) {
+        if (node.ids.length > 0) {
+            consumer.accept(node.ids);
+            if (--remaining[0] == 0)
+                return;
+        }
+        for (Node child : node.children) {
+            visit(child, remaining, consumer);
+            if (remaining[0] == 0)
+                return;
+        }
+    }
+
+    private Node find(String key) {
+        Node node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.child(key.charAt(i));
+        }
+        return node;
+    }
+}
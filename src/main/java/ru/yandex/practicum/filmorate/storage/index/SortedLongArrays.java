@@ -0,0 +1,80 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+//операции над отсортированными массивами id, которые индексы держат вместо коллекций Long.
+//Массивы не изменяются на месте: вставка и удаление возвращают новый массив
+final class SortedLongArrays {
+    static final long[] EMPTY = new long[0];
+
+    private SortedLongArrays() {
+    }
+
+    static long[] insert(long[] ids, long id) {
+        if (ids == null)
+            return new long[]{id};
+        int index = Arrays.binarySearch(ids, id);
+        if (index >= 0)
+            return ids;
+        int position = -index - 1;
+        long[] result = new long[ids.length + 1];
+        System.arraycopy(ids, 0, result, 0, position);
+        result[position] = id;
+        System.arraycopy(ids, position, result, position + 1, ids.length - position);
+        return result;
+    }
+
+    //null удаляет запись из отображения
+    static long[] remove(long[] ids, long id) {
+        int index = Arrays.binarySearch(ids, id);
+        if (index < 0)
+            return ids;
+        if (ids.length == 1)
+            return null;
+        long[] result = new long[ids.length - 1];
+        System.arraycopy(ids, 0, result, 0, index);
+        System.arraycopy(ids, index + 1, result, index, ids.length - index - 1);
+        return result;
+    }
+
+    //пары keys[i] -> values[i], i < size, сгруппированные по ключу в отсортированные массивы
+    //без повторов; строится в два прохода без промежуточных списков Long
+    static Map<Long, long[]> group(long[] keys, long[] values, int size) {
+        Map<Long, int[]> counts = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            counts.computeIfAbsent(keys[i], key -> new int[1])[0]++;
+        }
+        Map<Long, long[]> result = new ConcurrentHashMap<>(counts.size() * 2);
+        counts.forEach((key, count) -> result.put(key, new long[count[0]]));
+        //счётчики переиспользуются как позиция заполнения
+        counts.values().forEach(count -> count[0] = 0);
+        for (int i = 0; i < size; i++) {
+            result.get(keys[i])[counts.get(keys[i])[0]++] = values[i];
+        }
+        result.replaceAll((key, ids) -> {
+            Arrays.sort(ids);
+            return Arrays.stream(ids).distinct().toArray();
+        });
+        return result;
+    }
+
+    //растущий список пар id для загрузки индекса из БД
+    static class Pairs {
+        long[] first = new long[1024];
+        long[] second = new long[1024];
+        int size;
+
+        void add(long firstId, long secondId) {
+            if (size == first.length) {
+                first = Arrays.copyOf(first, size * 2);
+                second = Arrays.copyOf(second, size * 2);
+            }
+            first[size] = firstId;
+            second[size] = secondId;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+//отбор limit id с наибольшей оценкой за один проход: куча на минимум ограниченного размера
+//в массивах примитивов, новый кандидат сравнивается только с худшим из отобранных.
+//При равной оценке выше идёт меньший id
+public class TopScores {
+    private final long[] ids;
+    private final double[] scores;
+    private int size;
+
+    public TopScores(int limit) {
+        ids = new long[limit];
+        scores = new double[limit];
+    }
+
+    public void offer(long id, double score) {
+        if (ids.length == 0)
+            return;
+        if (size < ids.length) {
+            ids[size] = id;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (isBetter(id, score, 0)) {
+            ids[0] = id;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    //отобранные id от лучшего к худшему
+    public long[] toSortedIds() {
+        long[] heapIds = ids.clone();
+        double[] heapScores = scores.clone();
+        int heapSize = size;
+        long[] result = new long[size];
+        //извлечение минимума с конца результата
+        for (int i = size - 1; i >= 0; i--) {
+            result[i] = ids[0];
+            size--;
+            ids[0] = ids[size];
+            scores[0] = scores[size];
+            siftDown(0);
+        }
+        System.arraycopy(heapIds, 0, ids, 0, heapIds.length);
+        System.arraycopy(heapScores, 0, scores, 0, heapScores.length);
+        size = heapSize;
+        return result;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    //кандидат (id, score) лучше элемента кучи с номером index
+    private boolean isBetter(long id, double score, int index) {
+        return score > scores[index] || (score == scores[index] && id < ids[index]);
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (!isBetter(ids[parent], scores[parent], index))
+                return;
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int left = 2 * index + 1;
+            if (left >= size)
+                return;
+            int worst = left;
+            int right = left + 1;
+            if (right < size && isBetter(ids[left], scores[left], right))
+                worst = right;
+            if (!isBetter(ids[index], scores[index], worst))
+                return;
+            swap(index, worst);
+            index = worst;
+        }
+    }
+
+    private void swap(int first, int second) {
+        long id = ids[first];
+        ids[first] = ids[second];
+        ids[second] = id;
+        double score = scores[first];
+        scores[first] = scores[second];
+        scores[second] = score;
+    }
+}
@@ -1,28 +1,78 @@
 package ru.yandex.practicum.filmorate.storage.interfaces;
 
+import ru.yandex.practicum.filmorate.model.FieldSet;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
     Collection<Film> getFilms();
 
+    //лайки и жанры загружаются, только если входят в набор полей
+    Collection<Film> getFilms(FieldSet fields);
+
+    //фильмы с id больше afterId в порядке возрастания id, не более limit штук
+    List<Film> getFilmsAfter(Long afterId, int limit);
+
+    List<Film> getFilmsAfter(Long afterId, int limit, FieldSet fields);
+
+    //передать все фильмы потребителю по одному, подгружая их порциями по chunkSize
+    void streamFilms(int chunkSize, Consumer<Film> consumer);
+
     Film createFilm(Film newFilm);
 
+    //вставить пакет новых фильмов с жанрами, фильмам проставляются сгенерированные id
+    List<Film> createFilms(List<Film> newFilms);
+
     Film updateFilm(Film newFilm);
 
     void deleteFilm(Long id);
 
     Optional<Film> getFilmById(Long id);
 
+    Optional<Film> getFilmById(Long id, FieldSet fields);
+
+    //номер последнего изменения фильма: его строки, жанров или лайков
+    long getFilmVersion(Long id);
+
+    //растёт при любом изменении фильмов и пользователей
+    long getDataVersion();
+
     void addLikeToFilm(Long filmId, Long userId);
 
     void removeLikeFromFilm(Long filmId, Long userId);
 
     Collection<Film> getTopPopularFilms(Integer count);
 
+    //топ фильмов жанра genreId и года выхода year; null - без ограничения
+    Collection<Film> getTopPopularFilms(Integer count, Integer genreId, Integer year);
+
+    Collection<Film> getTopPopularFilms(Integer count, Integer genreId, Integer year, FieldSet fields);
+
+    //до limit фильмов, лайкнувшие которые больше всего совпадают с лайкнувшими фильм filmId
+    List<Film> getSimilarFilms(Long filmId, int limit);
+
+    //до limit фильмов, в названии или описании которых встречаются слова запроса, от лучшего совпадения
+    List<Film> searchFilms(String query, int limit);
+
+    //до limit фильмов, которых пользователь не лайкал, понравившихся пользователям с похожими лайками
+    List<Film> getRecommendedFilms(Long userId, int limit);
+
     boolean isLikeAlreadyExist(Long filmId, Long userId);
 
+    //есть ли фильм с таким id, без загрузки самого фильма
+    boolean isFilmExist(Long id);
+
+    //id из переданного набора, для которых есть фильм в БД
+    Set<Long> getExistingFilmIds(Collection<Long> ids);
+
+    //применить пакет операций с лайками одной транзакцией
+    void applyLikeOperations(List<LikeOperation> operations);
+
     void deleteAll();
 }
\ No newline at end of file
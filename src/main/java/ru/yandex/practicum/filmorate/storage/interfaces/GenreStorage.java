@@ -9,4 +9,10 @@ public interface GenreStorage {
     public Collection<Genre> getGenres();
 
     public Optional<Genre> getGenreById(Integer id);
+
+    //версия справочника: меняется только вместе с его содержимым
+    public long getVersion();
+
+    //перечитать справочник из БД
+    public void refreshCache();
 }
@@ -9,4 +9,10 @@ public interface MpaStorage {
     public Collection<MPA> getMpa();
 
     public Optional<MPA> getMpaById(Integer id);
+
+    //версия справочника: меняется только вместе с его содержимым
+    public long getVersion();
+
+    //перечитать справочник из БД
+    public void refreshCache();
 }
@@ -1,30 +1,64 @@
 package ru.yandex.practicum.filmorate.storage.interfaces;
 
+import ru.yandex.practicum.filmorate.model.FieldSet;
+import ru.yandex.practicum.filmorate.model.FriendshipOperation;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 public interface UserStorage {
     public Collection<User> getUsers();
 
+    //список друзей заполняется, только если входит в набор полей
+    public Collection<User> getUsers(FieldSet fields);
+
+    //пользователи с id больше afterId в порядке возрастания id, не более limit штук
+    public List<User> getUsersAfter(Long afterId, int limit);
+
+    public List<User> getUsersAfter(Long afterId, int limit, FieldSet fields);
+
     public User createUser(User newUser);
 
+    //вставить пакет новых пользователей, им проставляются сгенерированные id
+    public List<User> createUsers(List<User> newUsers);
+
     public User updateUser(User newUser);
 
     public void deleteUser(Long id);
 
     public Optional<User> getUserById(Long id);
 
+    public Optional<User> getUserById(Long id, FieldSet fields);
+
+    //номер последнего изменения пользователя: его строки или списка друзей
+    public long getUserVersion(Long id);
+
     public void addFriend(Long userId, Long friendId);
 
     public void removeFriend(Long userId, Long friendId);
 
     public Collection<User> getFriendsOfUser(Long id);
 
+    public List<User> getFriendsOfUserAfter(Long id, Long afterId, int limit);
+
     public Collection<User> getIntersectingFriends(Long userId, Long friendId);
 
+    //до limit пользователей не из друзей по убыванию числа общих друзей
+    public List<User> getFriendSuggestions(Long id, int limit);
+
     void deleteAll();
 
     boolean isFriendAlreadyExist(Long userId, Long friendId);
+
+    //есть ли пользователь с таким id, без загрузки самого пользователя
+    boolean isUserExist(Long id);
+
+    //id из переданного набора, для которых есть пользователь в БД
+    Set<Long> getExistingUserIds(Collection<Long> ids);
+
+    //применить пакет операций с друзьями одной транзакцией
+    void applyFriendshipOperations(List<FriendshipOperation> operations);
 }
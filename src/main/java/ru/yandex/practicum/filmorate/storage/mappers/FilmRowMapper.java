@@ -0,0 +1,37 @@
+package ru.yandex.practicum.filmorate.storage.mappers;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.interfaces.MpaStorage;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashSet;
+
+//маппер только для строки таблицы films: рейтинг берётся из кэша справочника,
+//лайки и жанры подгружает FilmAggregateLoader для всего набора фильмов сразу
+@Component
+@RequiredArgsConstructor
+public class FilmRowMapper implements RowMapper<Film> {
+    private final MpaStorage mpaStorage;
+
+    @Override
+    public Film mapRow(ResultSet rs, int rowNum) throws SQLException {
+        Film film = new Film();
+        film.setId(rs.getLong("id"));
+        film.setName(rs.getString("name"));
+        film.setDescription(rs.getString("description"));
+        film.setReleaseDate(rs.getDate("release_date").toLocalDate());
+        film.setDuration(rs.getInt("duration"));
+
+        Integer mpaId = rs.getObject("mpa_id", Integer.class);
+        if (mpaId != null)
+            film.setMpa(mpaStorage.getMpaById(mpaId).orElse(null));
+
+        film.setUserIdsLiked(new LinkedHashSet<>());
+        film.setGenres(new LinkedHashSet<>());
+        return film;
+    }
+}
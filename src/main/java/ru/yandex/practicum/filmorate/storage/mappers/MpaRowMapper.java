@@ -11,9 +11,6 @@ import java.sql.SQLException;
 public class MpaRowMapper implements RowMapper<MPA> {
     @Override
     public MPA mapRow(ResultSet rs, int rowNum) throws SQLException {
-        MPA mpa = new MPA();
-        mpa.setId(rs.getInt("id"));
-        mpa.setName(rs.getString("name"));
-        return mpa;
+        return new MPA(rs.getInt("id"), rs.getString("name"));
     }
 }
@@ -0,0 +1,16 @@
+package ru.yandex.practicum.filmorate.validation;
+
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+import java.util.List;
+
+public class BatchValidation {
+    public static final int MAX_BATCH_SIZE = 10_000;
+
+    public static void validateBatchSize(List<?> operations) throws ValidationException {
+        if (operations == null || operations.isEmpty())
+            throw new ValidationException("Пакет операций не может быть пустым");
+        if (operations.size() > MAX_BATCH_SIZE)
+            throw new ValidationException("Пакет не может содержать больше " + MAX_BATCH_SIZE + " операций");
+    }
+}
@@ -0,0 +1,28 @@
+package ru.yandex.practicum.filmorate.validation;
+
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.FieldSet;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+public class FieldSetValidation {
+    //допустимые поля - свойства модели: имена её нестатических полей
+    public static void validateFields(FieldSet fields, Class<?> type) throws ValidationException {
+        if (fields.names() == null)
+            return;
+        Set<String> allowed = Arrays.stream(type.getDeclaredFields())
+                .filter(field -> !Modifier.isStatic(field.getModifiers()))
+                .map(Field::getName)
+                .collect(Collectors.toSet());
+        List<String> unknown = fields.names().stream()
+                .filter(field -> !allowed.contains(field))
+                .toList();
+        if (!unknown.isEmpty())
+            throw new ValidationException("Неизвестные поля в параметре fields: " + String.join(", ", unknown));
+    }
+}
@@ -0,0 +1,15 @@
+package ru.yandex.practicum.filmorate.validation;
+
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+public class PageValidation {
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1000;
+
+    public static void validatePage(Long after, Integer limit) throws ValidationException {
+        if (after != null && after < 0)
+            throw new ValidationException("Параметр after не может быть отрицательным");
+        if (limit != null && (limit <= 0 || limit > MAX_LIMIT))
+            throw new ValidationException("Параметр limit должен быть от 1 до " + MAX_LIMIT);
+    }
+}
@@ -0,0 +1,10 @@
+-- версия 2: пара фильм-пользователь, фильм-жанр и пользователь-друг хранится один раз;
+-- перед добавлением ограничений удаляются дубликаты, накопленные в уже существующей БД
+DELETE FROM film_likes WHERE id NOT IN (SELECT MIN(id) FROM film_likes GROUP BY film_id, user_id);
+ALTER TABLE film_likes ADD CONSTRAINT IF NOT EXISTS uq_film_likes_film_user UNIQUE (film_id, user_id);
+
+DELETE FROM film_genres WHERE id NOT IN (SELECT MIN(id) FROM film_genres GROUP BY film_id, genre_id);
+ALTER TABLE film_genres ADD CONSTRAINT IF NOT EXISTS uq_film_genres_film_genre UNIQUE (film_id, genre_id);
+
+DELETE FROM friendship WHERE id NOT IN (SELECT MIN(id) FROM friendship GROUP BY user_id, friend_id);
+ALTER TABLE friendship ADD CONSTRAINT IF NOT EXISTS uq_friendship_user_friend UNIQUE (user_id, friend_id);
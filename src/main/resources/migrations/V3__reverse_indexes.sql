@@ -0,0 +1,9 @@
+-- версия 3: индексы под запросы FilmDbStorage/UserDbStorage.
+-- Уникальные ключи версии 2 уже служат индексами для поиска по film_id
+-- (лайки и жанры фильмов) и по user_id (друзья пользователя), ниже - обратные направления
+-- лайки пользователя: удаление пользователя, рекомендации
+CREATE INDEX IF NOT EXISTS idx_film_likes_user_film ON film_likes (user_id, film_id);
+-- у кого пользователь в друзьях: каскадное удаление, общие друзья
+CREATE INDEX IF NOT EXISTS idx_friendship_friend_user ON friendship (friend_id, user_id);
+-- фильмы жанра: каскадное удаление жанра, подборки по жанрам
+CREATE INDEX IF NOT EXISTS idx_film_genres_genre_film ON film_genres (genre_id, film_id);
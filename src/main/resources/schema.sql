@@ -41,4 +41,16 @@ CREATE TABLE IF NOT EXISTS friendship (
     id INTEGER AUTO_INCREMENT PRIMARY KEY,
     user_id BIGINT REFERENCES users (id) ON DELETE CASCADE,
     friend_id BIGINT REFERENCES users (id) ON DELETE CASCADE
-);
\ No newline at end of file
+);
+
+-- версии схемы, применённые к БД. Этот скрипт (версия 1) выполняется при каждом старте и ничего
+-- не меняет в существующей БД; следующие версии лежат в migrations/ и выполняются SchemaInitializer
+-- один раз - только если их нет в schema_version
+CREATE TABLE IF NOT EXISTS schema_version (
+    version INTEGER PRIMARY KEY,
+    description VARCHAR(255) NOT NULL,
+    applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL
+);
+
+MERGE INTO schema_version (version, description) KEY (version)
+    VALUES (1, 'Таблицы фильмов, пользователей, жанров, рейтингов, лайков и дружбы');
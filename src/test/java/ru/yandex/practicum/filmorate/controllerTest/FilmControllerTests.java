@@ -0,0 +1,232 @@
+package ru.yandex.practicum.filmorate.controllerTest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.interfaces.FilmService;
+import ru.yandex.practicum.filmorate.service.interfaces.UserService;
+import ru.yandex.practicum.filmorate.storage.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.interfaces.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.interfaces.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.interfaces.MpaStorage;
+import ru.yandex.practicum.filmorate.storage.interfaces.UserStorage;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(classes = FilmorateApplication.class)
+@AutoConfigureTestDatabase
+@AutoConfigureMockMvc
+class FilmControllerTests {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private FilmService filmService;
+    @Autowired
+    private FilmStorage filmStorage;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private UserStorage userStorage;
+    @Autowired
+    private MpaStorage mpaStorage;
+    @Autowired
+    private GenreStorage genreStorage;
+    @Autowired
+    private FilmSearchIndex filmSearchIndex;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    void beforeEach() {
+        filmStorage.deleteAll();
+        userStorage.deleteAll();
+    }
+
+    @Test
+    public void fieldsAreAppliedOnlyWhereAccepted() throws Exception {
+        Film film = createFilm("Titanic");
+        User user = createUser("user");
+        filmService.addLikeToFilm(film.getId(), user.getId());
+
+        mockMvc.perform(get("/films/{id}", film.getId()).param("fields", "id,likesCount"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"id\":" + film.getId() + ",\"likesCount\":1}", true));
+        mockMvc.perform(get("/users/{id}", user.getId()).param("fields", "login,friendsCount"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"login\":\"user\",\"friendsCount\":0}", true));
+        mockMvc.perform(get("/films/{id}", film.getId()).param("fields", "id,secret"))
+                .andExpect(status().isBadRequest());
+
+        //без параметра и на методах без fields выводятся все поля, а числа лайков и друзей - нет
+        mockMvc.perform(get("/films/{id}", film.getId()))
+                .andExpect(jsonPath("$.name").value("Titanic"))
+                .andExpect(jsonPath("$.likesCount").doesNotExist());
+        mockMvc.perform(get("/films/search").param("q", "titanic").param("fields", "id"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Titanic"))
+                .andExpect(jsonPath("$[0].userIdsLiked[0]").value(user.getId()));
+        mockMvc.perform(get("/users/{id}/friends", user.getId()).param("fields", "id"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void streamFilmsAsNdjson() throws Exception {
+        User user = createUser("user");
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            Film film = createFilm("film " + i, "descr", Set.of(genreStorage.getGenreById(1).get()));
+            filmService.addLikeToFilm(film.getId(), user.getId());
+            ids.add(film.getId());
+        }
+
+        MvcResult started = mockMvc.perform(get("/films/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        List<Film> streamed = new ArrayList<>();
+        for (String line : body.lines().toList()) {
+            streamed.add(objectMapper.readValue(line, Film.class));
+        }
+        assertEquals(ids, streamed.stream().map(Film::getId).toList());
+        for (Film film : streamed) {
+            assertEquals(Set.of(user.getId()), film.getUserIdsLiked());
+            assertEquals(1, film.getGenres().size());
+        }
+    }
+
+    @Test
+    public void searchFilmsByNameAndDescription() throws Exception {
+        Film matrix = createFilm("Матрица", "Хакер узнаёт правду о мире", Set.of());
+        Film reloaded = createFilm("Матрица: перезагрузка", "Продолжение истории хакера", Set.of());
+        Film trees = createFilm("Ёлки", "Новогодняя комедия, в которой есть матрица", Set.of());
+        Film spider = createFilm("Человек-паук", "Супергерой в ЧЁРНОМ костюме", Set.of());
+
+        //фильмы, название которых начинается с запроса, идут первыми, за ними совпадения в описании
+        assertEquals(List.of(matrix.getId(), reloaded.getId(), trees.getId()), searchIds("матрица"));
+        assertEquals(List.of(matrix.getId(), reloaded.getId(), trees.getId()), searchIds("МАТР"));
+        assertEquals(List.of(reloaded.getId(), matrix.getId(), trees.getId()), searchIds("матрица пере"));
+        //ё не отличается от е, регистр и знаки препинания не важны
+        assertEquals(List.of(trees.getId()), searchIds("елки"));
+        assertEquals(List.of(spider.getId()), searchIds("черном"));
+        assertEquals(List.of(spider.getId()), searchIds("паук!"));
+        //совпадение слова в названии весит больше, чем в описании
+        assertEquals(List.of(trees.getId(), matrix.getId()), searchIds("ёлки правду"));
+        assertEquals(List.of(), searchIds("терминатор"));
+
+        //индекс меняется вместе с фильмами
+        trees.setName("Ёлки 2");
+        trees.setDescription("Снова новый год");
+        filmService.updateFilm(trees);
+        assertEquals(List.of(matrix.getId(), reloaded.getId()), searchIds("матрица"));
+        assertEquals(List.of(trees.getId()), searchIds("новый"));
+        filmService.deleteFilm(matrix.getId());
+        assertEquals(List.of(reloaded.getId()), searchIds("матр"));
+        //после перечитывания из БД результаты те же
+        filmSearchIndex.reload();
+        assertEquals(List.of(reloaded.getId()), searchIds("матр"));
+        assertEquals(List.of(trees.getId()), searchIds("ЕЛКИ 2"));
+
+        mockMvc.perform(get("/films/search").param("q", " "))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void conditionalGetAnswersNotModifiedUntilDataChanges() throws Exception {
+        Film film = createFilm("film");
+        User user = createUser("user");
+
+        String filmETag = mockMvc.perform(get("/films/{id}", film.getId()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertTrue(filmETag.startsWith("W/"));
+        mockMvc.perform(get("/films/{id}", film.getId()).header(HttpHeaders.IF_NONE_MATCH, filmETag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        String popularETag = mockMvc.perform(get("/films/popular"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        String userETag = mockMvc.perform(get("/users/{id}", user.getId()))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        //лайк меняет версию фильма и общую версию, но не версию пользователя
+        filmService.addLikeToFilm(film.getId(), user.getId());
+        String likedETag = mockMvc.perform(get("/films/{id}", film.getId()).header(HttpHeaders.IF_NONE_MATCH, filmETag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.userIdsLiked[0]").value(user.getId()))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals(filmETag, likedETag);
+        mockMvc.perform(get("/films/popular").header(HttpHeaders.IF_NONE_MATCH, popularETag))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/users/{id}", user.getId()).header(HttpHeaders.IF_NONE_MATCH, userETag))
+                .andExpect(status().isNotModified());
+
+        //удаление пользователя снимает его лайк: фильм тоже меняется
+        userService.deleteUser(user.getId());
+        mockMvc.perform(get("/films/{id}", film.getId()).header(HttpHeaders.IF_NONE_MATCH, likedETag))
+                .andExpect(status().isOk());
+
+        //справочники кешируются надолго и не меняются от записи фильмов
+        MockHttpServletResponse genres = mockMvc.perform(get("/genres"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse();
+        assertTrue(genres.getHeader(HttpHeaders.CACHE_CONTROL).contains("max-age=86400"));
+        filmService.deleteFilm(film.getId());
+        mockMvc.perform(get("/genres").header(HttpHeaders.IF_NONE_MATCH, genres.getHeader(HttpHeaders.ETAG)))
+                .andExpect(status().isNotModified());
+    }
+
+    private List<Long> searchIds(String query) throws Exception {
+        String body = mockMvc.perform(get("/films/search").param("q", query))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        return Arrays.stream(objectMapper.readValue(body, Film[].class)).map(Film::getId).toList();
+    }
+
+    private Film createFilm(String name) {
+        return createFilm(name, "descr", Set.of());
+    }
+
+    private Film createFilm(String name, String description, Set<Genre> genres) {
+        return filmService.createFilm(Film.builder()
+                .name(name)
+                .description(description)
+                .releaseDate(LocalDate.of(2001, 1, 1))
+                .duration(100)
+                .mpa(mpaStorage.getMpaById(1).get())
+                .userIdsLiked(new HashSet<>())
+                .genres(new HashSet<>(genres))
+                .build());
+    }
+
+    private User createUser(String login) {
+        return userService.createUser(User.builder()
+                .email(login + "@mail.ru")
+                .login(login)
+                .name(login)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .friendsIds(new HashSet<>())
+                .build());
+    }
+}
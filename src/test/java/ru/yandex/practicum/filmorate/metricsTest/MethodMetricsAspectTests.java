@@ -0,0 +1,66 @@
+package ru.yandex.practicum.filmorate.metricsTest;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.interfaces.FilmService;
+import ru.yandex.practicum.filmorate.storage.interfaces.FilmStorage;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = FilmorateApplication.class)
+@AutoConfigureTestDatabase
+class MethodMetricsAspectTests {
+    @Autowired
+    private FilmService filmService;
+    @Autowired
+    private FilmStorage filmStorage;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void beforeEach() {
+        filmStorage.deleteAll();
+    }
+
+    @Test
+    public void storageAndServiceCallsAreMeasured() {
+        Film film = filmService.createFilm(Film.builder()
+                .name("film")
+                .description("descr")
+                .releaseDate(LocalDate.of(2001, 01, 01))
+                .duration(100)
+                .userIdsLiked(new HashSet<>())
+                .genres(new HashSet<>())
+                .build());
+        filmService.getTopPopularFilms(10);
+        assertThrows(NotFoundException.class, () -> filmService.getFilmById(film.getId() + 1));
+
+        Timer storageTimer = meterRegistry.find("filmorate.storage")
+                .tags("class", "FilmDbStorage", "method", "getTopPopularFilms", "exception", "none")
+                .timer();
+        assertNotNull(storageTimer);
+        assertTrue(storageTimer.count() >= 1);
+
+        DistributionSummary rows = meterRegistry.find("filmorate.storage.rows")
+                .tags("class", "FilmDbStorage", "method", "getTopPopularFilms")
+                .summary();
+        assertNotNull(rows);
+        assertTrue(rows.max() >= 1);
+
+        assertNotNull(meterRegistry.find("filmorate.service")
+                .tags("class", "FilmServiceDb", "method", "getFilmById", "exception", "NotFoundException")
+                .timer());
+    }
+}
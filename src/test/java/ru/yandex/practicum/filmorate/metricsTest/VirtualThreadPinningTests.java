@@ -0,0 +1,46 @@
+package ru.yandex.practicum.filmorate.metricsTest;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = FilmorateApplication.class, properties = {
+        "spring.threads.virtual.enabled=true",
+        "filmorate.virtual-threads.pinning-threshold=10ms"})
+@AutoConfigureTestDatabase
+class VirtualThreadPinningTests {
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void pinnedVirtualThreadIsMeasured() throws InterruptedException {
+        Object lock = new Object();
+        //ожидание внутри synchronized закрепляет виртуальный поток за потоком-носителем
+        Thread.ofVirtual().start(() -> {
+            synchronized (lock) {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }).join();
+
+        //события JFR доставляются асинхронно, примерно раз в секунду
+        Timer pinned = null;
+        for (int attempt = 0; attempt < 100 && pinned == null; attempt++) {
+            pinned = meterRegistry.find("filmorate.virtual.pinned").timer();
+            if (pinned == null)
+                Thread.sleep(100);
+        }
+        assertNotNull(pinned, "Закрепление виртуального потока не попало в метрики");
+        assertTrue(pinned.count() >= 1);
+        assertTrue(pinned.getId().getTag("frame").startsWith(getClass().getName()));
+    }
+}
@@ -0,0 +1,57 @@
+package ru.yandex.practicum.filmorate.serviceTest;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.ImportReport;
+import ru.yandex.practicum.filmorate.service.importer.ImportFormat;
+import ru.yandex.practicum.filmorate.service.interfaces.BulkImportService;
+import ru.yandex.practicum.filmorate.storage.interfaces.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.interfaces.UserStorage;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = FilmorateApplication.class)
+@AutoConfigureTestDatabase
+class BulkImportServiceTests {
+    @Autowired
+    private BulkImportService bulkImportService;
+    @Autowired
+    private FilmStorage filmStorage;
+    @Autowired
+    private UserStorage userStorage;
+
+    @BeforeEach
+    void beforeEach() {
+        filmStorage.deleteAll();
+        userStorage.deleteAll();
+    }
+
+    @Test
+    public void importFilmsInBatches() {
+        String csv = "name,description,releaseDate,duration,mpaId,genreIds\n" +
+                "\"Titanic, part 1\",descr,2001-01-01,200,1,1|2\n" +
+                "Old,descr,1700-01-01,100,1,\n" +
+                "Avatar,descr,2009-12-10,160,2,\n";
+
+        ImportReport report = bulkImportService.importFilms(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), ImportFormat.CSV);
+        assertEquals(2, report.getAccepted());
+        assertEquals(1, report.getRejected());
+        assertEquals(3, report.getRejectedRows().get(0).line());
+
+        List<Film> repo = filmStorage.getFilms().stream().toList();
+        assertEquals(2, repo.size());
+        assertEquals("Titanic, part 1", repo.get(0).getName());
+        assertEquals(2, repo.get(0).getGenres().size());
+        assertEquals(2, repo.get(1).getMpa().getId());
+    }
+}
@@ -0,0 +1,96 @@
+package ru.yandex.practicum.filmorate.storageTest;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.generator.DataGenerator;
+import ru.yandex.practicum.filmorate.generator.GenerationReport;
+import ru.yandex.practicum.filmorate.generator.GeneratorSettings;
+import ru.yandex.practicum.filmorate.storage.interfaces.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.interfaces.UserStorage;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = FilmorateApplication.class)
+@AutoConfigureTestDatabase
+class DataGeneratorTests {
+    private static final GeneratorSettings SETTINGS = GeneratorSettings.builder()
+            .seed(7)
+            .users(300)
+            .films(100)
+            .averageFriends(10)
+            .averageLikesPerUser(15)
+            .batchSize(128)
+            .build();
+
+    @Autowired
+    private DataGenerator dataGenerator;
+    @Autowired
+    private FilmStorage filmStorage;
+    @Autowired
+    private UserStorage userStorage;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void beforeEach() {
+        filmStorage.deleteAll();
+        userStorage.deleteAll();
+    }
+
+    @Test
+    public void sameSeedGeneratesSameData() {
+        GenerationReport first = dataGenerator.generate(SETTINGS);
+        List<String> firstLikes = likesRelativeToFirstIds();
+        List<String> firstFriends = friendsRelativeToFirstId();
+
+        filmStorage.deleteAll();
+        userStorage.deleteAll();
+        GenerationReport second = dataGenerator.generate(SETTINGS);
+
+        assertEquals(first.likes(), second.likes());
+        assertEquals(first.friendships(), second.friendships());
+        assertEquals(firstLikes, likesRelativeToFirstIds());
+        assertEquals(firstFriends, friendsRelativeToFirstId());
+    }
+
+    @Test
+    public void likesAreSkewedAndIndexesAreReloaded() {
+        GenerationReport report = dataGenerator.generate(SETTINGS);
+        assertEquals(300, report.users());
+        assertEquals(100, report.films());
+        assertEquals(report.likes(), (long) jdbcTemplate.queryForObject("SELECT COUNT(*) FROM film_likes", Long.class));
+
+        List<Integer> likesPerFilm = jdbcTemplate.queryForList("SELECT COUNT(l.user_id) FROM films AS f" +
+                " LEFT JOIN film_likes AS l ON f.id = l.film_id" +
+                " GROUP BY f.id ORDER BY COUNT(l.user_id) DESC", Integer.class);
+        //у самого популярного фильма лайков в разы больше, чем у фильма из середины
+        assertTrue(likesPerFilm.get(0) > 5 * Math.max(1, likesPerFilm.get(likesPerFilm.size() / 2)));
+
+        Long topFilmId = jdbcTemplate.queryForObject("SELECT film_id FROM film_likes" +
+                " GROUP BY film_id ORDER BY COUNT(*) DESC, film_id LIMIT 1", Long.class);
+        assertEquals(topFilmId, filmStorage.getTopPopularFilms(1).iterator().next().getId());
+        assertTrue(userStorage.isUserExist(jdbcTemplate.queryForObject("SELECT MAX(id) FROM users", Long.class)));
+
+        Long mostFriendsUserId = jdbcTemplate.queryForObject("SELECT user_id FROM friendship" +
+                " GROUP BY user_id ORDER BY COUNT(*) DESC, user_id LIMIT 1", Long.class);
+        assertEquals(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM friendship WHERE user_id = ?",
+                Integer.class, mostFriendsUserId), userStorage.getFriendsOfUser(mostFriendsUserId).size());
+    }
+
+    private List<String> likesRelativeToFirstIds() {
+        return jdbcTemplate.queryForList("SELECT CONCAT(film_id - (SELECT MIN(id) FROM films), ':'," +
+                " user_id - (SELECT MIN(id) FROM users)) FROM film_likes ORDER BY film_id, user_id", String.class);
+    }
+
+    private List<String> friendsRelativeToFirstId() {
+        return jdbcTemplate.queryForList("SELECT CONCAT(user_id - (SELECT MIN(id) FROM users), ':'," +
+                " friend_id - (SELECT MIN(id) FROM users)) FROM friendship ORDER BY user_id, friend_id", String.class);
+    }
+}
@@ -0,0 +1,267 @@
+package ru.yandex.practicum.filmorate.storageTest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.FieldSet;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.interfaces.FilmService;
+import ru.yandex.practicum.filmorate.service.interfaces.UserService;
+import ru.yandex.practicum.filmorate.storage.index.FilmSimilarityIndex;
+import ru.yandex.practicum.filmorate.storage.interfaces.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.interfaces.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.interfaces.MpaStorage;
+import ru.yandex.practicum.filmorate.storage.interfaces.UserStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = FilmorateApplication.class)
+@AutoConfigureTestDatabase
+@Import(FilmStorageQueryCountTests.QueryCounterConfig.class)
+class FilmStorageQueryCountTests {
+    @Autowired
+    private QueryCounter queryCounter;
+    @Autowired
+    private FilmService filmService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private FilmStorage filmStorage;
+    @Autowired
+    private UserStorage userStorage;
+    @Autowired
+    private MpaStorage mpaStorage;
+    @Autowired
+    private GenreStorage genreStorage;
+    @Autowired
+    private FilmSimilarityIndex filmSimilarityIndex;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @TestConfiguration
+    static class QueryCounterConfig {
+        @Bean
+        static QueryCounter queryCounter() {
+            return new QueryCounter();
+        }
+    }
+
+    @BeforeEach
+    void beforeEach() {
+        filmStorage.deleteAll();
+        userStorage.deleteAll();
+    }
+
+    @Test
+    public void readPathsUseFixedNumberOfQueries() {
+        List<User> users = createUsers(5);
+        createFilms(2, users);
+
+        long getFilmsSmall = countQueries(() -> assertEquals(2, filmStorage.getFilms().size()));
+        long getTopSmall = countQueries(() -> assertEquals(2, filmStorage.getTopPopularFilms(100).size()));
+
+        createFilms(40, users);
+
+        long getFilmsLarge = countQueries(() -> assertEquals(42, filmStorage.getFilms().size()));
+        long getTopLarge = countQueries(() -> assertEquals(42, filmStorage.getTopPopularFilms(100).size()));
+
+        assertEquals(getFilmsSmall, getFilmsLarge);
+        assertEquals(getTopSmall, getTopLarge);
+        assertTrue(getFilmsLarge <= 4, "Фильмы должны загружаться не более чем 4 запросами");
+        assertTrue(getTopLarge <= 4, "Популярные фильмы должны загружаться не более чем 4 запросами");
+    }
+
+    @Test
+    public void getFilmByIdLoadsLikesAndGenres() {
+        List<User> users = createUsers(3);
+        Film film = createFilms(1, users).get(0);
+
+        long queries = countQueries(() -> {
+            Film repo = filmStorage.getFilmById(film.getId()).orElseThrow();
+            assertEquals(3, repo.getUserIdsLiked().size());
+            assertEquals(2, repo.getGenres().size());
+            assertEquals("G", repo.getMpa().getName());
+        });
+        assertTrue(queries <= 4, "Фильм должен загружаться не более чем 4 запросами");
+    }
+
+    @Test
+    public void fieldSetSkipsLikesAndGenres() throws Exception {
+        List<User> users = createUsers(3);
+        Film film = createFilms(1, users).get(0);
+        FieldSet fields = FieldSet.parse("id, name,likesCount");
+
+        List<Film> projected = new ArrayList<>();
+        long queries = countQueries(() -> projected.add(filmService.getFilmById(film.getId(), fields)));
+        assertEquals(3, projected.get(0).getLikesCount());
+        assertTrue(projected.get(0).getUserIdsLiked().isEmpty());
+        assertTrue(projected.get(0).getGenres().isEmpty());
+        assertEquals(1, queries, "Без лайков и жанров фильм загружается одним запросом");
+        assertEquals(3, filmService.getTopPopularFilms(10, null, null, fields).iterator().next().getLikesCount());
+        User user = userService.getUserById(users.get(0).getId(), FieldSet.parse("id,friendsCount"));
+        assertEquals(0, user.getFriendsCount());
+        assertThrows(ValidationException.class, () -> filmService.getFilmById(film.getId(), FieldSet.parse("id,secret")));
+
+        //без параметра выводятся прежние поля, числа лайков и друзей - только по запросу
+        Film full = filmService.getFilmById(film.getId());
+        assertNull(full.getLikesCount());
+        String fullJson = objectMapper.writeValueAsString(full);
+        assertTrue(fullJson.contains("\"userIdsLiked\""));
+        assertFalse(fullJson.contains("likesCount"));
+        assertFalse(objectMapper.writeValueAsString(userService.getUserById(users.get(0).getId()))
+                .contains("friendsCount"));
+        String json = objectMapper.writer(new SimpleFilterProvider().addFilter(FieldSet.FILTER,
+                SimpleBeanPropertyFilter.filterOutAllExcept(fields.names()))).writeValueAsString(projected.get(0));
+        assertEquals("{\"id\":" + film.getId() + ",\"name\":\"film 0\",\"likesCount\":3}", json);
+    }
+
+    @Test
+    public void referenceDataIsServedFromCache() {
+        long queries = countQueries(() -> {
+            assertEquals(5, mpaStorage.getMpa().size());
+            assertEquals(6, genreStorage.getGenres().size());
+            assertSame(mpaStorage.getMpaById(1).orElseThrow(), mpaStorage.getMpaById(1).orElseThrow());
+            assertTrue(genreStorage.getGenreById(100).isEmpty());
+        });
+        assertEquals(0, queries);
+    }
+
+    @Test
+    public void likeAndFriendWritesUseSingleStatement() {
+        List<User> users = createUsers(20);
+        Film film = createFilms(1, users).get(0);
+        User newUser = createUsers(1).get(0);
+
+        //проверка фильма и пользователя не читает их из БД, лайк и друг пишутся одним выражением
+        assertEquals(1, countQueries(() -> filmService.addLikeToFilm(film.getId(), newUser.getId())));
+        assertEquals(1, countQueries(() -> filmService.addLikeToFilm(film.getId(), newUser.getId())));
+        assertEquals(1, countQueries(() -> filmService.deleteLikeFromFilm(film.getId(), newUser.getId())));
+        assertEquals(1, countQueries(() -> userService.addFriend(users.get(0).getId(), newUser.getId())));
+        assertEquals(1, countQueries(() -> userService.deleteFriend(users.get(0).getId(), newUser.getId())));
+
+        assertTrue(filmStorage.isFilmExist(film.getId()));
+        assertTrue(userStorage.isUserExist(newUser.getId()));
+        filmStorage.deleteFilm(film.getId());
+        assertFalse(filmStorage.isFilmExist(film.getId()));
+        assertEquals(0, countQueries(() -> assertFalse(userStorage.isUserExist(-1L))));
+    }
+
+    @Test
+    public void friendReadsOnlyLoadUserRows() {
+        List<User> users = createUsers(6);
+        Long first = users.get(0).getId();
+        Long second = users.get(1).getId();
+        for (int i = 2; i < 6; i++) {
+            userService.addFriend(first, users.get(i).getId());
+        }
+        userService.addFriend(second, users.get(3).getId());
+        userService.addFriend(second, users.get(5).getId());
+
+        //друзья, общие друзья и предложения друзей считаются по графу в памяти,
+        //из БД читаются только строки users
+        assertEquals(1, countQueries(() -> assertEquals(
+                List.of(users.get(3).getId(), users.get(5).getId()),
+                userStorage.getIntersectingFriends(first, second).stream().map(User::getId).toList())));
+        assertEquals(1, countQueries(() -> assertEquals(4, userStorage.getFriendsOfUser(first).size())));
+        assertEquals(1, countQueries(() -> assertEquals(
+                List.of(users.get(4).getId(), users.get(5).getId()),
+                userStorage.getFriendsOfUserAfter(first, users.get(3).getId(), 10).stream()
+                        .map(User::getId).toList())));
+        assertEquals(1, countQueries(() -> assertEquals(Set.of(users.get(3).getId(), users.get(5).getId()),
+                userStorage.getUserById(second).orElseThrow().getFriendsIds())));
+        assertEquals(0, countQueries(() -> assertTrue(userStorage.isFriendAlreadyExist(second, users.get(5).getId()))));
+        userService.addFriend(users.get(3).getId(), users.get(4).getId());
+        assertEquals(1, countQueries(() -> assertEquals(List.of(users.get(4).getId()),
+                userStorage.getFriendSuggestions(second, 10).stream().map(User::getId).toList())));
+
+        //удалённый пользователь исчезает из друзей всех, у кого он был в друзьях
+        userStorage.deleteUser(users.get(5).getId());
+        assertEquals(List.of(users.get(3).getId()),
+                userStorage.getIntersectingFriends(first, second).stream().map(User::getId).toList());
+        assertFalse(userStorage.isFriendAlreadyExist(second, users.get(5).getId()));
+    }
+
+    @Test
+    public void recommendationsOnlyLoadRecommendedFilms() {
+        List<User> users = createUsers(2);
+        List<Film> films = createFilms(3, List.of());
+        filmService.addLikeToFilm(films.get(0).getId(), users.get(0).getId());
+        filmService.addLikeToFilm(films.get(0).getId(), users.get(1).getId());
+        filmService.addLikeToFilm(films.get(1).getId(), users.get(1).getId());
+        filmService.addLikeToFilm(films.get(2).getId(), users.get(1).getId());
+
+        //подбор идёт по индексу лайков в памяти, из БД читаются только рекомендованные фильмы
+        long queries = countQueries(() -> assertEquals(2,
+                filmService.getRecommendedFilms(users.get(0).getId(), null).size()));
+        assertTrue(queries <= 4, "Рекомендации должны загружаться не более чем 4 запросами");
+    }
+
+    @Test
+    public void similarFilmsOnlyLoadFoundFilms() {
+        List<User> users = createUsers(2);
+        List<Film> films = createFilms(2, users);
+        filmSimilarityIndex.refreshChanged();
+
+        //кандидаты берутся из индекса похожих фильмов в памяти, из БД читаются только найденные
+        long queries = countQueries(() -> assertEquals(List.of(films.get(1).getId()),
+                filmService.getSimilarFilms(films.get(0).getId(), null).stream().map(Film::getId).toList()));
+        assertTrue(queries <= 4, "Похожие фильмы должны загружаться не более чем 4 запросами");
+    }
+
+    private long countQueries(Runnable action) {
+        queryCounter.reset();
+        action.run();
+        return queryCounter.getCount();
+    }
+
+    private List<User> createUsers(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> userStorage.createUser(User.builder()
+                        .name("user " + i)
+                        .birthday(LocalDate.of(2000, 1, 1))
+                        .email("user" + i + "@yandex.ru")
+                        .login("login" + i)
+                        .friendsIds(new HashSet<>())
+                        .build()))
+                .toList();
+    }
+
+    private List<Film> createFilms(int count, List<User> users) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> {
+                    Film film = filmStorage.createFilm(Film.builder()
+                            .name("film " + i)
+                            .description("descr")
+                            .releaseDate(LocalDate.of(2001, 1, 1))
+                            .duration(100)
+                            .mpa(mpaStorage.getMpaById(1).orElseThrow())
+                            .userIdsLiked(new HashSet<>())
+                            .genres(Set.of(genreStorage.getGenreById(1).orElseThrow(),
+                                    genreStorage.getGenreById(2).orElseThrow()))
+                            .build());
+                    for (User user : users) {
+                        filmStorage.addLikeToFilm(film.getId(), user.getId());
+                    }
+                    return film;
+                })
+                .toList();
+    }
+}
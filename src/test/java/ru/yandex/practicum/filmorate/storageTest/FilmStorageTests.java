@@ -5,19 +5,36 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchOperationResult;
+import ru.yandex.practicum.filmorate.model.BatchOperationType;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.model.Page;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.interfaces.FilmService;
 import ru.yandex.practicum.filmorate.service.interfaces.UserService;
 import ru.yandex.practicum.filmorate.storage.dao.MpaDbStorage;
+import ru.yandex.practicum.filmorate.storage.index.FilmLikesIndex;
+import ru.yandex.practicum.filmorate.storage.index.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.index.FilmSimilarityIndex;
 import ru.yandex.practicum.filmorate.storage.interfaces.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.interfaces.GenreStorage;
 import ru.yandex.practicum.filmorate.storage.interfaces.UserStorage;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -36,6 +53,14 @@ class FilmStorageTests {
     private MpaDbStorage mpaStorage;
     @Autowired
     private GenreStorage genreStorage;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private FilmPopularityIndex filmPopularityIndex;
+    @Autowired
+    private FilmLikesIndex filmLikesIndex;
+    @Autowired
+    private FilmSimilarityIndex filmSimilarityIndex;
 
     @BeforeEach
     void beforeEach() {
@@ -91,6 +116,71 @@ class FilmStorageTests {
         assertEquals(film2Created.getId(), repo.get(1).getId());
     }
 
+    @Test
+    public void getFilmsByCursor() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Film film = Film.builder()
+                    .name("film " + i)
+                    .description("descr")
+                    .releaseDate(LocalDate.of(2001, 01, 01))
+                    .duration(100)
+                    .userIdsLiked(new HashSet<>())
+                    .genres(new HashSet<>())
+                    .build();
+            ids.add(filmService.createFilm(film).getId());
+        }
+
+        List<Long> loaded = new ArrayList<>();
+        Long cursor = null;
+        do {
+            Page<Film> page = filmService.getFilms(cursor, 2);
+            assertTrue(page.items().size() <= 2);
+            page.items().forEach(film -> loaded.add(film.getId()));
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        assertEquals(ids, loaded);
+        assertThrows(ValidationException.class, () -> filmService.getFilms(null, 0));
+    }
+
+    @Test
+    public void createFilmsAddsThemToIndexes() {
+        User user = userService.createUser(User.builder()
+                .name("user")
+                .birthday(LocalDate.now())
+                .email("user@yandex.ru")
+                .login("loginUser")
+                .friendsIds(new HashSet<>())
+                .build());
+        Genre unknownGenre = Genre.builder().id(999).build();
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            films.add(Film.builder()
+                    .name("film " + i)
+                    .description("descr")
+                    .releaseDate(LocalDate.of(2001, 01, 01))
+                    .duration(100)
+                    .userIdsLiked(new HashSet<>(Set.of(user.getId())))
+                    .genres(new HashSet<>(Set.of(genreStorage.getGenreById(1).get(), unknownGenre)))
+                    .build());
+        }
+
+        filmStorage.createFilms(films);
+        Long first = films.get(0).getId();
+        Long second = films.get(1).getId();
+
+        assertEquals(List.of(first, second), filmPopularityIndex.getTopFilmIds(10, 1, 2001));
+        assertTrue(filmPopularityIndex.getTopFilmIds(10, 999, null).isEmpty());
+        assertEquals(1, filmPopularityIndex.getLikesCount(first));
+        assertArrayEquals(new long[]{user.getId()}, filmLikesIndex.getUsersOfFilm(first));
+        assertEquals(Set.of(user.getId()), filmStorage.getFilmById(first).get().getUserIdsLiked());
+        assertEquals(1, filmStorage.getFilmById(first).get().getGenres().size());
+        filmSimilarityIndex.refreshChanged();
+        assertArrayEquals(new long[]{second}, filmSimilarityIndex.findSimilar(first, 10));
+        assertEquals(List.of(first, second), filmService.searchFilms("film", null).stream().map(Film::getId).toList());
+    }
+
     @Test
     public void updateFilm() {
         Film film = Film.builder()
@@ -194,6 +284,51 @@ class FilmStorageTests {
         assertFalse(filmStorage.isLikeAlreadyExist(filmCreated.getId(), createdUser.getId()));
     }
 
+    @Test
+    public void applyLikeOperationsInBatch() {
+        Film film = Film.builder()
+                .name("Titanic")
+                .description("descr")
+                .releaseDate(LocalDate.of(2001, 01, 01))
+                .duration(200)
+                .userIdsLiked(new HashSet<>())
+                .genres(new HashSet<>())
+                .build();
+        Film filmCreated = filmService.createFilm(film);
+
+        User user = User.builder()
+                .name("user")
+                .birthday(LocalDate.now())
+                .email("user@yandex.ru")
+                .login("loginUser")
+                .friendsIds(new HashSet<>())
+                .build();
+        User user2 = user.toBuilder().name("user 2").build();
+        User createdUser = userService.createUser(user);
+        User createdUser2 = userService.createUser(user2);
+
+        Long filmId = filmCreated.getId();
+        List<LikeOperation> operations = List.of(
+                new LikeOperation(filmId, createdUser.getId(), BatchOperationType.ADD),
+                new LikeOperation(filmId, createdUser2.getId(), BatchOperationType.ADD),
+                new LikeOperation(filmId + 100, createdUser.getId(), BatchOperationType.ADD),
+                new LikeOperation(filmId, createdUser2.getId(), BatchOperationType.REMOVE),
+                new LikeOperation(filmId, null, BatchOperationType.ADD));
+
+        List<BatchOperationResult.Status> statuses = filmService.applyLikeOperations(operations).stream()
+                .map(BatchOperationResult::getStatus)
+                .toList();
+        assertEquals(List.of(BatchOperationResult.Status.OK,
+                BatchOperationResult.Status.OK,
+                BatchOperationResult.Status.NOT_FOUND,
+                BatchOperationResult.Status.OK,
+                BatchOperationResult.Status.INVALID), statuses);
+
+        assertTrue(filmStorage.isLikeAlreadyExist(filmId, createdUser.getId()));
+        assertFalse(filmStorage.isLikeAlreadyExist(filmId, createdUser2.getId()));
+        assertEquals(1, filmPopularityIndex.getLikesCount(filmId));
+    }
+
     @Test
     public void getTop10PopularFilms() {
         Film film = Film.builder()
@@ -250,4 +385,446 @@ class FilmStorageTests {
         assertEquals(filmCreated.getId(), topFilms.get(0).getId());
         assertEquals(film2Created.getId(), topFilms.get(1).getId());
     }
+
+    @Test
+    public void topPopularFilmsMatchSqlUnderConcurrentLikes() throws Exception {
+        List<Long> filmIds = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            Film film = Film.builder()
+                    .name("film " + i)
+                    .description("descr")
+                    .releaseDate(LocalDate.of(2001, 01, 01))
+                    .duration(100)
+                    .userIdsLiked(new HashSet<>())
+                    .genres(new HashSet<>())
+                    .build();
+            filmIds.add(filmService.createFilm(film).getId());
+        }
+
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < 15; i++) {
+            User user = User.builder()
+                    .name("user " + i)
+                    .birthday(LocalDate.now())
+                    .email("user" + i + "@yandex.ru")
+                    .login("login" + i)
+                    .friendsIds(new HashSet<>())
+                    .build();
+            userIds.add(userService.createUser(user).getId());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                futures.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < 200; i++) {
+                        //первые фильмы получают лайки чаще остальных
+                        Long filmId = filmIds.get(Math.min(random.nextInt(filmIds.size()), random.nextInt(filmIds.size())));
+                        Long userId = userIds.get(random.nextInt(userIds.size()));
+                        if (random.nextInt(3) == 0)
+                            filmStorage.removeLikeFromFilm(filmId, userId);
+                        else
+                            filmStorage.addLikeToFilm(filmId, userId);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        List<Long> expected = jdbcTemplate.queryForList("SELECT f.id FROM films AS f" +
+                " LEFT JOIN film_likes AS l ON f.id = l.film_id" +
+                " GROUP BY f.id" +
+                " ORDER BY COUNT(l.user_id) DESC, f.id", Long.class);
+        List<Long> actual = filmStorage.getTopPopularFilms(filmIds.size()).stream().map(Film::getId).toList();
+        assertEquals(expected, actual);
+
+        for (Long filmId : filmIds) {
+            Integer likes = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM film_likes WHERE film_id = ?",
+                    Integer.class, filmId);
+            assertEquals(likes, filmPopularityIndex.getLikesCount(filmId));
+        }
+    }
+
+    @Test
+    public void filmUpdatesAndConcurrentLikesKeepIndexesInSync() throws Exception {
+        Film film = filmService.createFilm(Film.builder()
+                .name("film")
+                .description("descr")
+                .releaseDate(LocalDate.of(2001, 01, 01))
+                .duration(100)
+                .userIdsLiked(new HashSet<>())
+                .genres(new HashSet<>())
+                .build());
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            userIds.add(userService.createUser(User.builder()
+                    .name("user " + i)
+                    .birthday(LocalDate.now())
+                    .email("user" + i + "@yandex.ru")
+                    .login("login" + i)
+                    .friendsIds(new HashSet<>())
+                    .build()).getId());
+        }
+
+        //одни потоки ставят и снимают лайки, другие перезаписывают лайки фильма целиком
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 6; thread++) {
+                boolean updater = thread < 2;
+                futures.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < 100; i++) {
+                        if (updater) {
+                            Set<Long> liked = new HashSet<>();
+                            for (Long userId : userIds) {
+                                if (random.nextBoolean())
+                                    liked.add(userId);
+                            }
+                            filmStorage.updateFilm(film.toBuilder().userIdsLiked(liked).build());
+                            continue;
+                        }
+                        Long userId = userIds.get(random.nextInt(userIds.size()));
+                        if (random.nextInt(3) == 0)
+                            filmStorage.removeLikeFromFilm(film.getId(), userId);
+                        else
+                            filmStorage.addLikeToFilm(film.getId(), userId);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        List<Long> likedInDb = jdbcTemplate.queryForList(
+                "SELECT user_id FROM film_likes WHERE film_id = ? ORDER BY user_id", Long.class, film.getId());
+        assertEquals(likedInDb.size(), filmPopularityIndex.getLikesCount(film.getId()));
+        assertArrayEquals(likedInDb.stream().mapToLong(Long::longValue).toArray(),
+                filmLikesIndex.getUsersOfFilm(film.getId()));
+        for (Long userId : userIds) {
+            assertEquals(likedInDb.contains(userId), filmLikesIndex.hasLike(film.getId(), userId));
+        }
+    }
+
+    @Test
+    public void topPopularFilmsByGenreAndYear() {
+        Genre comedy = genreStorage.getGenreById(1).orElseThrow();
+        Genre drama = genreStorage.getGenreById(2).orElseThrow();
+        Film comedy2024 = createRankedFilm("comedy 2024", 2024, Set.of(comedy));
+        Film drama2024 = createRankedFilm("drama 2024", 2024, Set.of(drama));
+        Film comedy2001 = createRankedFilm("comedy 2001", 2001, Set.of(comedy, drama));
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            userIds.add(userService.createUser(User.builder()
+                    .name("user " + i)
+                    .birthday(LocalDate.now())
+                    .email("user" + i + "@yandex.ru")
+                    .login("login" + i)
+                    .friendsIds(new HashSet<>())
+                    .build()).getId());
+        }
+        //3 лайка у comedy2001, 2 у drama2024, 1 у comedy2024
+        for (int i = 0; i < 3; i++) {
+            filmService.addLikeToFilm(comedy2001.getId(), userIds.get(i));
+        }
+        filmService.addLikeToFilm(drama2024.getId(), userIds.get(0));
+        filmService.addLikeToFilm(drama2024.getId(), userIds.get(1));
+        filmService.addLikeToFilm(comedy2024.getId(), userIds.get(0));
+
+        assertEquals(List.of(comedy2001.getId(), comedy2024.getId()), topIds(comedy.getId(), null));
+        assertEquals(List.of(drama2024.getId(), comedy2024.getId()), topIds(null, 2024));
+        assertEquals(List.of(comedy2024.getId()), topIds(comedy.getId(), 2024));
+        assertEquals(List.of(), topIds(null, 1990));
+
+        //снятые лайки, новые жанры и удаление фильма меняют рейтинги жанров и годов
+        filmService.deleteLikeFromFilm(drama2024.getId(), userIds.get(0));
+        filmService.deleteLikeFromFilm(drama2024.getId(), userIds.get(1));
+        assertEquals(List.of(comedy2024.getId(), drama2024.getId()), topIds(null, 2024));
+        comedy2024.setGenres(Set.of(drama));
+        comedy2024.setUserIdsLiked(new HashSet<>(Set.of(userIds.get(0))));
+        filmService.updateFilm(comedy2024);
+        assertEquals(List.of(comedy2001.getId(), comedy2024.getId(), drama2024.getId()), topIds(drama.getId(), null));
+        filmService.deleteFilm(comedy2001.getId());
+        assertEquals(List.of(comedy2024.getId()), topIds(comedy.getId(), null));
+        //после перечитывания из БД рейтинги те же
+        filmPopularityIndex.reload();
+        assertEquals(List.of(comedy2024.getId(), drama2024.getId()), topIds(drama.getId(), 2024));
+        assertEquals(List.of(comedy2024.getId()), topIds(comedy.getId(), null));
+
+        assertThrows(NotFoundException.class, () -> filmService.getTopPopularFilms(10, 100, null));
+    }
+
+    @Test
+    public void recommendationsComeFromUsersWithSimilarLikes() {
+        List<User> users = createUsers(4);
+        List<Film> films = createFilms(5);
+        Long first = users.get(0).getId();
+        Long similar = users.get(1).getId();
+        Long other = users.get(2).getId();
+        //similar лайкал два фильма из тех же, что first, other - один
+        for (int i : new int[]{0, 1}) {
+            filmService.addLikeToFilm(films.get(i).getId(), first);
+            filmService.addLikeToFilm(films.get(i).getId(), similar);
+        }
+        filmService.addLikeToFilm(films.get(2).getId(), similar);
+        filmService.addLikeToFilm(films.get(0).getId(), other);
+        filmService.addLikeToFilm(films.get(3).getId(), other);
+        filmService.addLikeToFilm(films.get(2).getId(), other);
+
+        assertEquals(List.of(films.get(2).getId(), films.get(3).getId()),
+                filmService.getRecommendedFilms(first, null).stream().map(Film::getId).toList());
+        assertEquals(List.of(films.get(2).getId()),
+                filmService.getRecommendedFilms(first, 1).stream().map(Film::getId).toList());
+
+        //снятый лайк и удалённый пользователь перестают влиять на рекомендации
+        filmService.deleteLikeFromFilm(films.get(2).getId(), similar);
+        userStorage.deleteUser(other);
+        assertTrue(filmService.getRecommendedFilms(first, null).isEmpty());
+        assertTrue(filmService.getRecommendedFilms(users.get(3).getId(), null).isEmpty());
+        assertThrows(ValidationException.class, () -> filmService.getRecommendedFilms(first, 0));
+    }
+
+    @Test
+    public void similarFilmsFollowLikeChanges() {
+        List<User> users = createUsers(6);
+        List<Film> films = createFilms(3);
+        Film first = films.get(0);
+        Film similar = films.get(1);
+        Film unrelated = films.get(2);
+        for (int i = 0; i < 4; i++) {
+            filmService.addLikeToFilm(first.getId(), users.get(i).getId());
+        }
+        filmService.addLikeToFilm(similar.getId(), users.get(0).getId());
+        filmService.addLikeToFilm(unrelated.getId(), users.get(4).getId());
+        filmService.addLikeToFilm(unrelated.getId(), users.get(5).getId());
+        filmSimilarityIndex.refreshChanged();
+
+        //новые лайки обновляют подпись сразу, без фонового пересчёта
+        for (int i = 1; i < 4; i++) {
+            filmService.addLikeToFilm(similar.getId(), users.get(i).getId());
+        }
+        assertEquals(List.of(similar.getId()),
+                filmService.getSimilarFilms(first.getId(), null).stream().map(Film::getId).toList());
+
+        //снятые лайки учитываются после пересчёта изменённых фильмов
+        for (int i = 0; i < 4; i++) {
+            filmService.deleteLikeFromFilm(similar.getId(), users.get(i).getId());
+        }
+        filmSimilarityIndex.refreshChanged();
+        assertTrue(filmService.getSimilarFilms(first.getId(), null).isEmpty());
+        assertThrows(NotFoundException.class, () -> filmService.getSimilarFilms(-1L, null));
+    }
+
+    @Test
+    public void filmDeletedDuringRebuildIsNotSimilar() {
+        //индексы без фонового потока: фильм удаляется, когда его подпись уже построена перестроением
+        long first = 1;
+        long deleted = 2;
+        FilmSimilarityIndex[] similarityIndex = new FilmSimilarityIndex[1];
+        boolean[] deleteDuringRebuild = new boolean[1];
+        FilmLikesIndex likesIndex = new FilmLikesIndex(jdbcTemplate, 100000, 50) {
+            @Override
+            public long[] getUsersOfFilm(long filmId) {
+                long[] users = super.getUsersOfFilm(filmId);
+                if (filmId == deleted && deleteDuringRebuild[0]) {
+                    deleteDuringRebuild[0] = false;
+                    removeFilm(deleted);
+                    similarityIndex[0].removeFilm(deleted);
+                }
+                return users;
+            }
+        };
+        similarityIndex[0] = new FilmSimilarityIndex(likesIndex, 16, 4, 10000,
+                Duration.ofHours(1), Duration.ofHours(1));
+        for (long userId = 1; userId <= 4; userId++) {
+            likesIndex.addLike(first, userId);
+            likesIndex.addLike(deleted, userId);
+        }
+        similarityIndex[0].rebuild();
+        assertArrayEquals(new long[]{deleted}, similarityIndex[0].findSimilar(first, 10));
+
+        deleteDuringRebuild[0] = true;
+        similarityIndex[0].rebuild();
+        assertFalse(deleteDuringRebuild[0]);
+        assertArrayEquals(new long[0], similarityIndex[0].findSimilar(first, 10));
+        assertArrayEquals(new long[0], similarityIndex[0].findSimilar(deleted, 10));
+    }
+
+    private Film createRankedFilm(String name, int year, Set<Genre> genres) {
+        return filmService.createFilm(Film.builder()
+                .name(name)
+                .description("descr")
+                .releaseDate(LocalDate.of(year, 6, 1))
+                .duration(100)
+                .userIdsLiked(new HashSet<>())
+                .genres(new HashSet<>(genres))
+                .build());
+    }
+
+    private List<Long> topIds(Integer genreId, Integer year) {
+        return filmService.getTopPopularFilms(10, genreId, year).stream().map(Film::getId).toList();
+    }
+
+    private List<User> createUsers(int count) {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            users.add(userService.createUser(User.builder()
+                    .name("user " + i)
+                    .birthday(LocalDate.of(2000, 1, 1))
+                    .email("user" + i + "@yandex.ru")
+                    .login("login" + i)
+                    .friendsIds(new HashSet<>())
+                    .build()));
+        }
+        return users;
+    }
+
+    private List<Film> createFilms(int count) {
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            films.add(createRankedFilm("film " + i, 2001, Set.of()));
+        }
+        return films;
+    }
+
+    @Test
+    public void concurrentLikesAndFriendsDoNotCreateDuplicates() throws Exception {
+        Film film = filmService.createFilm(Film.builder()
+                .name("film")
+                .description("descr")
+                .releaseDate(LocalDate.of(2001, 01, 01))
+                .duration(100)
+                .userIdsLiked(new HashSet<>())
+                .genres(new HashSet<>())
+                .build());
+
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            User user = User.builder()
+                    .name("user " + i)
+                    .birthday(LocalDate.now())
+                    .email("user" + i + "@yandex.ru")
+                    .login("login" + i)
+                    .friendsIds(new HashSet<>())
+                    .build();
+            userIds.add(userService.createUser(user).getId());
+        }
+
+        //все потоки одновременно ставят одни и те же лайки и добавляют одних и тех же друзей
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 50; i++) {
+                        for (Long userId : userIds) {
+                            filmStorage.addLikeToFilm(film.getId(), userId);
+                            if (!userId.equals(userIds.get(0)))
+                                userStorage.addFriend(userIds.get(0), userId);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(userIds.size(), jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM film_likes WHERE film_id = ?", Integer.class, film.getId()));
+        assertEquals(userIds.size(), filmPopularityIndex.getLikesCount(film.getId()));
+        assertEquals(userIds.size() - 1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM friendship WHERE user_id = ?", Integer.class, userIds.get(0)));
+    }
+
+    //в обход блокировок хранилища: одновременные вставки одной пары выражениями из FilmDbStorage
+    //и UserDbStorage, дубликаты может отсечь только уникальный ключ
+    @Test
+    public void uniqueKeysRejectConcurrentDuplicateInserts() throws Exception {
+        String insertLikeQuery = "INSERT INTO film_likes (film_id, user_id)" +
+                " SELECT ?, ? WHERE NOT EXISTS" +
+                " (SELECT 1 FROM film_likes WHERE film_id = ? AND user_id = ?)";
+        String insertFriendQuery = "INSERT INTO friendship (user_id, friend_id)" +
+                " SELECT ?, ? WHERE NOT EXISTS" +
+                " (SELECT 1 FROM friendship WHERE user_id = ? AND friend_id = ?)";
+        Film film = filmService.createFilm(Film.builder()
+                .name("film")
+                .description("descr")
+                .releaseDate(LocalDate.of(2001, 01, 01))
+                .duration(100)
+                .userIdsLiked(new HashSet<>())
+                .genres(new HashSet<>())
+                .build());
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            userIds.add(userService.createUser(User.builder()
+                    .name("user " + i)
+                    .birthday(LocalDate.now())
+                    .email("user" + i + "@yandex.ru")
+                    .login("login" + i)
+                    .friendsIds(new HashSet<>())
+                    .build()).getId());
+        }
+        Long userId = userIds.get(0);
+        Long friendId = userIds.get(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    int inserted = 0;
+                    for (int i = 0; i < 50; i++) {
+                        try {
+                            inserted += jdbcTemplate.update(insertLikeQuery, film.getId(), userId, film.getId(), userId);
+                        } catch (DuplicateKeyException ignored) {
+                            //пару вставил другой поток после проверки NOT EXISTS
+                        }
+                        try {
+                            inserted += jdbcTemplate.update(insertFriendQuery, userId, friendId, userId, friendId);
+                        } catch (DuplicateKeyException ignored) {
+                            //пару вставил другой поток после проверки NOT EXISTS
+                        }
+                    }
+                    return inserted;
+                }));
+            }
+            start.countDown();
+            int inserted = 0;
+            for (Future<Integer> future : futures) {
+                inserted += future.get();
+            }
+            assertEquals(2, inserted);
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM film_likes WHERE film_id = ?", Integer.class, film.getId()));
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM friendship WHERE user_id = ?", Integer.class, userId));
+        //вставка без проверки NOT EXISTS тоже не проходит: дубликат отсекает сам ключ
+        assertThrows(DuplicateKeyException.class, () -> jdbcTemplate.update(
+                "INSERT INTO film_likes (film_id, user_id) VALUES (?, ?)", film.getId(), userId));
+        assertThrows(DuplicateKeyException.class, () -> jdbcTemplate.update(
+                "INSERT INTO friendship (user_id, friend_id) VALUES (?, ?)", userId, friendId));
+    }
 }
@@ -0,0 +1,292 @@
+package ru.yandex.practicum.filmorate.storageTest;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.interfaces.FilmService;
+import ru.yandex.practicum.filmorate.service.interfaces.UserService;
+import ru.yandex.practicum.filmorate.storage.dao.LikeWriteBehindBuffer;
+import ru.yandex.practicum.filmorate.storage.index.EntityVersions;
+import ru.yandex.practicum.filmorate.storage.index.FilmLikesIndex;
+import ru.yandex.practicum.filmorate.storage.index.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.index.FilmSimilarityIndex;
+import ru.yandex.practicum.filmorate.storage.interfaces.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.interfaces.MpaStorage;
+import ru.yandex.practicum.filmorate.storage.interfaces.UserStorage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = FilmorateApplication.class, properties = {
+        "filmorate.likes.write-behind.enabled=true",
+        "filmorate.likes.write-behind.flush-size=100000",
+        "filmorate.likes.write-behind.flush-interval=1h",
+        "filmorate.likes.write-behind.log-dir=target/likes-log-test"})
+@AutoConfigureTestDatabase
+@Import(FilmStorageQueryCountTests.QueryCounterConfig.class)
+class LikeWriteBehindTests {
+    @Autowired
+    private QueryCounter queryCounter;
+    @Autowired
+    private FilmService filmService;
+    @Autowired
+    private FilmStorage filmStorage;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private UserStorage userStorage;
+    @Autowired
+    private MpaStorage mpaStorage;
+    @Autowired
+    private LikeWriteBehindBuffer likeWriteBehindBuffer;
+    @Autowired
+    private FilmPopularityIndex filmPopularityIndex;
+    @Autowired
+    private FilmLikesIndex filmLikesIndex;
+    @Autowired
+    private FilmSimilarityIndex filmSimilarityIndex;
+    @Autowired
+    private EntityVersions entityVersions;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void beforeEach() {
+        likeWriteBehindBuffer.flush();
+        filmStorage.deleteAll();
+        userStorage.deleteAll();
+    }
+
+    @Test
+    void pendingLikesAreVisibleBeforeFlushAndWrittenInOneBatch() {
+        Film first = createFilm("first");
+        Film second = createFilm("second");
+        User user1 = createUser("user1");
+        User user2 = createUser("user2");
+        User user3 = createUser("user3");
+
+        filmService.addLikeToFilm(second.getId(), user1.getId());
+        filmService.addLikeToFilm(second.getId(), user2.getId());
+        filmService.addLikeToFilm(first.getId(), user3.getId());
+        //лайк и его снятие до сброса не доходят до БД
+        filmService.addLikeToFilm(first.getId(), user1.getId());
+        filmService.deleteLikeFromFilm(first.getId(), user1.getId());
+
+        assertEquals(0, countLikeRows());
+        assertEquals(Set.of(user1.getId(), user2.getId()), filmService.getFilmById(second.getId()).getUserIdsLiked());
+        assertEquals(Set.of(user3.getId()), filmService.getFilmById(first.getId()).getUserIdsLiked());
+        assertTrue(filmStorage.isLikeAlreadyExist(second.getId(), user1.getId()));
+        assertFalse(filmStorage.isLikeAlreadyExist(first.getId(), user1.getId()));
+        assertEquals(List.of(second.getId(), first.getId()),
+                filmService.getTopPopularFilms(2).stream().map(Film::getId).toList());
+
+        assertEquals(3, likeWriteBehindBuffer.flush());
+        assertEquals(3, countLikeRows());
+        assertEquals(Set.of(user1.getId(), user2.getId()), filmService.getFilmById(second.getId()).getUserIdsLiked());
+        assertEquals(2, filmPopularityIndex.getLikesCount(second.getId()));
+
+        //снятие лайка после сброса записывается удалением
+        filmService.deleteLikeFromFilm(second.getId(), user1.getId());
+        assertEquals(Set.of(user2.getId()), filmService.getFilmById(second.getId()).getUserIdsLiked());
+        assertEquals(1, likeWriteBehindBuffer.flush());
+        assertEquals(2, countLikeRows());
+    }
+
+    @Test
+    void acceptingLikesDoesNotQueryDatabase() {
+        Film film = createFilm("film");
+        User user = createUser("user1");
+
+        queryCounter.reset();
+        filmStorage.addLikeToFilm(film.getId(), user.getId());
+        filmStorage.removeLikeFromFilm(film.getId(), user.getId());
+        filmStorage.addLikeToFilm(film.getId(), user.getId());
+        assertEquals(0, queryCounter.getCount());
+
+        //пара уже в БД и не в буфере: её состояние берётся из индекса лайков
+        assertEquals(1, likeWriteBehindBuffer.flush());
+        queryCounter.reset();
+        filmStorage.addLikeToFilm(film.getId(), user.getId());
+        filmStorage.removeLikeFromFilm(film.getId(), user.getId());
+        assertEquals(0, queryCounter.getCount());
+        assertEquals(Boolean.FALSE, likeWriteBehindBuffer.getBufferedState(film.getId(), user.getId()));
+        assertEquals(1, likeWriteBehindBuffer.flush());
+        assertEquals(0, countLikeRows());
+    }
+
+    @Test
+    void deletedFilmOrUserWithPendingLikesLeavesNoTraces() {
+        Film kept = createFilm("kept");
+        Film deleted = createFilm("deleted");
+        User user1 = createUser("user1");
+        User user2 = createUser("user2");
+        filmService.addLikeToFilm(deleted.getId(), user1.getId());
+        filmService.addLikeToFilm(kept.getId(), user1.getId());
+        filmService.addLikeToFilm(kept.getId(), user2.getId());
+
+        filmService.deleteFilm(deleted.getId());
+        userService.deleteUser(user2.getId());
+
+        assertNull(likeWriteBehindBuffer.getBufferedState(deleted.getId(), user1.getId()));
+        assertEquals(0, likeWriteBehindBuffer.flush());
+        assertEquals(List.of(kept.getId()), filmPopularityIndex.getTopFilmIds(10));
+        assertEquals(1, filmPopularityIndex.getLikesCount(kept.getId()));
+        //запоздавшее изменение лайков удалённого фильма не возвращает его в рейтинг
+        filmPopularityIndex.changeLikes(deleted.getId(), -1);
+        assertEquals(List.of(kept.getId()), filmPopularityIndex.getTopFilmIds(10));
+    }
+
+    @Test
+    void fullBufferWritesLikesDirectly(@TempDir Path logDirectory) throws InterruptedException {
+        Film film = createFilm("film");
+        User user1 = createUser("user1");
+        User user2 = createUser("user2");
+
+        LikeWriteBehindBuffer small = new LikeWriteBehindBuffer(jdbcTemplate, transactionTemplate,
+                filmPopularityIndex, filmLikesIndex, filmSimilarityIndex, entityVersions, true, 1000, 1,
+                Duration.ofHours(1), logDirectory, true);
+        small.start();
+        try {
+            assertTrue(small.setLike(film.getId(), user1.getId(), true));
+            assertEquals(0, countLikeRows());
+            //буфер заполнен: следующая пара записывается в БД сразу, а пара из буфера меняется в нём
+            assertTrue(small.setLike(film.getId(), user2.getId(), true));
+            assertEquals(List.of(user2.getId()), jdbcTemplate.queryForList(
+                    "SELECT user_id FROM film_likes WHERE film_id = ?", Long.class, film.getId()));
+            assertNull(small.getBufferedState(film.getId(), user2.getId()));
+            assertTrue(small.setLike(film.getId(), user1.getId(), false));
+            assertNull(small.getBufferedState(film.getId(), user1.getId()));
+        } finally {
+            small.stop();
+        }
+        assertEquals(1, countLikeRows());
+    }
+
+    @Test
+    void interruptedRequestDoesNotBreakLog(@TempDir Path directory) throws Exception {
+        Film film = createFilm("film");
+        User user1 = createUser("user1");
+        User user2 = createUser("user2");
+        Path logDirectory = directory.resolve("log");
+        Path crashedLogDirectory = directory.resolve("crashed");
+        Files.createDirectories(crashedLogDirectory);
+
+        LikeWriteBehindBuffer buffer = new LikeWriteBehindBuffer(jdbcTemplate, transactionTemplate,
+                filmPopularityIndex, filmLikesIndex, filmSimilarityIndex, entityVersions, true, 1000, 1000,
+                Duration.ofHours(1), logDirectory, true);
+        buffer.start();
+        try {
+            //прерывание потока закрывает канал текущего сегмента: операция не принимается
+            Thread.currentThread().interrupt();
+            try {
+                assertThrows(UncheckedIOException.class, () -> buffer.setLike(film.getId(), user1.getId(), true));
+            } finally {
+                Thread.interrupted();
+            }
+            assertNull(buffer.getBufferedState(film.getId(), user1.getId()));
+
+            //следующие операции пишутся в новый сегмент и переживают сбой
+            assertTrue(buffer.setLike(film.getId(), user2.getId(), true));
+            copyLog(logDirectory, crashedLogDirectory);
+        } finally {
+            buffer.stop();
+        }
+        jdbcTemplate.update("DELETE FROM film_likes");
+
+        LikeWriteBehindBuffer restarted = new LikeWriteBehindBuffer(jdbcTemplate, transactionTemplate,
+                filmPopularityIndex, filmLikesIndex, filmSimilarityIndex, entityVersions, true, 1000, 1000,
+                Duration.ofHours(1), crashedLogDirectory, true);
+        restarted.start();
+        try {
+            assertEquals(List.of(user2.getId()), jdbcTemplate.queryForList(
+                    "SELECT user_id FROM film_likes WHERE film_id = ?", Long.class, film.getId()));
+        } finally {
+            restarted.stop();
+        }
+    }
+
+    @Test
+    void logIsReplayedAfterCrash(@TempDir Path crashedLogDirectory) throws Exception {
+        Film film = createFilm("premiere");
+        User user1 = createUser("user1");
+        User user2 = createUser("user2");
+        filmService.addLikeToFilm(film.getId(), user1.getId());
+        filmService.addLikeToFilm(film.getId(), user2.getId());
+        filmService.deleteLikeFromFilm(film.getId(), user2.getId());
+
+        //состояние журнала на момент сбоя: операции приняты, но в БД не записаны
+        copyLog(Path.of("target/likes-log-test"), crashedLogDirectory);
+        assertEquals(0, countLikeRows());
+
+        LikeWriteBehindBuffer restarted = new LikeWriteBehindBuffer(jdbcTemplate, transactionTemplate,
+                filmPopularityIndex, filmLikesIndex, filmSimilarityIndex, entityVersions, true, 1000, 1000, Duration.ofHours(1),
+                crashedLogDirectory, true);
+        restarted.start();
+        try {
+            assertEquals(List.of(user1.getId()), jdbcTemplate.queryForList(
+                    "SELECT user_id FROM film_likes WHERE film_id = ?", Long.class, film.getId()));
+            assertEquals(1, filmPopularityIndex.getLikesCount(film.getId()));
+            assertArrayEquals(new long[]{user1.getId()}, filmLikesIndex.getUsersOfFilm(film.getId()));
+        } finally {
+            restarted.stop();
+        }
+        try (Stream<Path> files = Files.list(crashedLogDirectory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    private void copyLog(Path from, Path to) throws IOException {
+        try (Stream<Path> files = Files.list(from)) {
+            for (Path file : files.toList()) {
+                Files.copy(file, to.resolve(file.getFileName()));
+            }
+        }
+    }
+
+    private int countLikeRows() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM film_likes", Integer.class);
+    }
+
+    private Film createFilm(String name) {
+        return filmService.createFilm(Film.builder()
+                .name(name)
+                .description("descr")
+                .releaseDate(LocalDate.of(2001, 1, 1))
+                .duration(100)
+                .mpa(mpaStorage.getMpaById(1).get())
+                .userIdsLiked(new HashSet<>())
+                .genres(new HashSet<>())
+                .build());
+    }
+
+    private User createUser(String login) {
+        return userService.createUser(User.builder()
+                .email(login + "@mail.ru")
+                .login(login)
+                .name(login)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .friendsIds(new HashSet<>())
+                .build());
+    }
+}
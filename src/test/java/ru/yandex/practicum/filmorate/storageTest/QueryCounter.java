@@ -0,0 +1,112 @@
+package ru.yandex.practicum.filmorate.storageTest;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+//оборачивает DataSource контекста и считает подготовленные и выполненные SQL-выражения;
+//текст подготовленных выражений запоминается вместе с последними значениями параметров
+public class QueryCounter implements BeanPostProcessor {
+    private final AtomicLong statements = new AtomicLong();
+    private final List<RecordedStatement> recorded = new CopyOnWriteArrayList<>();
+
+    public record RecordedStatement(String sql, Map<Integer, Object> parameters) {
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource)
+            return new CountingDataSource(dataSource);
+        return bean;
+    }
+
+    public void reset() {
+        statements.set(0);
+        recorded.clear();
+    }
+
+    public long getCount() {
+        return statements.get();
+    }
+
+    public List<RecordedStatement> getRecorded() {
+        return List.copyOf(recorded);
+    }
+
+    private class CountingDataSource extends DelegatingDataSource {
+        CountingDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return countingConnection(super.getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return countingConnection(super.getConnection(username, password));
+        }
+
+        private Connection countingConnection(Connection connection) {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        String name = method.getName();
+                        if (name.equals("prepareStatement") || name.equals("prepareCall") || name.equals("createStatement"))
+                            statements.incrementAndGet();
+                        Object result = invoke(connection, method, args);
+                        if (name.equals("prepareStatement"))
+                            return recordingStatement((PreparedStatement) result, (String) args[0]);
+                        if (name.equals("createStatement"))
+                            return recordingStatement((Statement) result);
+                        return result;
+                    });
+        }
+
+        private PreparedStatement recordingStatement(PreparedStatement statement, String sql) {
+            Map<Integer, Object> parameters = new TreeMap<>();
+            recorded.add(new RecordedStatement(sql, parameters));
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    (proxy, method, args) -> {
+                        if (method.getName().startsWith("set") && args != null && args.length >= 2
+                                && args[0] instanceof Integer index)
+                            parameters.put(index, method.getName().equals("setNull") ? null : args[1]);
+                        return invoke(statement, method, args);
+                    });
+        }
+
+        //у выражений без параметров текст передаётся при выполнении
+        private Statement recordingStatement(Statement statement) {
+            return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(),
+                    new Class<?>[]{Statement.class},
+                    (proxy, method, args) -> {
+                        if (method.getName().startsWith("execute") && args != null && args[0] instanceof String sql)
+                            recorded.add(new RecordedStatement(sql, Map.of()));
+                        return invoke(statement, method, args);
+                    });
+        }
+
+        private Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getTargetException();
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package ru.yandex.practicum.filmorate.storageTest;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.storage.dao.SchemaInitializer;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = FilmorateApplication.class)
+@AutoConfigureTestDatabase
+class SchemaInitializerTests {
+    @Autowired
+    private SchemaInitializer schemaInitializer;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void missingVersionsAreAppliedOnce() {
+        assertEquals(List.of(1, 2, 3), selectVersions());
+
+        //версии 3 нет: при следующем старте её индекс создаётся заново
+        jdbcTemplate.update("DROP INDEX idx_film_likes_user_film");
+        jdbcTemplate.update("DELETE FROM schema_version WHERE version = 3");
+        schemaInitializer.initializeDatabase();
+        assertEquals(List.of(1, 2, 3), selectVersions());
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM INFORMATION_SCHEMA.INDEXES" +
+                " WHERE INDEX_NAME = 'IDX_FILM_LIKES_USER_FILM'", Integer.class));
+
+        //версия 2 уже применена: удаление дубликатов при старте не выполняется
+        jdbcTemplate.update("ALTER TABLE friendship DROP CONSTRAINT uq_friendship_user_friend");
+        try {
+            jdbcTemplate.update("INSERT INTO users (email, login, birthday) VALUES ('a@mail.ru', 'a', '1990-01-01')");
+            Long userId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM users", Long.class);
+            jdbcTemplate.update("INSERT INTO friendship (user_id, friend_id) VALUES (?, ?), (?, ?)",
+                    userId, userId, userId, userId);
+            schemaInitializer.initializeDatabase();
+            assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM friendship WHERE user_id = ?",
+                    Integer.class, userId));
+            jdbcTemplate.update("DELETE FROM users WHERE id = ?", userId);
+        } finally {
+            jdbcTemplate.update("ALTER TABLE friendship ADD CONSTRAINT IF NOT EXISTS uq_friendship_user_friend" +
+                    " UNIQUE (user_id, friend_id)");
+        }
+    }
+
+    private List<Integer> selectVersions() {
+        return jdbcTemplate.queryForList("SELECT version FROM schema_version ORDER BY version", Integer.class);
+    }
+}
@@ -0,0 +1,186 @@
+package ru.yandex.practicum.filmorate.storageTest;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.model.BatchOperationType;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FriendshipOperation;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.dao.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.dao.UserDbStorage;
+import ru.yandex.practicum.filmorate.storage.index.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.interfaces.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.interfaces.MpaStorage;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//выполняет все запросы хранилищ, затем для каждого запроса строит план через EXPLAIN
+//с теми же параметрами и проверяет, что таблицы читаются по индексам
+@SpringBootTest(classes = FilmorateApplication.class)
+@AutoConfigureTestDatabase
+@Import(StorageQueryPlanTests.QueryCounterConfig.class)
+class StorageQueryPlanTests {
+    //обращение к таблице в плане H2: за именем таблицы (и псевдонимом) следует комментарий с индексом;
+    //если после индекса нет условия, таблица читается целиком - по tableScan или по всему индексу
+    private static final Pattern TABLE_ACCESS = Pattern.compile(
+            "\"?PUBLIC\"?\\.\"?(\\w+)\"?(?:\\s+\"?\\w+\"?)?\\s+/\\* PUBLIC\\.[\\w.]+(:| \\*/)");
+    private static final Pattern FIRST_TABLE = Pattern.compile("\\bFROM\\s+(\\w+)", Pattern.CASE_INSENSITIVE);
+
+    @Autowired
+    private QueryCounter queryCounter;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private FilmDbStorage filmStorage;
+    @Autowired
+    private UserDbStorage userStorage;
+    @Autowired
+    private MpaStorage mpaStorage;
+    @Autowired
+    private GenreStorage genreStorage;
+    @Autowired
+    private FilmPopularityIndex filmPopularityIndex;
+
+    @TestConfiguration
+    static class QueryCounterConfig {
+        @Bean
+        static QueryCounter queryCounter() {
+            return new QueryCounter();
+        }
+    }
+
+    @BeforeEach
+    void beforeEach() {
+        filmStorage.deleteAll();
+        userStorage.deleteAll();
+    }
+
+    @Test
+    public void storageQueriesUseIndexes() {
+        queryCounter.reset();
+        runStorageQueries();
+
+        Map<String, Map<Integer, Object>> queries = new LinkedHashMap<>();
+        for (QueryCounter.RecordedStatement statement : queryCounter.getRecorded()) {
+            queries.putIfAbsent(statement.sql(), statement.parameters());
+        }
+        assertTrue(queries.size() > 30, "Должны быть выполнены все запросы хранилищ");
+
+        List<String> scans = new ArrayList<>();
+        queries.forEach((sql, parameters) -> {
+            String plan = explain(sql, parameters);
+            Matcher matcher = TABLE_ACCESS.matcher(plan);
+            while (matcher.find()) {
+                boolean fullScan = matcher.group(2).equals(" */");
+                if (fullScan && !matcher.group(1).equals(wholeTableOf(sql)))
+                    scans.add(sql + "\n" + plan);
+            }
+        });
+        assertTrue(scans.isEmpty(), "Запросы читают таблицы без индекса:\n" + String.join("\n\n", scans));
+    }
+
+    //запросы без WHERE по смыслу читают всю первую таблицу (списки, кэши, очистка),
+    //полный просмотр допустим только для неё, присоединяемые таблицы должны читаться по индексу
+    private String wholeTableOf(String sql) {
+        if (sql.toUpperCase().contains(" WHERE "))
+            return null;
+        Matcher matcher = FIRST_TABLE.matcher(sql);
+        return matcher.find() ? matcher.group(1).toUpperCase() : null;
+    }
+
+    private void runStorageQueries() {
+        mpaStorage.refreshCache();
+        genreStorage.refreshCache();
+        filmStorage.loadFilmIds();
+        userStorage.loadUserIds();
+        filmPopularityIndex.reload();
+
+        User user = userStorage.createUser(User.builder()
+                .name("user").birthday(LocalDate.of(2000, 1, 1)).email("user@yandex.ru").login("user")
+                .friendsIds(new HashSet<>()).build());
+        User friend = userStorage.createUser(User.builder()
+                .name("friend").birthday(LocalDate.of(2000, 1, 1)).email("friend@yandex.ru").login("friend")
+                .friendsIds(new HashSet<>(Set.of(user.getId()))).build());
+        Film film = filmStorage.createFilm(Film.builder()
+                .name("film").description("descr").releaseDate(LocalDate.of(2001, 1, 1)).duration(100)
+                .mpa(mpaStorage.getMpaById(1).orElseThrow())
+                .userIdsLiked(new HashSet<>(Set.of(user.getId())))
+                .genres(new HashSet<>(Set.of(genreStorage.getGenreById(1).orElseThrow())))
+                .build());
+        filmStorage.createFilms(List.of(Film.builder()
+                .name("film 2").description("descr").releaseDate(LocalDate.of(2001, 1, 1)).duration(100)
+                .userIdsLiked(new HashSet<>())
+                .genres(new HashSet<>(Set.of(genreStorage.getGenreById(2).orElseThrow())))
+                .build()));
+        userStorage.createUsers(List.of(User.builder()
+                .name("user 3").birthday(LocalDate.of(2000, 1, 1)).email("user3@yandex.ru").login("user3")
+                .friendsIds(new HashSet<>()).build()));
+
+        filmStorage.getFilms();
+        filmStorage.getFilmsAfter(0L, 10);
+        filmStorage.streamFilms(10, streamed -> {
+        });
+        filmStorage.getFilmById(film.getId());
+        filmStorage.getTopPopularFilms(10);
+        filmStorage.updateFilm(film);
+        filmStorage.addLikeToFilm(film.getId(), friend.getId());
+        filmStorage.removeLikeFromFilm(film.getId(), friend.getId());
+        filmStorage.isLikeAlreadyExist(film.getId(), user.getId());
+        filmStorage.applyLikeOperations(List.of(
+                new LikeOperation(film.getId(), friend.getId(), BatchOperationType.ADD),
+                new LikeOperation(film.getId(), user.getId(), BatchOperationType.REMOVE)));
+
+        userStorage.getUsers();
+        userStorage.getUsersAfter(0L, 10);
+        userStorage.getUserById(user.getId());
+        userStorage.updateUser(friend);
+        userStorage.addFriend(user.getId(), friend.getId());
+        userStorage.getFriendsOfUser(user.getId());
+        userStorage.getFriendsOfUserAfter(user.getId(), 0L, 10);
+        userStorage.getIntersectingFriends(user.getId(), friend.getId());
+        userStorage.isFriendAlreadyExist(user.getId(), friend.getId());
+        userStorage.removeFriend(user.getId(), friend.getId());
+        userStorage.applyFriendshipOperations(List.of(
+                new FriendshipOperation(user.getId(), friend.getId(), BatchOperationType.ADD),
+                new FriendshipOperation(friend.getId(), user.getId(), BatchOperationType.REMOVE)));
+
+        userStorage.deleteUser(friend.getId());
+        filmStorage.deleteFilm(film.getId());
+        filmStorage.deleteAll();
+        userStorage.deleteAll();
+    }
+
+    private String explain(String sql, Map<Integer, Object> parameters) {
+        return jdbcTemplate.execute((ConnectionCallback<String>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement("EXPLAIN " + sql)) {
+                for (Map.Entry<Integer, Object> parameter : parameters.entrySet()) {
+                    ps.setObject(parameter.getKey(), parameter.getValue());
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    StringBuilder plan = new StringBuilder();
+                    while (rs.next()) {
+                        plan.append(rs.getString(1));
+                    }
+                    return plan.toString();
+                }
+            }
+        });
+    }
+}
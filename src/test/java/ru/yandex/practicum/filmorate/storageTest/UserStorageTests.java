@@ -5,15 +5,25 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.interfaces.UserService;
+import ru.yandex.practicum.filmorate.storage.index.EntityVersions;
+import ru.yandex.practicum.filmorate.storage.index.FriendshipGraph;
 import ru.yandex.practicum.filmorate.storage.interfaces.UserStorage;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -24,6 +34,12 @@ public class UserStorageTests {
     private UserService userService;
     @Autowired
     private UserStorage userStorage;
+    @Autowired
+    private FriendshipGraph friendshipGraph;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private EntityVersions entityVersions;
 
     @BeforeEach
     void beforeEach() {
@@ -168,6 +184,28 @@ public class UserStorageTests {
         assertFalse(userStorage.isFriendAlreadyExist(createdUser.getId(), createdUser2.getId()));
     }
 
+    @Test
+    public void removingMissingFriendKeepsUserVersion() {
+        User user = userService.createUser(User.builder()
+                .name("user")
+                .birthday(LocalDate.now())
+                .email("user@yandex.ru")
+                .login("loginUser")
+                .friendsIds(new HashSet<>())
+                .build());
+        User friend = userService.createUser(user.toBuilder().id(null).name("friend").build());
+
+        long version = entityVersions.getUserVersion(user.getId());
+        userStorage.removeFriend(user.getId(), friend.getId());
+        assertEquals(version, entityVersions.getUserVersion(user.getId()));
+
+        userStorage.addFriend(user.getId(), friend.getId());
+        version = entityVersions.getUserVersion(user.getId());
+        userStorage.removeFriend(user.getId(), friend.getId());
+        assertNotEquals(version, entityVersions.getUserVersion(user.getId()));
+        assertArrayEquals(new long[0], friendshipGraph.getFriends(user.getId()));
+    }
+
     @Test
     public void getFriendsOfUser() {
         User user = User.builder()
@@ -208,4 +246,124 @@ public class UserStorageTests {
         assertEquals(createdFriend1.getId(), friends.get(0).getId());
         assertEquals(createdFriend2.getId(), friends.get(1).getId());
     }
+
+    @Test
+    public void friendSuggestionsAreRankedByMutualFriends() {
+        List<User> users = createUsers(7);
+        Long first = users.get(0).getId();
+        userService.addFriend(first, users.get(1).getId());
+        userService.addFriend(first, users.get(2).getId());
+        userService.addFriend(first, users.get(3).getId());
+        //users[4] - друг троих друзей, users[5] - двоих, users[3] уже в друзьях, users[6] - одного
+        for (int i = 1; i <= 3; i++) {
+            userService.addFriend(users.get(i).getId(), users.get(4).getId());
+            userService.addFriend(users.get(i).getId(), first);
+        }
+        userService.addFriend(users.get(1).getId(), users.get(5).getId());
+        userService.addFriend(users.get(2).getId(), users.get(5).getId());
+        userService.addFriend(users.get(1).getId(), users.get(3).getId());
+        userService.addFriend(users.get(2).getId(), users.get(6).getId());
+
+        assertEquals(List.of(users.get(4).getId(), users.get(5).getId(), users.get(6).getId()),
+                userService.getFriendSuggestions(first, null).stream().map(User::getId).toList());
+        assertEquals(List.of(users.get(4).getId()),
+                userService.getFriendSuggestions(first, 1).stream().map(User::getId).toList());
+        assertTrue(userService.getFriendSuggestions(users.get(6).getId(), null).isEmpty());
+        assertThrows(ValidationException.class, () -> userService.getFriendSuggestions(first, 0));
+    }
+
+    @Test
+    public void getUsersLoadsFriendsIds() {
+        User user = User.builder()
+                .name("user")
+                .birthday(LocalDate.now())
+                .email("user@yandex.ru")
+                .login("loginUser")
+                .friendsIds(new HashSet<>())
+                .build();
+
+        User friend1 = user.toBuilder().name("friend 1").build();
+        User friend2 = user.toBuilder().name("friend 2").build();
+
+        User createdUser = userService.createUser(user);
+        User createdFriend1 = userService.createUser(friend1);
+        User createdFriend2 = userService.createUser(friend2);
+
+        userService.addFriend(createdUser.getId(), createdFriend1.getId());
+        userService.addFriend(createdUser.getId(), createdFriend2.getId());
+        userService.addFriend(createdFriend1.getId(), createdFriend2.getId());
+
+        List<User> repo = userStorage.getUsers().stream().toList();
+        assertEquals(Set.of(createdFriend1.getId(), createdFriend2.getId()), repo.get(0).getFriendsIds());
+        assertEquals(Set.of(createdFriend2.getId()), repo.get(1).getFriendsIds());
+        assertTrue(repo.get(2).getFriendsIds().isEmpty());
+
+        List<User> friends = userStorage.getFriendsOfUser(createdUser.getId()).stream().toList();
+        assertEquals(Set.of(createdFriend2.getId()), friends.get(0).getFriendsIds());
+    }
+
+    @Test
+    public void deletedUsersLeaveNoEdgesUnderConcurrentFriendAdds() throws Exception {
+        List<Long> adderIds = new ArrayList<>();
+        List<Long> deletedIds = new ArrayList<>();
+        for (int i = 0; i < 208; i++) {
+            Long id = userService.createUser(User.builder()
+                    .name("user " + i)
+                    .birthday(LocalDate.now())
+                    .email("user" + i + "@yandex.ru")
+                    .login("login" + i)
+                    .friendsIds(new HashSet<>())
+                    .build()).getId();
+            if (i < 8)
+                adderIds.add(id);
+            else
+                deletedIds.add(id);
+        }
+
+        //одни потоки добавляют удаляемых пользователей в друзья, другой в это время их удаляет
+        ExecutorService executor = Executors.newFixedThreadPool(adderIds.size() + 1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Long adderId : adderIds) {
+                futures.add(executor.submit(() -> {
+                    for (Long friendId : deletedIds) {
+                        try {
+                            userStorage.addFriend(adderId, friendId);
+                        } catch (DataIntegrityViolationException ignored) {
+                            //друг уже удалён
+                        }
+                    }
+                }));
+            }
+            futures.add(executor.submit(() -> deletedIds.forEach(userStorage::deleteUser)));
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        for (Long adderId : adderIds) {
+            assertEquals(0, jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM friendship WHERE user_id = ?", Integer.class, adderId));
+            assertArrayEquals(new long[0], friendshipGraph.getFriends(adderId));
+        }
+        for (Long deletedId : deletedIds) {
+            assertArrayEquals(new long[0], friendshipGraph.getFollowers(deletedId));
+        }
+    }
+
+    private List<User> createUsers(int count) {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            users.add(userService.createUser(User.builder()
+                    .name("user " + i)
+                    .birthday(LocalDate.of(2000, 1, 1))
+                    .email("user" + i + "@yandex.ru")
+                    .login("login" + i)
+                    .friendsIds(new HashSet<>())
+                    .build()));
+        }
+        return users;
+    }
 }